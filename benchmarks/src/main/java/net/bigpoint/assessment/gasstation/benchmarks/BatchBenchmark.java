@@ -0,0 +1,83 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares replay of a burst of customers one by one and as one batch.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar BatchBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+  @Param({"64", "1024"})
+  public int burst;
+
+  @Param({"SALES", "CANCELLATIONS"})
+  public PurchaseMix mix;
+
+  FastGasStation station;
+  GasType[] types;
+  double[] amounts;
+  double[] maxPrices;
+  int[] outcomes;
+
+  /**
+   * Builds the station and the burst of requests.
+   */
+  @Setup
+  public void setup() {
+    station = StationLayout.FOUR_PER_TYPE.create(Pumping.NONE.driver(0));
+    var layoutTypes = StationLayout.FOUR_PER_TYPE.types();
+    var random = new SplittableRandom(42);
+    var request = new PurchaseMix.Request();
+    types = new GasType[burst];
+    amounts = new double[burst];
+    maxPrices = new double[burst];
+    outcomes = new int[burst];
+    for (int i = 0; i < burst; i++) {
+      mix.next(random, request);
+      types[i] = layoutTypes[random.nextInt(layoutTypes.length)];
+      amounts[i] = request.amount;
+      maxPrices[i] = request.maxPrice;
+    }
+  }
+
+  @Benchmark
+  public double oneByOne() {
+    double revenue = 0.0;
+    for (int i = 0; i < burst; i++) {
+      try {
+        revenue += station.buyGas(types[i], amounts[i], maxPrices[i]);
+      } catch (NotEnoughGasException | GasTooExpensiveException e) {
+        revenue -= 1.0;
+      }
+    }
+    return revenue;
+  }
+
+  @Benchmark
+  public double[] batch() {
+    return station.buyGas(types, amounts, maxPrices, outcomes);
+  }
+}
@@ -0,0 +1,116 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures throughput and latency percentiles of {@link FastGasStation#buyGas}
+ * with 1, 4 and all available client threads.
+ * Throughput mode reports ops/s, sample mode reports p99 and p99.9 latencies.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar BuyGasBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuyGasBenchmark {
+
+  @Param
+  public StationLayout layout;
+
+  @Param({"SALES", "MIXED", "CANCELLATIONS"})
+  public PurchaseMix mix;
+
+  @Param({"NONE", "SPIN"})
+  public Pumping pumping;
+
+  /** CPU tokens burned per liter by SPIN pumping. */
+  @Param({"100"})
+  public long tokensPerLiter;
+
+  /** Enables station metrics, compare with -p metrics=false,true. */
+  @Param({"false"})
+  public boolean metrics;
+
+  FastGasStation station;
+  GasType[] types;
+
+  /**
+   * Builds the station of selected layout.
+   */
+  @Setup
+  public void setup() {
+    station = layout.create(pumping.driver(tokensPerLiter));
+    station.setMetricsEnabled(metrics);
+    types = layout.types();
+  }
+
+  /**
+   * Client thread state that generates purchase requests.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    final SplittableRandom random = new SplittableRandom();
+    final PurchaseMix.Request request = new PurchaseMix.Request();
+    final PurchaseResult result = new PurchaseResult();
+  }
+
+  double buy(Client client) {
+    mix.next(client.random, client.request);
+    var type = types[client.random.nextInt(types.length)];
+    try {
+      return station.buyGas(type, client.request.amount, client.request.maxPrice);
+    } catch (NotEnoughGasException | GasTooExpensiveException e) {
+      return -1.0;
+    }
+  }
+
+  int tryBuy(Client client) {
+    mix.next(client.random, client.request);
+    var type = types[client.random.nextInt(types.length)];
+    return station.tryBuyGas(type, client.request.amount, client.request.maxPrice, client.result);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int tryBuyGas4(Client client) {
+    return tryBuy(client);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public double buyGas1(Client client) {
+    return buy(client);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public double buyGas4(Client client) {
+    return buy(client);
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public double buyGasMax(Client client) {
+    return buy(client);
+  }
+}
@@ -0,0 +1,75 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.CustomerThreads;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares simulation of many concurrent customers on platform and virtual threads.
+ * Every customer runs on its own thread and pumping blocks for a millisecond,
+ * so the number of threads alive at once is close to the number of customers.
+ * Virtual threads need JDK 21, on older JDKs VIRTUAL runs fail.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar CustomerThreadsBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CustomerThreadsBenchmark {
+
+  @Param({"PLATFORM", "VIRTUAL"})
+  public CustomerThreads threads;
+
+  @Param({"1000", "10000", "100000"})
+  public int customers;
+
+  FastGasStation station;
+
+  /**
+   * Builds station with many pumps whose pumping blocks for a millisecond.
+   */
+  @Setup
+  public void setup() {
+    station = StationLayout.FLEET_REGULAR.create((pump, amount) -> {
+      try {
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+  }
+
+  /**
+   * Starts all customers at once and waits until everyone is served.
+   */
+  @Benchmark
+  public int serveCustomers() throws InterruptedException, ExecutionException {
+    var executor = threads.newExecutor();
+    var sales = new Future<?>[customers];
+    for (int i = 0; i < customers; i++) {
+      sales[i] = executor.submit(
+          () -> station.buyGas(GasType.REGULAR, 1.0, StationLayout.PRICE));
+    }
+    for (var sale : sales) {
+      sale.get();
+    }
+    executor.shutdown();
+    return sales.length;
+  }
+}
@@ -0,0 +1,82 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.DispatchMode;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares fixed lines with work stealing when fill amounts are skewed:
+ * every tenth client takes much more gas, so lines behind such clients stall
+ * while other pumps of the same type become idle.
+ * Pumping parks for time proportional to the amount.
+ * Sample mode reports throughput as mean time together with p99 of every purchase.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar DispatchBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class DispatchBenchmark {
+
+  /** Amount taken by every tenth client. */
+  private static final double LARGE_AMOUNT = 20.0;
+
+  @Param({"LINES", "STEALING", "FAIR", "WORKERS"})
+  public DispatchMode mode;
+
+  @Param({"FOUR_PER_TYPE", "MANY_REGULAR"})
+  public StationLayout layout;
+
+  /** Pumping time of one liter. */
+  @Param({"10000"})
+  public long nanosPerLiter;
+
+  FastGasStation station;
+  GasType[] types;
+
+  /**
+   * Client state, every thread buys gas in its own sequence.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    int purchases;
+  }
+
+  /**
+   * Builds station with parking pumps.
+   */
+  @Setup
+  public void setup() {
+    station = layout.create(
+        (pump, amount) -> LockSupport.parkNanos((long) (amount * nanosPerLiter)), mode);
+    types = layout.types();
+  }
+
+  /**
+   * Buys gas of one type, every tenth purchase is large.
+   */
+  @Benchmark
+  public double buyGas(Client client) throws Exception {
+    int purchase = client.purchases++;
+    double amount = purchase % 10 == 0 ? LARGE_AMOUNT : 1.0;
+    var type = types[(purchase / 10) % types.length];
+    return station.buyGas(type, amount, StationLayout.PRICE);
+  }
+}
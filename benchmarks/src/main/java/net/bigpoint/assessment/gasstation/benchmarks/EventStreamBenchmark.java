@@ -0,0 +1,103 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.OverflowPolicy;
+import net.bigpoint.assessment.gasstation.impl.SalesEventPublisher;
+import net.bigpoint.assessment.gasstation.impl.SalesEvents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures cost of streaming sale events to a subscriber on the purchase path.
+ * Subscriber burns CPU for every batch, so with small buffers it falls behind
+ * and overflow policy decides what buying clients pay for it.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar EventStreamBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class EventStreamBenchmark {
+
+  /** Overflow policy of the publisher, NONE runs without publisher. */
+  @Param({"NONE", "DROP", "COALESCE", "BLOCK"})
+  public String policy;
+
+  @Param({"1024"})
+  public int bufferSize;
+
+  /** CPU tokens burned by subscriber for every batch. */
+  @Param({"1000"})
+  public long tokensPerBatch;
+
+  FastGasStation station;
+  SalesEventPublisher publisher;
+
+  /**
+   * Builds the station and subscribes consumer that requests batches one by one.
+   */
+  @Setup
+  public void setup() {
+    station = StationLayout.FOUR_PER_TYPE.create(Pumping.NONE.driver(0));
+    if (policy.equals("NONE")) {
+      return;
+    }
+    publisher = new SalesEventPublisher(ForkJoinPool.commonPool(), bufferSize,
+        OverflowPolicy.valueOf(policy), 256);
+    publisher.subscribe(new Flow.Subscriber<SalesEvents>() {
+      Flow.Subscription subscription;
+
+      @Override
+      public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+      }
+
+      @Override
+      public void onNext(SalesEvents events) {
+        Blackhole.consumeCPU(tokensPerBatch);
+        subscription.request(1);
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+      }
+
+      @Override
+      public void onComplete() {
+      }
+    });
+    station.setEventPublisher(publisher);
+  }
+
+  @TearDown
+  public void tearDown() {
+    if (publisher != null) {
+      publisher.close();
+    }
+  }
+
+  @Benchmark
+  public double buyGas() throws Exception {
+    return station.buyGas(GasType.REGULAR, 1.0, StationLayout.PRICE);
+  }
+}
@@ -0,0 +1,77 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.DispatchMode;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares latency fairness of per-pump lines and one shared line per gas type.
+ * Clients take random amounts, so a client in line behind slow clients waits longer
+ * than a client that arrived later to another line. Spread between median and
+ * high percentiles of the sampled time shows how unfair the order of service is.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar FairnessBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class FairnessBenchmark {
+
+  @Param({"LINES", "FAIR"})
+  public DispatchMode mode;
+
+  /** Largest amount of a client, amounts are uniform from one liter. */
+  @Param({"1", "8"})
+  public int maxAmount;
+
+  /** Pumping time of one liter. */
+  @Param({"10000"})
+  public long nanosPerLiter;
+
+  FastGasStation station;
+
+  /**
+   * Client state, every thread has its own random sequence of amounts.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    final SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+  }
+
+  /**
+   * Builds station with four parking REGULAR pumps.
+   */
+  @Setup
+  public void setup() {
+    station = StationLayout.FOUR_PER_TYPE.create(
+        (pump, amount) -> LockSupport.parkNanos((long) (amount * nanosPerLiter)), mode);
+  }
+
+  /**
+   * Buys random amount of REGULAR gas.
+   */
+  @Benchmark
+  public double buyGas(Client client) throws Exception {
+    double amount = 1 + client.random.nextInt(maxAmount);
+    return station.buyGas(GasType.REGULAR, amount, StationLayout.PRICE);
+  }
+}
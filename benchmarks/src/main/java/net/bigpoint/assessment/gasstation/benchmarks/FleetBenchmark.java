@@ -0,0 +1,82 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.GasStationFleet;
+import net.bigpoint.assessment.gasstation.impl.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures throughput of {@link GasStationFleet#tryBuyGas} with 1, 8 and 64 stations
+ * of the same layout, all available threads buy gas.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar FleetBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class FleetBenchmark {
+
+  @Param({"1", "8", "64"})
+  public int stations;
+
+  @Param({"FOUR_PER_TYPE"})
+  public StationLayout layout;
+
+  @Param({"NONE", "SPIN"})
+  public Pumping pumping;
+
+  /** CPU tokens burned per liter by SPIN pumping. */
+  @Param({"100"})
+  public long tokensPerLiter;
+
+  GasStationFleet fleet;
+  GasType[] types;
+
+  /**
+   * Builds the fleet of stations of selected layout.
+   */
+  @Setup
+  public void setup() {
+    var fleetStations = new ArrayList<FastGasStation>();
+    for (int i = 0; i < stations; i++) {
+      fleetStations.add(layout.create(pumping.driver(tokensPerLiter)));
+    }
+    fleet = new GasStationFleet(fleetStations);
+    types = layout.types();
+  }
+
+  /**
+   * Client thread state that generates purchase requests.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    final SplittableRandom random = new SplittableRandom();
+    final PurchaseMix.Request request = new PurchaseMix.Request();
+    final PurchaseResult result = new PurchaseResult();
+  }
+
+  @Benchmark
+  public int tryBuyGas(Client client) {
+    PurchaseMix.SALES.next(client.random, client.request);
+    var type = types[client.random.nextInt(types.length)];
+    return fleet.tryBuyGas(type, client.request.amount, client.request.maxPrice, client.result);
+  }
+}
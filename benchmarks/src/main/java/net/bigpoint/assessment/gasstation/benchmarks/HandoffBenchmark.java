@@ -0,0 +1,78 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.DispatchMode;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures cost of handing pumps between clients waiting in line:
+ * blocking queue of the pump in {@link DispatchMode#LINES}
+ * against ring of requests served by pump owner in {@link DispatchMode#WORKERS}.
+ * Pumping is short, so lines are always long and every purchase is a handoff.
+ * Sample mode reports p99 and p99.9 latencies of purchases.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar HandoffBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class HandoffBenchmark {
+
+  @Param({"LINES", "WORKERS"})
+  public DispatchMode mode;
+
+  @Param({"SINGLE_PUMP", "FOUR_PER_TYPE"})
+  public StationLayout layout;
+
+  @Param({"NONE", "SPIN"})
+  public Pumping pumping;
+
+  /** CPU tokens burned per liter by SPIN pumping. */
+  @Param({"100"})
+  public long tokensPerLiter;
+
+  FastGasStation station;
+  GasType[] types;
+
+  /**
+   * Client state, every thread buys gas in its own sequence.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    int purchases;
+  }
+
+  /**
+   * Builds the station of selected layout and mode.
+   */
+  @Setup
+  public void setup() {
+    station = layout.create(pumping.driver(tokensPerLiter), mode);
+    types = layout.types();
+  }
+
+  /**
+   * Buys one liter, gas types alternate between purchases.
+   */
+  @Benchmark
+  public double buyGas(Client client) throws Exception {
+    var type = types[client.purchases++ % types.length];
+    return station.buyGas(type, 1.0, StationLayout.PRICE);
+  }
+}
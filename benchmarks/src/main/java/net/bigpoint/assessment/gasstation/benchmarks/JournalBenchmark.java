@@ -0,0 +1,119 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.DispatchMode;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.PurchaseResult;
+import net.bigpoint.assessment.gasstation.impl.TransactionJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures overhead of {@link TransactionJournal} on buyGas throughput.
+ * Journal is written to a temporary directory and deleted after the trial.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar JournalBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+  @Param({"false", "true"})
+  public boolean journaled;
+
+  @Param({"SALES", "MIXED"})
+  public PurchaseMix mix;
+
+  /** Delay of group commit. */
+  @Param({"10"})
+  public long commitIntervalMillis;
+
+  FastGasStation station;
+  GasType[] types;
+  Path directory;
+  TransactionJournal journal;
+
+  /**
+   * Builds station with four pumps of every type, journaled if selected.
+   */
+  @Setup
+  public void setup() throws IOException {
+    if (journaled) {
+      directory = Files.createTempDirectory("gas-journal");
+      journal = TransactionJournal.open(directory, 64 << 20, commitIntervalMillis);
+    }
+    station = new FastGasStation(Pumping.NONE.driver(0), ForkJoinPool.commonPool(),
+        DispatchMode.LINES, journal);
+    var layout = StationLayout.FOUR_PER_TYPE;
+    types = layout.types();
+    for (var type : types) {
+      for (int i = 0; i < 4; i++) {
+        station.addGasPump(new GasPump(type, StationLayout.PUMP_AMOUNT));
+      }
+      station.setPrice(type, StationLayout.PRICE);
+    }
+  }
+
+  /**
+   * Closes the journal and deletes its files.
+   */
+  @TearDown
+  public void tearDown() throws IOException {
+    if (journal != null) {
+      journal.close();
+      try (var files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    }
+  }
+
+  /**
+   * Client thread state that generates purchase requests.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    final SplittableRandom random = new SplittableRandom();
+    final PurchaseMix.Request request = new PurchaseMix.Request();
+    final PurchaseResult result = new PurchaseResult();
+  }
+
+  int tryBuy(Client client) {
+    mix.next(client.random, client.request);
+    var type = types[client.random.nextInt(types.length)];
+    return station.tryBuyGas(type, client.request.amount, client.request.maxPrice, client.result);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public int tryBuyGas1(Client client) {
+    return tryBuy(client);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public int tryBuyGas4(Client client) {
+    return tryBuy(client);
+  }
+}
@@ -0,0 +1,103 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.CapacityModel;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.PumpStateStore;
+import net.bigpoint.assessment.gasstation.impl.StationSimulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares memory footprint and selection of {@link PumpStateStore}
+ * with pumps of {@link FastGasStation}.
+ * Footprint is measured as allocation of building all pumps,
+ * {@code gc.alloc.rate.norm} of the build benchmarks divided by number of pumps
+ * is the cost of one pump.
+ * Reserve benchmarks select a pump, reserve fuel and leave the line at once,
+ * directly in the store or through {@link CapacityModel}.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar PumpStateBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PumpStateBenchmark {
+
+  @Param({"1000", "100000"})
+  public int pumps;
+
+  FastGasStation station;
+  StationSimulation simulation;
+  PumpStateStore store;
+  CapacityModel model;
+
+  /**
+   * Builds station and store with the same pumps of one type.
+   */
+  @Setup
+  public void setup() {
+    station = buildStation();
+    simulation = new StationSimulation(station);
+    store = buildStore();
+    model = new CapacityModel(buildStore());
+    model.setPrice(GasType.REGULAR, StationLayout.PRICE);
+  }
+
+  @Benchmark
+  public FastGasStation buildStation() {
+    var built = new FastGasStation(Pumping.NONE.driver(0));
+    for (int i = 0; i < pumps; i++) {
+      built.addGasPump(new GasPump(GasType.REGULAR, StationLayout.PUMP_AMOUNT));
+    }
+    built.setPrice(GasType.REGULAR, StationLayout.PRICE);
+    return built;
+  }
+
+  @Benchmark
+  public PumpStateStore buildStore() {
+    var built = new PumpStateStore();
+    for (int i = 0; i < pumps; i++) {
+      built.addPump(GasType.REGULAR, StationLayout.PUMP_AMOUNT);
+    }
+    return built;
+  }
+
+  /**
+   * Client arrives and finishes pumping at once on virtual clock of the station.
+   */
+  @Benchmark
+  public long reserveStation() {
+    simulation.schedule(simulation.now(), GasType.REGULAR, 1.0, StationLayout.PRICE);
+    return simulation.run();
+  }
+
+  /**
+   * Client arrives and finishes pumping at once on virtual clock of the model.
+   */
+  @Benchmark
+  public long reserveModel() {
+    model.schedule(model.now(), GasType.REGULAR, 1.0, StationLayout.PRICE);
+    return model.run();
+  }
+
+  @Benchmark
+  public int reserveStore() {
+    int pump = store.reserve(GasType.REGULAR, 1.0, Integer.MAX_VALUE);
+    store.leave(GasType.REGULAR, pump, 1.0);
+    return pump;
+  }
+}
@@ -0,0 +1,36 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import net.bigpoint.assessment.gasstation.impl.PumpDriver;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Stand-ins for the sleep inside {@link net.bigpoint.assessment.gasstation.GasPump#pumpGas}.
+ */
+public enum Pumping {
+  /** Pumping takes no time, measures pure station overhead. */
+  NONE {
+    @Override
+    public PumpDriver driver(long tokensPerLiter) {
+      return (pump, amount) -> { };
+    }
+  },
+  /** Pumping burns CPU proportionally to the amount. */
+  SPIN {
+    @Override
+    public PumpDriver driver(long tokensPerLiter) {
+      return (pump, amount) -> Blackhole.consumeCPU((long) (amount * tokensPerLiter));
+    }
+  },
+  /** Original pumping with sleep of 100 ms per liter. */
+  SLEEP {
+    @Override
+    public PumpDriver driver(long tokensPerLiter) {
+      return PumpDriver.GAS_PUMP;
+    }
+  };
+
+  /**
+   * Creates pump driver for the station.
+   */
+  public abstract PumpDriver driver(long tokensPerLiter);
+}
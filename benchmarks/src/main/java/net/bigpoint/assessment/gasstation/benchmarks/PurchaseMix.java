@@ -0,0 +1,47 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+
+/**
+ * Shares of successful and cancelled purchases generated by benchmark clients.
+ */
+public enum PurchaseMix {
+  /** Every purchase succeeds. */
+  SALES(1.0, 0.0),
+  /** Mostly sales with some cancellations of both kinds. */
+  MIXED(0.8, 0.1),
+  /** Mostly cancellations split between not enough gas and too expensive. */
+  CANCELLATIONS(0.1, 0.45);
+
+  private final double salesShare;
+  private final double noGasShare;
+
+  PurchaseMix(double salesShare, double noGasShare) {
+    this.salesShare = salesShare;
+    this.noGasShare = noGasShare;
+  }
+
+  /**
+   * Fills next request of the client.
+   */
+  public void next(SplittableRandom random, Request request) {
+    double dice = random.nextDouble();
+    request.amount = 0.5 + random.nextDouble() * 1.5;
+    request.maxPrice = StationLayout.PRICE * 2;
+    if (dice >= salesShare) {
+      if (dice < salesShare + noGasShare) {
+        request.amount = StationLayout.PUMP_AMOUNT * 2;
+      } else {
+        request.maxPrice = StationLayout.PRICE / 2;
+      }
+    }
+  }
+
+  /**
+   * Mutable purchase request reused by a client thread.
+   */
+  public static final class Request {
+    double amount;
+    double maxPrice;
+  }
+}
@@ -0,0 +1,108 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.PumpDriver;
+import net.bigpoint.assessment.gasstation.impl.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures sales throughput of REGULAR pumps while a tanker keeps refilling them,
+ * compared with the same clients without refills.
+ * Pouring burns CPU like SPIN pumping, clients at the pump wait for it.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar RefillBenchmark}
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefillBenchmark {
+
+  @Param({"SINGLE_PUMP", "MANY_REGULAR"})
+  public StationLayout layout;
+
+  /** CPU tokens burned per liter by pumping. */
+  @Param({"100"})
+  public long tokensPerLiter;
+
+  /** CPU tokens burned by pouring one refill. */
+  @Param({"100", "10000"})
+  public long pourTokens;
+
+  FastGasStation station;
+  List<GasPump> pumps;
+
+  /**
+   * Builds the station of selected layout with spinning pumping and pouring.
+   */
+  @Setup
+  public void setup() {
+    station = layout.create(new PumpDriver() {
+      @Override
+      public void pump(GasPump pump, double amountInLiters) {
+        Blackhole.consumeCPU((long) (amountInLiters * tokensPerLiter));
+      }
+
+      @Override
+      public void refill(GasPump pump, double amountInLiters) {
+        Blackhole.consumeCPU(pourTokens);
+      }
+    });
+    pumps = new ArrayList<>();
+    for (var pump : station.getGasPumps()) {
+      if (pump.getGasType() == GasType.REGULAR) {
+        pumps.add(pump);
+      }
+    }
+  }
+
+  /**
+   * Thread state of clients and the tanker.
+   */
+  @State(Scope.Thread)
+  public static class Client {
+    final SplittableRandom random = new SplittableRandom();
+    final PurchaseResult result = new PurchaseResult();
+  }
+
+  @Benchmark
+  @Group("baseline")
+  @GroupThreads(3)
+  public int buyWithoutRefills(Client client) {
+    return station.tryBuyGas(GasType.REGULAR, 1.0, StationLayout.PRICE, client.result);
+  }
+
+  @Benchmark
+  @Group("refilling")
+  @GroupThreads(3)
+  public int buyDuringRefills(Client client) {
+    return station.tryBuyGas(GasType.REGULAR, 1.0, StationLayout.PRICE, client.result);
+  }
+
+  @Benchmark
+  @Group("refilling")
+  @GroupThreads(1)
+  public boolean refill(Client client) {
+    return station.refill(pumps.get(client.random.nextInt(pumps.size())), 1.0);
+  }
+}
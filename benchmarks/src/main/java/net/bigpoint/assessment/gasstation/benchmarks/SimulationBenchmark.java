@@ -0,0 +1,42 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.impl.StationSimulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures wall time of simulating one hour of traffic on a virtual clock.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar SimulationBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulationBenchmark {
+
+  @Param({"PUMP_PER_TYPE", "FLEET_REGULAR"})
+  public StationLayout layout;
+
+  @Param({"10", "100"})
+  public double clientsPerSecond;
+
+  @Benchmark
+  public long simulateHour() {
+    var simulation = new StationSimulation(layout.create(Pumping.NONE.driver(0)));
+    simulation.scheduleRandomTraffic(new SplittableRandom(42), clientsPerSecond,
+        TimeUnit.HOURS.toNanos(1), 40.0, StationLayout.PRICE);
+    return simulation.run();
+  }
+}
@@ -0,0 +1,78 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares startup of a station with many pumps rebuilt with public API
+ * and loaded from a snapshot.
+ * Run with: {@code java -jar benchmarks/target/benchmarks.jar SnapshotBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+  @Param({"1000", "10000"})
+  public int pumps;
+
+  Path file;
+
+  /**
+   * Writes snapshot of the station with selected number of pumps.
+   */
+  @Setup
+  public void setup() throws IOException, InterruptedException, ExecutionException {
+    file = Files.createTempFile("gas-station", ".snapshot");
+    rebuild().writeSnapshot(file).get();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Adds pumps one by one and sets prices.
+   */
+  @Benchmark
+  public FastGasStation rebuild() {
+    var station = new FastGasStation(Pumping.NONE.driver(0));
+    var types = GasType.values();
+    for (int i = 0; i < pumps; i++) {
+      station.addGasPump(new GasPump(types[i % types.length], StationLayout.PUMP_AMOUNT));
+    }
+    for (var type : types) {
+      station.setPrice(type, StationLayout.PRICE);
+    }
+    return station;
+  }
+
+  @Benchmark
+  public FastGasStation load() throws IOException {
+    var station = new FastGasStation(Pumping.NONE.driver(0));
+    station.loadSnapshot(file);
+    return station;
+  }
+}
@@ -0,0 +1,70 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.impl.DispatchMode;
+import net.bigpoint.assessment.gasstation.impl.FastGasStation;
+import net.bigpoint.assessment.gasstation.impl.PumpDriver;
+
+/**
+ * Pump layouts of the benchmarked station.
+ */
+public enum StationLayout {
+  /** One REGULAR pump, all clients share one line. */
+  SINGLE_PUMP(1, GasType.REGULAR),
+  /** One pump of every type. */
+  PUMP_PER_TYPE(1, GasType.values()),
+  /** Four pumps of every type. */
+  FOUR_PER_TYPE(4, GasType.values()),
+  /** Large number of REGULAR pumps. */
+  MANY_REGULAR(64, GasType.REGULAR),
+  /** Hundreds of REGULAR pumps like in large fleets. */
+  FLEET_REGULAR(512, GasType.REGULAR);
+
+  /** Price of every gas type at benchmarked station. */
+  public static final double PRICE = 1.0;
+  /** Amount of gas in every pump, enough to never run out during measurement. */
+  public static final double PUMP_AMOUNT = 1e12;
+
+  private final int pumpsPerType;
+  private final GasType[] types;
+
+  StationLayout(int pumpsPerType, GasType... types) {
+    this.pumpsPerType = pumpsPerType;
+    this.types = types;
+  }
+
+  /**
+   * Gas types that have pumps in this layout.
+   */
+  public GasType[] types() {
+    return types.clone();
+  }
+
+  /**
+   * Creates station with pumps of this layout and prices set.
+   */
+  public FastGasStation create(PumpDriver driver) {
+    return create(new FastGasStation(driver));
+  }
+
+  /**
+   * Creates station with pumps of this layout, prices set and selected dispatch mode.
+   */
+  public FastGasStation create(PumpDriver driver, DispatchMode mode) {
+    return create(new FastGasStation(driver, ForkJoinPool.commonPool(), mode));
+  }
+
+  private FastGasStation create(FastGasStation station) {
+    for (var type : types) {
+      for (int i = 0; i < pumpsPerType; i++) {
+        station.addGasPump(new GasPump(type, PUMP_AMOUNT));
+      }
+    }
+    for (var type : GasType.values()) {
+      station.setPrice(type, PRICE);
+    }
+    return station;
+  }
+}
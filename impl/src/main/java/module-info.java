@@ -1,4 +1,5 @@
 module net.bigpoint.assessment.gasstation.impl {
     requires transitive net.bigpoint.assessment.gasstation.api;
+    requires transitive java.management;
     exports net.bigpoint.assessment.gasstation.impl;
 }
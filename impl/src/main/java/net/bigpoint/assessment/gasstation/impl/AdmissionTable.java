@@ -0,0 +1,33 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Maximum line length of pumps of every gas type that can be changed while clients are buying.
+ * Limits are indexed by {@link GasType#ordinal()} like prices in {@link PriceTable}.
+ */
+final class AdmissionTable {
+
+  /** Lines are not limited. */
+  static final int UNLIMITED = Integer.MAX_VALUE;
+
+  private final AtomicIntegerArray maxLengths = new AtomicIntegerArray(GasType.values().length);
+
+  AdmissionTable() {
+    for (int i = 0; i < maxLengths.length(); i++) {
+      maxLengths.set(i, UNLIMITED);
+    }
+  }
+
+  /**
+   * Maximum number of clients in line of one pump, the client at the pump included.
+   */
+  int get(GasType type) {
+    return maxLengths.get(type.ordinal());
+  }
+
+  void set(GasType type, int maxLength) {
+    maxLengths.set(type.ordinal(), maxLength);
+  }
+}
@@ -0,0 +1,62 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Summary of fuel of one gas type for new clients, see {@link FastGasStation#getAvailability}.
+ * Fuel reserved by clients in line is not counted.
+ * Values are read without locking and may lag behind purchases running meanwhile.
+ */
+public final class Availability {
+
+  private final GasType gasType;
+  private final double maxPumpAmount;
+  private final double totalAmount;
+  private final int idlePumps;
+
+  Availability(GasType gasType, double maxPumpAmount, double totalAmount, int idlePumps) {
+    this.gasType = gasType;
+    this.maxPumpAmount = maxPumpAmount;
+    this.totalAmount = totalAmount;
+    this.idlePumps = idlePumps;
+  }
+
+  public GasType getGasType() {
+    return gasType;
+  }
+
+  /**
+   * Largest amount available at one pump.
+   */
+  public double getMaxPumpAmount() {
+    return maxPumpAmount;
+  }
+
+  /**
+   * Amount available at all pumps together.
+   */
+  public double getTotalAmount() {
+    return totalAmount;
+  }
+
+  /**
+   * Number of pumps with nobody in line.
+   */
+  public int getIdlePumps() {
+    return idlePumps;
+  }
+
+  /**
+   * Checks if some pump has enough fuel for the amount, as purchase would check it.
+   * Purchase of amount that is not available is cancelled as not enough gas.
+   */
+  public boolean isAvailable(double amountInLiters) {
+    return maxPumpAmount > amountInLiters;
+  }
+
+  @Override
+  public String toString() {
+    return gasType + ": max " + maxPumpAmount + " l, total " + totalAmount + " l, "
+        + idlePumps + " idle pumps";
+  }
+}
@@ -0,0 +1,159 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Arrays;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Capacity model of a very large station on a virtual clock,
+ * pumps are kept in {@link PumpStateStore}, so millions of them fit in memory.
+ * Clients select and reserve pumps in the store like clients of {@link FastGasStation},
+ * waiting and pumping are computed like in {@link StationSimulation}.
+ * Prices and line limits are set on the model, which counts sales and cancellations itself.
+ * Pumps may be added to the store between runs, the store should not serve other clients.
+ */
+public final class CapacityModel extends DiscreteEventModel<Integer> {
+
+  private static final GasType[] GAS_TYPES = GasType.values();
+
+  private final PumpStateStore store;
+  private final double[] prices = new double[GAS_TYPES.length];
+  private final int[] maxLengths = new int[GAS_TYPES.length];
+  /** Virtual time when every pump finishes serving its line, by gas type and pump. */
+  private final long[][] freeAt = new long[GAS_TYPES.length][0];
+  private long sales;
+  private double revenue;
+  private long cancelNotEnough;
+  private long cancelTooExpensive;
+  private long cancelLineFull;
+
+  /**
+   * Initializes model of pumps of the store with pumping time of
+   * {@link StationSimulation#GAS_PUMP_NANOS_PER_LITER}.
+   */
+  public CapacityModel(PumpStateStore store) {
+    this(store, StationSimulation.GAS_PUMP_NANOS_PER_LITER);
+  }
+
+  /**
+   * Initializes model of pumps of the store with given pumping time of one liter.
+   */
+  public CapacityModel(PumpStateStore store, long nanosPerLiter) {
+    super(nanosPerLiter);
+    if (store == null) {
+      throw new IllegalArgumentException("store cannot be null");
+    }
+    this.store = store;
+    Arrays.fill(maxLengths, AdmissionTable.UNLIMITED);
+  }
+
+  /**
+   * Sets price of the gas type for clients arriving from now.
+   */
+  public void setPrice(GasType type, double price) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    if (price <= 0.0) {
+      throw new IllegalArgumentException("price must be positive number");
+    }
+    prices[type.ordinal()] = price;
+  }
+
+  /**
+   * Limits number of clients in line of every pump of the type, the client at the pump included,
+   * see {@link FastGasStation#setMaxLineLength}.
+   *
+   * @param maxLength at least 1, {@link Integer#MAX_VALUE} removes the limit
+   */
+  public void setMaxLineLength(GasType type, int maxLength) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    if (maxLength < 1) {
+      throw new IllegalArgumentException("line length must be positive");
+    }
+    maxLengths[type.ordinal()] = maxLength;
+  }
+
+  @Override
+  void arrive(GasType type, double amountInLiters, double maxPricePerLiter) {
+    if (store.getNumberOfPumps(type) == 0) {
+      cancelNotEnough++; // like the station, type without pumps is not priced
+      return;
+    }
+    double price = prices[type.ordinal()];
+    if (price == PriceTable.NOT_SET) {
+      throw new IllegalStateException("price is not set for this type of gas");
+    }
+    if (price > maxPricePerLiter) {
+      cancelTooExpensive++;
+      return;
+    }
+    int pump = store.reserve(type, amountInLiters, maxLengths[type.ordinal()]);
+    if (pump == PumpStateStore.NO_FUEL) {
+      cancelNotEnough++;
+    } else if (pump == PumpStateStore.LINE_FULL) {
+      cancelLineFull++;
+    } else {
+      enterLine(pump, type, amountInLiters, price);
+    }
+  }
+
+  @Override
+  void depart(Integer pump, GasType type, double amountInLiters, double price) {
+    store.leave(type, pump, amountInLiters);
+    sales++;
+    revenue += price * amountInLiters;
+  }
+
+  @Override
+  long freeAt(GasType type, Integer pump) {
+    var free = freeAt[type.ordinal()];
+    return pump < free.length ? free[pump] : 0L;
+  }
+
+  @Override
+  void setFreeAt(GasType type, Integer pump, long time) {
+    var free = freeAt[type.ordinal()];
+    if (pump >= free.length) { // pumps were added to the store
+      free = Arrays.copyOf(free, Math.max(pump + 1, free.length * 2));
+      freeAt[type.ordinal()] = free;
+    }
+    free[pump] = time;
+  }
+
+  /**
+   * Number of clients that finished pumping.
+   */
+  public long getNumberOfSales() {
+    return sales;
+  }
+
+  /**
+   * Money paid by clients that finished pumping.
+   */
+  public double getRevenue() {
+    return revenue;
+  }
+
+  /**
+   * Number of clients turned away because no pump had enough fuel.
+   */
+  public long getNumberOfCancellationsNoGas() {
+    return cancelNotEnough;
+  }
+
+  /**
+   * Number of clients turned away because gas was too expensive.
+   */
+  public long getNumberOfCancellationsTooExpensive() {
+    return cancelTooExpensive;
+  }
+
+  /**
+   * Number of clients turned away because lines of pumps with enough fuel were full.
+   */
+  public long getNumberOfCancellationsLineFull() {
+    return cancelLineFull;
+  }
+}
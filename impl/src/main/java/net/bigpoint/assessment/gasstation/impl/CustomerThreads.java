@@ -0,0 +1,62 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Kinds of threads running simulated customers, one thread per customer.
+ * Blocking {@link FastGasStation#buyGas} does not hold monitors while waiting in line
+ * or pumping, so virtual threads are never pinned to their carriers
+ * and one JVM can simulate hundreds of thousands of customers.
+ * Virtual threads require Java 21, they are created reflectively to keep Java 10 compatibility.
+ */
+public enum CustomerThreads {
+  /** Platform thread per customer. */
+  PLATFORM,
+  /** Virtual thread per customer. */
+  VIRTUAL;
+
+  /** System property with the name of the mode, case insensitive. */
+  public static final String PROPERTY = "gasstation.customer.threads";
+
+  /**
+   * Mode selected by {@link #PROPERTY} system property, platform threads by default.
+   */
+  public static CustomerThreads fromSystemProperty() {
+    return valueOf(System.getProperty(PROPERTY, PLATFORM.name()).toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Checks if threads of this kind can be created by running JVM.
+   */
+  public boolean isSupported() {
+    if (this == PLATFORM) {
+      return true;
+    }
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates executor that starts new thread of this kind for every customer.
+   *
+   * @throws UnsupportedOperationException if running JVM has no virtual threads
+   */
+  public ExecutorService newExecutor() {
+    if (this == PLATFORM) {
+      return Executors.newCachedThreadPool();
+    }
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+      throw new UnsupportedOperationException("virtual threads require Java 21", e);
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Virtual clock and events of discrete-event models of a station,
+ * see {@link StationSimulation} and {@link CapacityModel}.
+ * Clients arrive at scheduled times, client that got a pump waits until the pump
+ * served its line in arrival order and pumps for a fixed time per liter.
+ * Pumping and waiting are computed instead of slept, events run in one thread
+ * in order of time and scheduling, so the same clients always give the same results.
+ * Models decide which pump serves a client and count sales and cancellations.
+ *
+ * @param <P> pump of the model
+ */
+abstract class DiscreteEventModel<P> {
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final GasType[] GAS_TYPES = GasType.values();
+
+  /**
+   * Arrival of a client or end of its pumping.
+   */
+  private static final class Event<P> implements Comparable<Event<P>> {
+    final long time;
+    final long order;
+    final GasType type;
+    final double amountInLiters;
+    /** Maximum price for arrival, accepted price for departure. */
+    final double price;
+    /** Pump of departing client, null for arrival. */
+    final P pump;
+
+    Event(long time, long order, GasType type, double amountInLiters, double price, P pump) {
+      this.time = time;
+      this.order = order;
+      this.type = type;
+      this.amountInLiters = amountInLiters;
+      this.price = price;
+      this.pump = pump;
+    }
+
+    @Override
+    public int compareTo(Event<P> other) {
+      return time != other.time ? Long.compare(time, other.time)
+          : Long.compare(order, other.order);
+    }
+  }
+
+  private final long nanosPerLiter;
+  private final PriorityQueue<Event<P>> events = new PriorityQueue<>();
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  private long now;
+  private long scheduled;
+  private long clients;
+
+  DiscreteEventModel(long nanosPerLiter) {
+    if (nanosPerLiter <= 0) {
+      throw new IllegalArgumentException("pumping time must be positive");
+    }
+    this.nanosPerLiter = nanosPerLiter;
+  }
+
+  /**
+   * Client arrived now, model selects a pump and calls {@link #enterLine} or counts cancellation.
+   */
+  abstract void arrive(GasType type, double amountInLiters, double maxPricePerLiter);
+
+  /**
+   * Client finished pumping at the pump now.
+   */
+  abstract void depart(P pump, GasType type, double amountInLiters, double price);
+
+  /**
+   * Virtual time when the pump of the type finishes serving its line,
+   * 0 if it never served anyone.
+   */
+  abstract long freeAt(GasType type, P pump);
+
+  abstract void setFreeAt(GasType type, P pump, long time);
+
+  /**
+   * Puts client that reserved fuel at the pump into its line and schedules its departure.
+   *
+   * @param price price per liter the client pays
+   */
+  final void enterLine(P pump, GasType type, double amountInLiters, double price) {
+    long start = Math.max(now, freeAt(type, pump));
+    long end = start + (long) (amountInLiters * nanosPerLiter);
+    setFreeAt(type, pump, end);
+    queueWait.record(start - now);
+    events.add(new Event<>(end, scheduled++, type, amountInLiters, price, pump));
+  }
+
+  /**
+   * Schedules arrival of a client at virtual time.
+   */
+  public void schedule(long atNanos, GasType type, double amountInLiters,
+      double maxPricePerLiter) {
+    FastGasStation.checkArguments(type, amountInLiters, maxPricePerLiter);
+    if (atNanos < now) {
+      throw new IllegalArgumentException("client cannot arrive in the past");
+    }
+    events.add(new Event<>(atNanos, scheduled++, type, amountInLiters, maxPricePerLiter, null));
+  }
+
+  /**
+   * Schedules all requests of the workload, offsets of requests are counted from now.
+   *
+   * @return number of scheduled clients
+   * @throws IOException if the source cannot be read
+   */
+  public long schedule(WorkloadSource source) throws IOException {
+    if (source == null) {
+      throw new IllegalArgumentException("source cannot be null");
+    }
+    long start = now;
+    long count = 0;
+    for (var request = source.next(); request != null; request = source.next()) {
+      schedule(start + request.getOffsetNanos(), request.getType(),
+          request.getAmountInLiters(), request.getMaxPricePerLiter());
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Schedules clients arriving as Poisson process from now for given duration.
+   * Gas type is chosen uniformly, amount is uniform from 0 to maximum amount,
+   * every client accepts maximum price.
+   *
+   * @param random source of randomness, same seed gives the same clients
+   * @return number of scheduled clients
+   */
+  public long scheduleRandomTraffic(SplittableRandom random, double clientsPerSecond,
+      long durationNanos, double maxAmountInLiters, double maxPricePerLiter) {
+    if (random == null) {
+      throw new IllegalArgumentException("random cannot be null");
+    }
+    if (clientsPerSecond <= 0.0 || maxAmountInLiters <= 0.0) {
+      throw new IllegalArgumentException("rate and amount must be positive");
+    }
+    long end = now + durationNanos;
+    long count = 0;
+    double meanGap = NANOS_PER_SECOND / clientsPerSecond;
+    for (long time = now + gap(random, meanGap); time < end; time += gap(random, meanGap)) {
+      double amount = maxAmountInLiters * (1.0 - random.nextDouble()); // never 0
+      schedule(time, GAS_TYPES[random.nextInt(GAS_TYPES.length)], amount, maxPricePerLiter);
+      count++;
+    }
+    return count;
+  }
+
+  private static long gap(SplittableRandom random, double meanGap) {
+    return (long) (-Math.log(1.0 - random.nextDouble()) * meanGap);
+  }
+
+  /**
+   * Runs all scheduled events.
+   *
+   * @return virtual time of the last event
+   */
+  public long run() {
+    return run(Long.MAX_VALUE);
+  }
+
+  /**
+   * Runs events scheduled before given virtual time and moves the clock there.
+   *
+   * @return current virtual time
+   */
+  public long run(long untilNanos) {
+    while (!events.isEmpty() && events.peek().time < untilNanos) {
+      var event = events.poll();
+      now = event.time;
+      if (event.pump == null) {
+        clients++;
+        arrive(event.type, event.amountInLiters, event.price);
+      } else {
+        depart(event.pump, event.type, event.amountInLiters, event.price);
+      }
+    }
+    if (untilNanos != Long.MAX_VALUE) {
+      now = Math.max(now, untilNanos);
+    }
+    return now;
+  }
+
+  /**
+   * Current virtual time in nanoseconds.
+   */
+  public long now() {
+    return now;
+  }
+
+  /**
+   * Number of clients that arrived so far.
+   */
+  public long getClients() {
+    return clients;
+  }
+
+  /**
+   * Number of clients that will arrive or finish pumping later.
+   */
+  public int getPendingEvents() {
+    return events.size();
+  }
+
+  /**
+   * Virtual time sold clients waited in line before pumping.
+   */
+  public HistogramSnapshot getQueueWait() {
+    return queueWait.snapshot();
+  }
+}
@@ -0,0 +1,45 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Map;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * How waiting clients get access to pumps.
+ */
+public enum DispatchMode {
+  /** Clients wait in fair line of the pump selected on arrival. */
+  LINES,
+  /**
+   * Clients wait in line of the pump selected on arrival,
+   * but pump with empty line takes a client from the longest line of other pump.
+   */
+  STEALING,
+  /**
+   * Clients of one gas type wait in one shared line,
+   * released pump serves the first client it has enough fuel for.
+   */
+  FAIR,
+  /**
+   * Clients wait in line of the pump selected on arrival,
+   * but every pump is owned by a worker thread that pumps for them.
+   * Clients publish requests into a preallocated ring of the pump and wait for completion,
+   * so the pump has a single writer and is never handed over between clients.
+   */
+  WORKERS;
+
+  /**
+   * Creates dispatcher of the mode.
+   */
+  Dispatcher create(Map<GasType, PumpIndex> indexes) {
+    switch (this) {
+      case STEALING:
+        return new StealingDispatcher(indexes);
+      case FAIR:
+        return new FairDispatcher(indexes);
+      case WORKERS:
+        return new WorkerDispatcher();
+      default:
+        return new LineDispatcher();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Serves clients at pumps.
+ * Client reserves fuel and place in line of a pump first,
+ * dispatcher may move the reservation to another pump of the same type
+ * and runs the service of the station at the pump that serves the client.
+ */
+interface Dispatcher {
+
+  /**
+   * Waits until the client is served.
+   *
+   * @param reserved pump where client reserved fuel and place in line
+   * @param start time client started waiting, see {@link StationMetrics#start()}
+   * @param service pumps gas for the client at the pump that serves it
+   * @return pump that served the client
+   */
+  GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service);
+
+  /**
+   * Same as {@link #serve(GasPumpQueue, double, long, PumpWorker.Service)} but client leaves
+   * the line when deadline passes before it reached a pump, pumping that started is finished.
+   *
+   * @param deadline value of {@link System#nanoTime()} to stop waiting at
+   * @return pump that served the client,
+   *     or null if deadline passed, fuel and place in line stay reserved at the reserved pump
+   */
+  GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start, long deadline,
+      PumpWorker.Service service);
+
+  /**
+   * Serves the client without blocking the caller.
+   *
+   * @param completion receives pump that served the client, or null and failure of pumping
+   */
+  void submit(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service, BiConsumer<GasPumpQueue, Throwable> completion);
+}
@@ -0,0 +1,115 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Clients of one gas type wait in one shared lock-free FIFO line.
+ * Released pump is given to the first client in line it has enough fuel for,
+ * so later client is served before earlier one only when earlier client needs more fuel.
+ * Client reserves fuel at selected pump on arrival, so every client has a pump that
+ * can serve it, the reservation moves to the pump that actually serves the client.
+ */
+final class FairDispatcher extends HandoverDispatcher {
+
+  private final Map<GasType, PumpIndex> indexes;
+  private final Map<GasType, Queue<Waiter>> lines = new EnumMap<>(GasType.class);
+
+  FairDispatcher(Map<GasType, PumpIndex> indexes) {
+    this.indexes = indexes;
+    for (var type : GasType.values()) {
+      lines.put(type, new ConcurrentLinkedQueue<>());
+    }
+  }
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters) {
+    var line = lines.get(reserved.type);
+    if (line.isEmpty() && reserved.busy.compareAndSet(false, true)) {
+      return reserved;
+    }
+    return join(line, reserved, amountInLiters).await();
+  }
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters, long deadline) {
+    var line = lines.get(reserved.type);
+    if (line.isEmpty() && reserved.busy.compareAndSet(false, true)) {
+      return reserved;
+    }
+    var waiter = join(line, reserved, amountInLiters);
+    var granted = waiter.await(deadline);
+    if (granted == null) {
+      // no pump can take cancelled client, so its reservation stays where it was made
+      line.remove(waiter);
+      reserved.sharedWaiters.decrementAndGet();
+    }
+    return granted;
+  }
+
+  private Waiter join(Queue<Waiter> line, GasPumpQueue reserved, double amountInLiters) {
+    var waiter = new Waiter(reserved, amountInLiters);
+    line.offer(waiter);
+    reserved.sharedWaiters.incrementAndGet();
+    if (reserved.busy.compareAndSet(false, true)) {
+      release(reserved); // pump was released before client joined the line
+    }
+    return waiter;
+  }
+
+  @Override
+  public void release(GasPumpQueue queue) {
+    while (!handOver(queue)) {
+      queue.busy.set(false);
+      // client with fuel reserved here could join the line after it was checked
+      if (queue.sharedWaiters.get() == 0 || !queue.busy.compareAndSet(false, true)) {
+        return;
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Gives the pump to the first client in line it can serve.
+   *
+   * @return true if client was found
+   */
+  private boolean handOver(GasPumpQueue queue) {
+    var line = lines.get(queue.type);
+    for (var it = line.iterator(); it.hasNext(); ) {
+      var waiter = it.next();
+      if (waiter.isGranted()) {
+        it.remove(); // served by other pump or stopped waiting
+        continue;
+      }
+      var reserved = waiter.reserved;
+      if (reserved == queue) {
+        if (waiter.grant(queue)) {
+          it.remove();
+          queue.sharedWaiters.decrementAndGet();
+          return true;
+        }
+        continue;
+      }
+      if (!queue.tryReserve(waiter.amountInLiters)) {
+        continue;
+      }
+      if (!waiter.grant(queue)) {
+        queue.cancel(waiter.amountInLiters);
+        continue;
+      }
+      it.remove();
+      waiter.reserved = queue;
+      reserved.sharedWaiters.decrementAndGet();
+      reserved.cancel(waiter.amountInLiters);
+      var index = indexes.get(queue.type);
+      index.update(reserved);
+      index.update(queue);
+      return true;
+    }
+    return false;
+  }
+}
@@ -1,14 +1,25 @@
 package net.bigpoint.assessment.gasstation.impl;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasStation;
 import net.bigpoint.assessment.gasstation.GasType;
@@ -27,48 +38,237 @@ import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
  * Algorithm for pump selection among pumps with enoung fuel of requested type:
  *  - Select the one with less clients in line;
  *  - If several select the one with more fuel.
+ * Pumps are kept in {@link PumpIndex} ordered this way, so selection does not scan all pumps.
+ * Selection does not lock: fuel is reserved with CAS on the selected pump
+ * and selection is repeated if other client reserved it first.
+ * By default client stays in line of selected pump even when other pump becomes idle,
+ * {@link DispatchMode#STEALING} lets idle pump take client waiting in another line.
+ * In {@link DispatchMode#WORKERS} every pump is owned by {@link PumpWorker}
+ * and clients only publish their requests to it.
+ * Pumps can be added and removed while station serves clients,
+ * removed pump takes no new clients and is dropped when its line is empty.
+ * Optional {@link TransactionJournal} keeps sales, cancellations and pumps over restarts.
+ * Under overload admission control turns clients away when lines are too long,
+ * and clients with a deadline leave the line when it passes,
+ * both are counted separately from the other cancellations.
+ * Tankers refill pumps while station serves clients, clients with a deadline
+ * may wait for announced refill instead of being cancelled as not enough gas.
+ * Summary of available fuel per gas type rejects requests no pump can serve in O(1),
+ * see {@link #getAvailability}.
+ * Sales and cancellations can be streamed to subscribers by {@link SalesEventPublisher}.
+ * With metrics enabled station keeps rolling statistics of the last hour,
+ * see {@link #getWindowStats(GasType, StatsWindow)}.
+ * Closed station serves clients already in line and stops worker threads of its pumps.
  */
-public class FastGasStation implements GasStation {
+public class FastGasStation implements GasStation, AutoCloseable {
+
+  /** Threads are created on demand and limited by the number of busy pumps. */
+  private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(task -> {
+    var thread = new Thread(task, "gas-pump-lane");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /** Pumps added to GasStation to avoid duplication. */
+  private final PumpRegistry pumps = new PumpRegistry();
+  /** Prices can change anytime, clients pay the price read once when purchase is accepted. */
+  private final PriceTable prices = new PriceTable();
+  /** Maximum line lengths, can change anytime like prices. */
+  private final AdmissionTable admission = new AdmissionTable();
+  private final Map<GasType, PumpIndex> indexes = new EnumMap<>(GasType.class);
+  private final StationStats stats = new StationStats();
+  private final StationMetrics metrics = new StationMetrics(indexes);
+  /** Performs pumping when client reached the pump. */
+  private final PumpDriver driver;
+  /** Runs pumping for asynchronous clients. */
+  private final Executor executor;
+  /** Serves waiting clients at pumps. */
+  private final Dispatcher dispatcher;
+  private volatile boolean closed;
+  /** Records transactions durably, null if station is not journaled. */
+  private final TransactionJournal journal;
+  /** Streams sales and cancellations, null if nobody listens. */
+  private volatile SalesEventPublisher events;
+  /** Completed and replaced after every refill of the type, wakes clients waiting for gas. */
+  private final Map<GasType, AtomicReference<CompletableFuture<Void>>> refilled =
+      new EnumMap<>(GasType.class);
+
+  /**
+   * Initializes station that pumps gas with {@link GasPump#pumpGas(double)}.
+   */
+  public FastGasStation() {
+    this(PumpDriver.GAS_PUMP);
+  }
+
+  /**
+   * Initializes station that pumps gas with provided driver.
+   */
+  public FastGasStation(PumpDriver driver) {
+    this(driver, DEFAULT_EXECUTOR);
+  }
+
+  /**
+   * Initializes station that pumps gas with provided driver
+   * and runs pumping of asynchronous clients on provided executor.
+   * Every pump uses at most one thread of the executor at a time.
+   */
+  public FastGasStation(PumpDriver driver, Executor executor) {
+    this(driver, executor, DispatchMode.LINES);
+  }
+
+  /**
+   * Initializes station that pumps gas with provided driver,
+   * runs pumping of asynchronous clients on provided executor
+   * and gives pumps to waiting clients as selected mode does.
+   */
+  public FastGasStation(PumpDriver driver, Executor executor, DispatchMode mode) {
+    this(driver, executor, mode, null);
+  }
 
   /**
-   * Entity to store some additional data about the pump and handle waiting clients.
+   * Initializes station as {@link #FastGasStation(PumpDriver, Executor, DispatchMode)}
+   * that records every sale, cancellation and change of pumps in the journal.
+   * Pumps and statistics recovered from the journal are restored,
+   * so only new pumps should be added.
+   * Station does not close the journal.
+   *
+   * @param journal journal of the station, null if station is not journaled
    */
-  private static class GasPumpQueue {
-    /** Provides safe waiting mechanism for clients from multiple threads. */
-    private final BlockingQueue<GasPump> pump = new ArrayBlockingQueue<>(1, true);
-    /** Helps better distribute clients between pumps. */
-    private volatile int length = 0;
-    /** Indicates amount of fuel after all waiting clients is served. */
-    private volatile double availableAmount;
+  public FastGasStation(PumpDriver driver, Executor executor, DispatchMode mode,
+      TransactionJournal journal) {
+    if (driver == null) {
+      throw new IllegalArgumentException("driver cannot be null");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null");
+    }
+    if (mode == null) {
+      throw new IllegalArgumentException("mode cannot be null");
+    }
+    this.driver = driver;
+    this.executor = executor;
+    this.journal = journal;
+    dispatcher = mode.create(indexes);
+    for (var type : GasType.values()) {
+      indexes.put(type, new PumpIndex());
+      refilled.put(type, new AtomicReference<>(new CompletableFuture<>()));
+    }
+    if (journal != null) {
+      restore(journal.getRecoveredState());
+    }
+  }
 
-    /**
-     * Initializes the queue.
-     */
-    public GasPumpQueue(GasPump pump) {
-      this.pump.add(pump);
-      availableAmount = pump.getRemainingAmount();
+  /**
+   * Restores pumps with their ids and statistics from the journal.
+   */
+  private void restore(JournalState state) {
+    var restored = new ArrayList<GasPumpQueue>();
+    for (var recovered : state.pumps()) {
+      restored.add(new GasPumpQueue(new GasPump(recovered.type, recovered.remainingAmount),
+          recovered.id, executor));
     }
+    restorePumps(restored);
+    var restoredStats = state.getStats();
+    stats.add(restoredStats.getNumberOfSales(), state.revenueUnits(),
+        restoredStats.getNumberOfCancellationsNoGas(),
+        restoredStats.getNumberOfCancellationsTooExpensive(),
+        restoredStats.getNumberOfCancellationsLineFull(),
+        restoredStats.getNumberOfCancellationsTimedOut());
   }
 
-  /** Pumps added to GasStation to avoid duplication. */
-  private final Set<GasPump> pumps = new HashSet<>();
-  // assuming that price does not change after setup,
-  //   othervwise need to synchronize checkout and set price.
-  private final Map<GasType, Double> price = new EnumMap<>(GasType.class);
-  private final Map<GasType, List<GasPumpQueue>> queues = new EnumMap<>(GasType.class);
-  private final Object statsLock = new Object();
-  private volatile int salesCount = 0;
-  private volatile int cancelNotEnough = 0;
-  private volatile int cancelTooExpensive = 0;
-  private volatile double revenue = 0.0;
+  /**
+   * Publishes restored pumps at once instead of adding them one by one.
+   */
+  private void restorePumps(List<GasPumpQueue> restored) {
+    pumps.restore(restored);
+    var byType = new EnumMap<GasType, List<GasPumpQueue>>(GasType.class);
+    for (var queue : restored) {
+      byType.computeIfAbsent(queue.type, type -> new ArrayList<>()).add(queue);
+    }
+    byType.forEach((type, queues) -> indexes.get(type).addAll(queues));
+  }
 
   /**
-   * Initializes queues map.
+   * Writes prices, pumps and statistics to the file on station executor without stopping sales.
+   * Pumps store fuel that is not reserved by clients in line, removed pumps are skipped.
+   * Statistics are read consistently, but purchases running meanwhile may be counted
+   * in statistics and not in fuel of pumps or the other way.
+   *
+   * @return future completed when the file is written
    */
-  public FastGasStation() {
+  public CompletableFuture<Void> writeSnapshot(Path file) {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+    return CompletableFuture.runAsync(() -> {
+      try {
+        takeSnapshot().write(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, executor);
+  }
+
+  private StationSnapshot takeSnapshot() {
+    var queues = new ArrayList<GasPumpQueue>();
+    for (var queue : pumps.snapshot().queues.values()) {
+      if (!queue.isClosed()) {
+        queues.add(queue);
+      }
+    }
+    int size = queues.size();
+    var ids = new int[size];
+    var types = new GasType[size];
+    var amounts = new double[size];
+    for (int i = 0; i < size; i++) {
+      var queue = queues.get(i);
+      ids[i] = queue.id;
+      types[i] = queue.type;
+      amounts[i] = Math.max(queue.availableAmount(), 0.0);
+    }
+    var typePrices = new double[GasType.values().length];
+    for (var type : GasType.values()) {
+      typePrices[type.ordinal()] = prices.get(type);
+    }
+    var current = stats.snapshot();
+    return new StationSnapshot(current.getNumberOfSales(),
+        StationStats.toUnits(current.getRevenue()), current.getNumberOfCancellationsNoGas(),
+        current.getNumberOfCancellationsTooExpensive(), current.getNumberOfCancellationsLineFull(),
+        current.getNumberOfCancellationsTimedOut(), typePrices, ids, types, amounts);
+  }
+
+  /**
+   * Restores prices, pumps and statistics from the file written by {@link #writeSnapshot}.
+   * The file is read at once and pumps are published together.
+   * Station must have no pumps and no statistics yet,
+   * journaled station is restored from its journal instead.
+   */
+  public void loadSnapshot(Path file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+    if (journal != null) {
+      throw new IllegalStateException("journaled station is restored from its journal");
+    }
+    if (!pumps.snapshot().queues.isEmpty() || stats.sales() != 0
+        || stats.cancelNotEnough() != 0 || stats.cancelTooExpensive() != 0
+        || stats.cancelLineFull() != 0 || stats.cancelTimedOut() != 0) {
+      throw new IllegalStateException("snapshot can only be loaded into new station");
+    }
+    var snapshot = StationSnapshot.read(file);
     for (var type : GasType.values()) {
-      queues.put(type, new ArrayList<>());
+      if (snapshot.prices[type.ordinal()] != PriceTable.NOT_SET) {
+        prices.set(type, snapshot.prices[type.ordinal()]);
+      }
     }
+    var restored = new ArrayList<GasPumpQueue>(snapshot.ids.length);
+    for (int i = 0; i < snapshot.ids.length; i++) {
+      var pump = new GasPump(snapshot.types[i], snapshot.amounts[i]);
+      restored.add(new GasPumpQueue(pump, snapshot.ids[i], executor));
+    }
+    restorePumps(restored);
+    stats.add(snapshot.sales, snapshot.revenueUnits, snapshot.cancelNotEnough,
+        snapshot.cancelTooExpensive, snapshot.cancelLineFull, snapshot.cancelTimedOut);
   }
 
   @Override
@@ -82,15 +282,166 @@ public class FastGasStation implements GasStation {
     if (pump.getRemainingAmount() < 0.0) {
       throw new IllegalArgumentException("pump gas amount muste be non-negative");
     }
-    if (pumps.contains(pump)) {
+    if (closed) {
+      throw new IllegalStateException("station is closed");
+    }
+    var queue = pumps.add(pump, executor);
+    if (queue == null) {
       //possible check
       //throw new IllegalArgumentException("pump can only be added once");
       return;
     }
-    pumps.add(pump);
+    if (journal != null) {
+      journal.append(TransactionJournal.PUMP_ADDED, queue.type, queue.id,
+          pump.getRemainingAmount(), 0.0);
+    }
+    indexes.get(pump.getGasType()).add(queue);
+    if (closed) {
+      close(queue); // station was closed meanwhile
+    }
+  }
+
+  /**
+   * Closes every pump, so new clients are cancelled as not enough gas.
+   * Clients already in line are served, then workers of the pumps stop,
+   * see {@link DispatchMode#WORKERS}. Pumps stay in the station and no pump can be added.
+   * Closing again does nothing.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    for (var queue : pumps.snapshot().queues.values()) {
+      close(queue);
+    }
+  }
+
+  private void close(GasPumpQueue queue) {
+    queue.close();
+    indexes.get(queue.type).update(queue); // clients stop selecting the pump
+  }
+
+  /**
+   * Removes the pump without interrupting clients.
+   * Pump takes no new clients at once, clients already in its line are served,
+   * then the pump is removed from the station.
+   * Waiting clients may be moved to other pumps if {@link DispatchMode} allows it.
+   *
+   * @return future completed with true when the pump is removed,
+   *     or with false if the pump was not added to the station
+   */
+  public CompletableFuture<Boolean> removeGasPump(GasPump pump) {
+    if (pump == null) {
+      throw new IllegalArgumentException("pump cannot be null");
+    }
+    var queue = pumps.snapshot().queues.get(pump);
+    if (queue == null) {
+      return CompletableFuture.completedFuture(false);
+    }
+    var index = indexes.get(queue.type);
+    close(queue);
+    return queue.drained.thenApplyAsync(drained -> {
+      index.remove(queue);
+      if (pumps.remove(pump) && journal != null) {
+        journal.append(TransactionJournal.PUMP_REMOVED, queue.type, queue.id, 0.0, 0.0);
+      }
+      return true;
+    }, executor);
+  }
+
+  /**
+   * Pours gas delivered by a tanker into the pump while station serves clients.
+   * Tanker waits until client at the pump finishes pumping, the next client waits
+   * while gas is poured, other pumps are not affected.
+   * Poured gas is available to new clients at once, clients waiting for a refill are woken up.
+   * {@link GasPump} cannot take gas in, so its remaining amount does not include refills
+   * and goes below zero once refilled gas is pumped, see {@link #getRemainingAmount}.
+   * Such pump is rejected by {@link #addGasPump} after it was removed,
+   * as its negative amount cannot be told from an invalid pump.
+   *
+   * @return false if the pump is not in the station or is being removed
+   */
+  public boolean refill(GasPump pump, double amountInLiters) {
+    var queue = refillQueue(pump, amountInLiters);
+    if (queue == null) {
+      return false;
+    }
+    queue.addPendingRefill(amountInLiters);
+    return pour(queue, amountInLiters);
+  }
+
+  /**
+   * Announces refill of the pump and pours it after delay on station executor,
+   * see {@link #refill}.
+   * Clients buying with a deadline wait for announced refills if no pump has enough gas now.
+   *
+   * @return future completed with result of the refill
+   */
+  public CompletableFuture<Boolean> scheduleRefill(GasPump pump, double amountInLiters,
+      long delay, TimeUnit unit) {
+    if (unit == null) {
+      throw new IllegalArgumentException("unit cannot be null");
+    }
+    var queue = refillQueue(pump, amountInLiters);
+    if (queue == null) {
+      return CompletableFuture.completedFuture(false);
+    }
+    queue.addPendingRefill(amountInLiters);
+    return CompletableFuture.supplyAsync(() -> pour(queue, amountInLiters),
+        CompletableFuture.delayedExecutor(delay, unit, executor));
+  }
+
+  /**
+   * Returns gas in the pump including gas poured by tankers,
+   * which {@link GasPump#getRemainingAmount()} does not count.
+   * Fuel reserved by clients in line is included until they pump it.
+   */
+  public double getRemainingAmount(GasPump pump) {
+    var queue = pump == null ? null : pumps.snapshot().queues.get(pump);
+    if (queue == null) {
+      throw new IllegalArgumentException("pump is not in the station");
+    }
+    return queue.remainingAmount();
+  }
+
+  /**
+   * Validates refill and finds queue of the pump.
+   *
+   * @return null if pump is not in the station
+   */
+  private GasPumpQueue refillQueue(GasPump pump, double amountInLiters) {
+    if (pump == null) {
+      throw new IllegalArgumentException("pump cannot be null");
+    }
+    if (amountInLiters <= 0.0) {
+      throw new IllegalArgumentException("refilled amount must be positive");
+    }
+    return pumps.snapshot().queues.get(pump);
+  }
 
-    var type = pump.getGasType();
-    queues.get(type).add(new GasPumpQueue(pump));
+  /**
+   * Pours announced refill into the pump and makes it available.
+   * Fuel becomes available after it is in the pump, then waiting clients are woken up,
+   * and only then the announcement is removed, so a client that finds no announced refill
+   * either sees the new fuel or was woken up.
+   */
+  private boolean pour(GasPumpQueue queue, double amountInLiters) {
+    queue.tank.lock();
+    try {
+      driver.refill(queue.gasPump, amountInLiters);
+      queue.addRefilled(amountInLiters);
+    } finally {
+      queue.tank.unlock();
+    }
+    boolean poured = queue.refill(amountInLiters);
+    if (poured) {
+      indexes.get(queue.type).update(queue);
+      if (journal != null) {
+        journal.append(TransactionJournal.REFILL, queue.type, queue.id, amountInLiters, 0.0);
+      }
+    }
+    refilled.get(queue.type).getAndSet(new CompletableFuture<>()).complete(null);
+    queue.addPendingRefill(-amountInLiters);
+    return poured;
   }
 
   // Important:
@@ -100,12 +451,245 @@ public class FastGasStation implements GasStation {
   // Bit it may break interface contract.
   @Override
   public Collection<GasPump> getGasPumps() {
-    return new HashSet<>(pumps);
+    return new HashSet<>(pumps.snapshot().pumps);
   }
 
   @Override
   public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter)
       throws NotEnoughGasException, GasTooExpensiveException {
+    var reservation = new Reservation();
+    int outcome = acceptPrice(type, amountInLiters, maxPricePerLiter, reservation);
+    reserve(type, amountInLiters, outcome, reservation);
+    return serve(reservation.queue, amountInLiters, reservation.price);
+  }
+
+  /**
+   * Same as {@link #buyGas(GasType, double, double)} but the client leaves the line
+   * if it does not reach a pump before timeout, its reserved fuel is available again.
+   * If no pump has enough gas, but announced refill of a pump would be enough,
+   * client waits for refills until timeout instead of being cancelled.
+   * Pumping that started is always finished.
+   *
+   * @throws TimeoutException if client left the line or no refill came in time,
+   *     counted as cancellation by timeout
+   */
+  public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter,
+      long timeout, TimeUnit unit)
+      throws NotEnoughGasException, GasTooExpensiveException, TimeoutException {
+    if (unit == null) {
+      throw new IllegalArgumentException("unit cannot be null");
+    }
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    var reservation = new Reservation();
+    int outcome = acceptPrice(type, amountInLiters, maxPricePerLiter, reservation);
+    if (outcome == Outcome.SOLD) {
+      outcome = reserveOrWaitForRefill(type, amountInLiters, deadline, reservation);
+    }
+    throwCancellation(outcome);
+    var selectedQueue = reservation.queue;
+    var servingQueue = dispatcher.serve(
+        selectedQueue, amountInLiters, metrics.start(), deadline, this::pumpOwned);
+    if (servingQueue == null) {
+      selectedQueue.cancel(amountInLiters);
+      indexes.get(type).update(selectedQueue);
+      stats.addCancelTimedOut();
+      recordCancel(TransactionJournal.CANCEL_TIMED_OUT, type, selectedQueue, amountInLiters);
+      throw new TimeoutException("client did not reach a pump in time");
+    }
+    return sell(servingQueue, amountInLiters, reservation.price);
+  }
+
+  /**
+   * Simulates many customers buying gas at once.
+   * Requests are grouped by gas type: price is read once per group
+   * and fuel is reserved for all requests before anyone starts pumping.
+   * Pumping runs in parallel on station executor, one client per pump at a time,
+   * statistics are updated once for the whole batch.
+   * Cancellations are reported as {@link Outcome} codes instead of exceptions.
+   * Interruption does not stop waiting for the batch, interrupt status is kept.
+   *
+   * @param types gas type of every request
+   * @param amountsInLiters amount of every request
+   * @param maxPricesPerLiter maximum price of every request
+   * @param outcomes filled with {@link Outcome} code of every request
+   * @return cost of every request, 0 for cancelled ones
+   */
+  public double[] buyGas(GasType[] types, double[] amountsInLiters, double[] maxPricesPerLiter,
+      int[] outcomes) {
+    if (types == null || amountsInLiters == null || maxPricesPerLiter == null
+        || outcomes == null) {
+      throw new IllegalArgumentException("arrays cannot be null");
+    }
+    int size = types.length;
+    if (amountsInLiters.length != size || maxPricesPerLiter.length != size
+        || outcomes.length != size) {
+      throw new IllegalArgumentException("arrays must have the same length");
+    }
+    // validate everything and read prices once before reserving anything
+    var typePrices = new double[GasType.values().length];
+    for (int i = 0; i < size; i++) {
+      checkArguments(types[i], amountsInLiters[i], maxPricesPerLiter[i]);
+      var type = types[i];
+      if (typePrices[type.ordinal()] == PriceTable.NOT_SET && !indexes.get(type).isEmpty()) {
+        typePrices[type.ordinal()] = prices.get(type);
+        if (typePrices[type.ordinal()] == PriceTable.NOT_SET) {
+          throw new IllegalStateException("price is not set for this type of gas");
+        }
+      }
+    }
+
+    var reserved = new GasPumpQueue[size];
+    var reservation = new Reservation();
+    int pumping = 0;
+    long cancelNotEnough = 0;
+    long cancelTooExpensive = 0;
+    long cancelLineFull = 0;
+    for (var type : GasType.values()) {
+      var index = indexes.get(type);
+      int maxLength = admission.get(type);
+      double typePrice = typePrices[type.ordinal()];
+      for (int i = 0; i < size; i++) {
+        if (types[i] != type) {
+          continue;
+        }
+        if (typePrice == PriceTable.NOT_SET) {
+          outcomes[i] = Outcome.NOT_ENOUGH_GAS;
+          cancelNotEnough++;
+          recordCancel(TransactionJournal.CANCEL_NOT_ENOUGH, type, amountsInLiters[i]);
+        } else if (typePrice > maxPricesPerLiter[i]) {
+          outcomes[i] = Outcome.TOO_EXPENSIVE;
+          cancelTooExpensive++;
+          recordCancel(TransactionJournal.CANCEL_TOO_EXPENSIVE, type, amountsInLiters[i]);
+        } else {
+          outcomes[i] = tryReserve(index, amountsInLiters[i], maxLength, reservation);
+          if (outcomes[i] == Outcome.NOT_ENOUGH_GAS) {
+            cancelNotEnough++;
+            recordCancel(TransactionJournal.CANCEL_NOT_ENOUGH, type, amountsInLiters[i]);
+          } else if (outcomes[i] == Outcome.LINE_FULL) {
+            cancelLineFull++;
+            recordCancel(TransactionJournal.CANCEL_LINE_FULL, type, reservation.queue,
+                amountsInLiters[i]);
+          } else {
+            reserved[i] = reservation.queue;
+            pumping++;
+          }
+        }
+      }
+    }
+
+    var served = new CountDownLatch(pumping);
+    var failure = new AtomicReference<RuntimeException>();
+    for (int i = 0; i < size; i++) {
+      if (reserved[i] != null) {
+        var selectedQueue = reserved[i];
+        var type = types[i];
+        double amountInLiters = amountsInLiters[i];
+        selectedQueue.lane.execute(() -> {
+          try {
+            var servingQueue = pumpInLine(selectedQueue, amountInLiters);
+            recordSale(servingQueue, amountInLiters, typePrices[type.ordinal()] * amountInLiters);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            served.countDown();
+          }
+        });
+      }
+    }
+    boolean interrupted = false;
+    while (served.getCount() > 0) {
+      try {
+        served.await();
+      } catch (InterruptedException e) {
+        interrupted = true; // keep waiting, status is restored below
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+
+    var costs = new double[size];
+    long revenueUnits = 0;
+    for (int i = 0; i < size; i++) {
+      if (reserved[i] != null) {
+        costs[i] = typePrices[types[i].ordinal()] * amountsInLiters[i];
+        revenueUnits += StationStats.toUnits(costs[i]);
+      }
+    }
+    stats.add(pumping, revenueUnits, cancelNotEnough, cancelTooExpensive, cancelLineFull, 0);
+    return costs;
+  }
+
+  /**
+   * Same as {@link #buyGas(GasType, double, double)} but reports cancellations
+   * as {@link Outcome} codes instead of exceptions.
+   * Invalid arguments are still thrown.
+   *
+   * @param result receives outcome and cost, can be reused between calls
+   * @return {@link Outcome} code of the purchase
+   */
+  public int tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter,
+      PurchaseResult result) {
+    if (result == null) {
+      throw new IllegalArgumentException("result cannot be null");
+    }
+    var reservation = result.reservation;
+    int outcome = acceptPrice(type, amountInLiters, maxPricePerLiter, reservation);
+    if (outcome == Outcome.SOLD) {
+      outcome = reserveOrCancel(type, amountInLiters, reservation);
+    }
+    double cost = outcome == Outcome.SOLD
+        ? serve(reservation.queue, amountInLiters, reservation.price) : 0.0;
+    result.set(outcome, cost);
+    return outcome;
+  }
+
+  /**
+   * Simulates a customer wanting to buy a specific amount of gas without blocking the caller.
+   * Fuel and place in line are reserved immediately,
+   * waiting in line and pumping are done on executor of the station one client per pump,
+   * or by worker of the pump in {@link DispatchMode#WORKERS}.
+   * Invalid arguments are thrown immediately.
+   *
+   * @return future completed with the price the customer has to pay,
+   *     or with {@link NotEnoughGasException}, {@link LineFullException}
+   *     or {@link GasTooExpensiveException}
+   */
+  public CompletableFuture<Double> buyGasAsync(
+      GasType type, double amountInLiters, double maxPricePerLiter) {
+    var result = new CompletableFuture<Double>();
+    var reservation = new Reservation();
+    int outcome = acceptPrice(type, amountInLiters, maxPricePerLiter, reservation);
+    try {
+      reserve(type, amountInLiters, outcome, reservation);
+    } catch (NotEnoughGasException | GasTooExpensiveException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+    double acceptedPrice = reservation.price;
+    dispatcher.submit(reservation.queue, amountInLiters, metrics.start(), this::pumpOwned,
+        (servingQueue, failure) -> {
+          if (failure != null) {
+            result.completeExceptionally(failure);
+            return;
+          }
+          try {
+            result.complete(sell(servingQueue, amountInLiters, acceptedPrice));
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  /**
+   * Validates request arguments.
+   */
+  static void checkArguments(
+      GasType type, double amountInLiters, double maxPricePerLiter) {
     if (type == null) {
       throw new IllegalArgumentException("GasType cannot be null");
     }
@@ -115,96 +699,491 @@ public class FastGasStation implements GasStation {
     if (maxPricePerLiter <= 0.0) {
       throw new IllegalArgumentException("price must be positive number");
     }
+  }
 
-    if (queues.get(type).isEmpty()) {
-      synchronized (statsLock) {
-        cancelNotEnough++;
-      }
-      throw new NotEnoughGasException();
+  /**
+   * Reserves fuel and place in line of suitable pump if price was accepted,
+   * otherwise throws cancellation.
+   *
+   * @param outcome result of {@link #acceptPrice}
+   * @param reservation receives reserved pump
+   */
+  private void reserve(GasType type, double amountInLiters, int outcome,
+      Reservation reservation) throws NotEnoughGasException, GasTooExpensiveException {
+    if (outcome == Outcome.SOLD) {
+      outcome = reserveOrCancel(type, amountInLiters, reservation);
     }
-    if (price.get(type) == null) {
+    throwCancellation(outcome);
+  }
+
+  /**
+   * Throws exception of the cancellation if purchase was cancelled.
+   * Cancellation exceptions are created without stack trace as they are expected.
+   */
+  private static void throwCancellation(int outcome)
+      throws NotEnoughGasException, GasTooExpensiveException {
+    switch (outcome) {
+      case Outcome.SOLD:
+        return;
+      case Outcome.TOO_EXPENSIVE:
+        throw new StacklessGasTooExpensiveException();
+      case Outcome.LINE_FULL:
+        throw new LineFullException(false);
+      default:
+        throw new StacklessNotEnoughGasException();
+    }
+  }
+
+  /**
+   * Validates request and checks that gas is sold at requested price, counts cancellations.
+   * Price is read once, client pays exactly this price even if it changes while pumping.
+   *
+   * @param reservation receives accepted price if purchase can proceed
+   * @return {@link Outcome#SOLD} if purchase can proceed, otherwise {@link Outcome} code
+   *     of the counted cancellation
+   */
+  int acceptPrice(GasType type, double amountInLiters, double maxPricePerLiter,
+      Reservation reservation) {
+    checkArguments(type, amountInLiters, maxPricePerLiter);
+
+    if (indexes.get(type).isEmpty()) {
+      stats.addCancelNotEnough();
+      recordCancel(TransactionJournal.CANCEL_NOT_ENOUGH, type, amountInLiters);
+      return Outcome.NOT_ENOUGH_GAS;
+    }
+    double typePrice = prices.get(type);
+    if (typePrice == PriceTable.NOT_SET) {
       throw new IllegalStateException("price is not set for this type of gas");
     }
-    if (price.get(type) > maxPricePerLiter) {
-      synchronized (statsLock) {
-        cancelTooExpensive++;
-      }
-      throw new GasTooExpensiveException();
-    }
-
-    GasPumpQueue selectedQueue = null;
-    synchronized (queues.get(type)) { // grab lock to find suitable pump and reserve fuel.
-      for (GasPumpQueue queue : queues.get(type)) {
-        // enough gas
-        if (queue.availableAmount > amountInLiters
-            // first suitable pump
-            && (selectedQueue == null
-            // less clients in line
-            || selectedQueue.length > queue.length
-            // line is equal but this pump has more fuel
-            || selectedQueue.length == queue.length
-            && selectedQueue.availableAmount < queue.availableAmount)) {
-          selectedQueue = queue;
-        }
+    if (typePrice > maxPricePerLiter) {
+      stats.addCancelTooExpensive();
+      recordCancel(TransactionJournal.CANCEL_TOO_EXPENSIVE, type, amountInLiters);
+      return Outcome.TOO_EXPENSIVE;
+    }
+    reservation.price = typePrice;
+    return Outcome.SOLD;
+  }
+
+  /**
+   * Finds suitable pump and reserves fuel and place in its line, counts cancellation.
+   *
+   * @param reservation receives reserved pump
+   * @return {@link Outcome#SOLD} if fuel was reserved, {@link Outcome#NOT_ENOUGH_GAS}
+   *     or {@link Outcome#LINE_FULL} if lines of pumps with enough fuel are full
+   */
+  int reserveOrCancel(GasType type, double amountInLiters, Reservation reservation) {
+    long start = metrics.start();
+    int outcome = tryReserve(indexes.get(type), amountInLiters, admission.get(type),
+        reservation);
+    metrics.recordReservation(type, start);
+    return countCancel(type, amountInLiters, outcome, reservation);
+  }
+
+  /**
+   * Same as {@link #reserveOrCancel} but waits for announced refills
+   * while some of them would give a pump enough fuel.
+   * Interrupted client stops waiting and is cancelled as not enough gas
+   * with interrupt status kept.
+   *
+   * @throws TimeoutException if deadline passed, counted as cancellation by timeout
+   */
+  private int reserveOrWaitForRefill(GasType type, double amountInLiters, long deadline,
+      Reservation reservation) throws TimeoutException {
+    var index = indexes.get(type);
+    long start = metrics.start();
+    while (true) {
+      // read before reservation, so refill finished after it wakes the client up
+      var refill = refilled.get(type).get();
+      int outcome = tryReserve(index, amountInLiters, admission.get(type), reservation);
+      if (outcome != Outcome.NOT_ENOUGH_GAS
+          || !refill.isDone() && !isRefillPending(index, amountInLiters)) {
+        metrics.recordReservation(type, start);
+        return countCancel(type, amountInLiters, outcome, reservation);
       }
-      if (selectedQueue == null) {
-        synchronized (statsLock) {
-          cancelNotEnough++;
-        }
-        throw new NotEnoughGasException();
-      }
-      // reserve fuel and queue position;
-      selectedQueue.length++;
-      selectedQueue.availableAmount -= amountInLiters;
-    } // release (queues.get(type)) lock for other threads while waiting in line and pumping.
-    GasPump pump = null;
-    while (pump == null) {
       try {
-        pump = selectedQueue.pump.take();
-      } catch (InterruptedException ignored) {
-        // ignore and retry
+        refill.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        stats.addCancelTimedOut();
+        recordCancel(TransactionJournal.CANCEL_TIMED_OUT, type, amountInLiters);
+        throw new TimeoutException("no refill came in time");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        metrics.recordReservation(type, start);
+        // stops waiting
+        return countCancel(type, amountInLiters, Outcome.NOT_ENOUGH_GAS, reservation);
+      } catch (ExecutionException ignored) {
+        // refills are never completed exceptionally
       }
     }
-    pump.pumpGas(amountInLiters);
-    synchronized (queues.get(type)) { // grab lock to exit line after pumping
-      selectedQueue.length--;
+  }
+
+  /**
+   * Checks if announced refill would give some pump more fuel than requested.
+   */
+  private static boolean isRefillPending(PumpIndex index, double amountInLiters) {
+    for (var queue : index.queues()) {
+      double pending = queue.pendingRefill();
+      if (pending > 0.0 && queue.availableAmount() + pending > amountInLiters) {
+        return true;
+      }
     }
-    selectedQueue.pump.add(pump); // return pump for the next pump in line
+    return false;
+  }
 
-    double cost = price.get(type) * amountInLiters;
-    synchronized (statsLock) { // grab lock to checkout
-      salesCount++;
-      revenue += cost;
+  /**
+   * Counts cancellation if fuel was not reserved.
+   *
+   * @param outcome result of {@link #tryReserve}
+   * @param reservation filled by {@link #tryReserve}
+   */
+  private int countCancel(GasType type, double amountInLiters, int outcome,
+      Reservation reservation) {
+    if (outcome == Outcome.NOT_ENOUGH_GAS) {
+      stats.addCancelNotEnough();
+      recordCancel(TransactionJournal.CANCEL_NOT_ENOUGH, type, amountInLiters);
+    } else if (outcome == Outcome.LINE_FULL) {
+      stats.addCancelLineFull();
+      recordCancel(TransactionJournal.CANCEL_LINE_FULL, type, reservation.queue, amountInLiters);
     }
+    return outcome;
+  }
+
+  /**
+   * Finds suitable pump and reserves fuel and place in its line,
+   * retries if other client was faster.
+   * Selected pump has the shortest line, so when its line is full the client is turned away.
+   * Line may have grown after the pump was selected while the index still shows it shorter,
+   * then the index is refreshed and selection repeated, the client is turned away
+   * only if the same pump is selected again from the current index.
+   *
+   * @param reservation receives reserved pump or the pump with full line,
+   *     null if no pump had enough fuel
+   * @return {@link Outcome#SOLD} if fuel was reserved, {@link Outcome#NOT_ENOUGH_GAS}
+   *     or {@link Outcome#LINE_FULL} if line of the selected pump is full
+   */
+  private static int tryReserve(PumpIndex index, double amountInLiters, int maxLength,
+      Reservation reservation) {
+    reservation.queue = null;
+    GasPumpQueue full = null;
+    while (true) {
+      var selectedQueue = index.select(amountInLiters);
+      if (selectedQueue == null) {
+        return Outcome.NOT_ENOUGH_GAS;
+      }
+      int result = selectedQueue.tryReserve(amountInLiters, maxLength);
+      if (result == GasPumpQueue.RESERVED) {
+        index.update(selectedQueue);
+        reservation.queue = selectedQueue;
+        return Outcome.SOLD;
+      }
+      if (result == GasPumpQueue.LINE_FULL) {
+        if (selectedQueue == full) {
+          reservation.queue = full;
+          return Outcome.LINE_FULL;
+        }
+        full = selectedQueue;
+        index.refresh(selectedQueue);
+      } else {
+        Thread.onSpinWait();
+      }
+    }
+  }
+
+  /**
+   * Checks that price of the type is set and the client pays at least this price.
+   */
+  boolean isPriceAccepted(GasType type, double maxPricePerLiter) {
+    double typePrice = prices.get(type);
+    return typePrice != PriceTable.NOT_SET && typePrice <= maxPricePerLiter;
+  }
+
+  /**
+   * Finds pump the client would select now without reserving anything.
+   *
+   * @return null if no pump has enough fuel
+   */
+  GasPumpQueue selectPump(GasType type, double amountInLiters) {
+    return indexes.get(type).select(amountInLiters);
+  }
+
+  /**
+   * Waits in line of reserved pump, pumps gas and checks out.
+   */
+  private double serve(GasPumpQueue selectedQueue, double amountInLiters,
+      double acceptedPrice) {
+    return sell(pumpInLine(selectedQueue, amountInLiters), amountInLiters, acceptedPrice);
+  }
+
+  /**
+   * Checks out client that pumped gas.
+   */
+  private double sell(GasPumpQueue servingQueue, double amountInLiters, double acceptedPrice) {
+    double cost = acceptedPrice * amountInLiters;
+    stats.addSale(cost);
+    recordSale(servingQueue, amountInLiters, cost);
     return cost;
   }
 
+  /**
+   * Leaves line of the pump and checks out client that pumped gas outside of the station,
+   * see {@link StationSimulation}.
+   */
+  void checkout(GasPumpQueue servingQueue, GasType type, double amountInLiters,
+      double acceptedPrice) {
+    servingQueue.leave();
+    indexes.get(type).update(servingQueue);
+    sell(servingQueue, amountInLiters, acceptedPrice);
+  }
+
+  /**
+   * Records sale in the journal and rolling statistics and publishes its event.
+   */
+  private void recordSale(GasPumpQueue servingQueue, double amountInLiters, double cost) {
+    if (journal != null) {
+      journal.append(TransactionJournal.SALE, servingQueue.type, servingQueue.id,
+          amountInLiters, cost);
+    }
+    metrics.recordSale(servingQueue, cost);
+    var publisher = events;
+    if (publisher != null) {
+      publisher.publish(Outcome.SOLD, servingQueue.type, servingQueue.id, amountInLiters, cost);
+    }
+  }
+
+  /**
+   * Records cancellation in the journal and rolling statistics and publishes its event.
+   *
+   * @param kind {@link TransactionJournal} kind of the cancellation
+   */
+  private void recordCancel(byte kind, GasType type, double amountInLiters) {
+    recordCancel(kind, type, null, amountInLiters);
+  }
+
+  /**
+   * Same as {@link #recordCancel(byte, GasType, double)} but also counts the cancellation
+   * in rolling statistics of the pump the client left or was turned away from.
+   *
+   * @param queue the pump, null if there is none
+   */
+  private void recordCancel(byte kind, GasType type, GasPumpQueue queue,
+      double amountInLiters) {
+    if (journal != null) {
+      journal.append(kind, type, -1, amountInLiters, 0.0);
+    }
+    metrics.recordCancel(type, queue);
+    var publisher = events;
+    if (publisher != null) {
+      publisher.publish(outcome(kind), type, -1, amountInLiters, 0.0);
+    }
+  }
+
+  private static int outcome(byte kind) {
+    switch (kind) {
+      case TransactionJournal.CANCEL_NOT_ENOUGH:
+        return Outcome.NOT_ENOUGH_GAS;
+      case TransactionJournal.CANCEL_TOO_EXPENSIVE:
+        return Outcome.TOO_EXPENSIVE;
+      case TransactionJournal.CANCEL_LINE_FULL:
+        return Outcome.LINE_FULL;
+      case TransactionJournal.CANCEL_TIMED_OUT:
+        return Outcome.TIMED_OUT;
+      default:
+        throw new IllegalArgumentException("not a cancellation " + kind);
+    }
+  }
+
+  /**
+   * Waits in line of reserved pump and pumps gas.
+   *
+   * @return pump that served the client
+   */
+  private GasPumpQueue pumpInLine(GasPumpQueue selectedQueue, double amountInLiters) {
+    return dispatcher.serve(selectedQueue, amountInLiters, metrics.start(), this::pumpOwned);
+  }
+
+  /**
+   * Pumps gas for the client at the pump and leaves the line,
+   * called by the dispatcher on the thread of the client or by worker owning the pump.
+   * Waits if tanker is pouring gas into the pump, tanker that already waits goes first.
+   * Client leaves the line even if pumping fails.
+   */
+  private void pumpOwned(GasPumpQueue servingQueue, double amountInLiters, long start) {
+    start = metrics.recordQueueWait(servingQueue, start);
+    var tank = servingQueue.tank;
+    if (tank.hasQueuedThreads() || !tank.tryLock()) {
+      tank.lock();
+      start = metrics.recordRefillStall(servingQueue, start);
+    }
+    try {
+      driver.pump(servingQueue.gasPump, amountInLiters);
+    } finally {
+      tank.unlock();
+      // exit line after pumping, failed pumping may have taken part of the fuel already
+      servingQueue.leave();
+      indexes.get(servingQueue.type).update(servingQueue);
+    }
+    metrics.recordPumping(servingQueue, start);
+  }
+
   @Override
   public double getRevenue() {
-    return revenue;
+    return stats.revenue();
   }
 
   @Override
   public int getNumberOfSales() {
-    return salesCount;
+    return (int) stats.sales();
   }
 
   @Override
   public int getNumberOfCancellationsNoGas() {
-    return cancelNotEnough;
+    return (int) stats.cancelNotEnough();
   }
 
   @Override
   public int getNumberOfCancellationsTooExpensive() {
-    return cancelTooExpensive;
+    return (int) stats.cancelTooExpensive();
+  }
+
+  /**
+   * Number of clients turned away by admission control, see {@link #setMaxLineLength}.
+   */
+  public int getNumberOfCancellationsLineFull() {
+    return (int) stats.cancelLineFull();
+  }
+
+  /**
+   * Number of clients that left the line when their deadline passed.
+   */
+  public int getNumberOfCancellationsTimedOut() {
+    return (int) stats.cancelTimedOut();
+  }
+
+  /**
+   * Limits number of clients in line of every pump of the type, the client at the pump included.
+   * Clients that would exceed the limit at the pump with the shortest line are turned away
+   * with {@link LineFullException} instead of waiting, clients already in line stay.
+   *
+   * @param maxLength at least 1, {@link Integer#MAX_VALUE} removes the limit
+   */
+  public void setMaxLineLength(GasType type, int maxLength) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    if (maxLength < 1) {
+      throw new IllegalArgumentException("line length must be positive");
+    }
+    admission.set(type, maxLength);
+  }
+
+  /**
+   * Maximum line length of pumps of the type, {@link Integer#MAX_VALUE} if not limited.
+   */
+  public int getMaxLineLength(GasType type) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    return admission.get(type);
+  }
+
+  /**
+   * Returns summary of fuel of the type available for new clients without locking,
+   * clients can check it cheaply before buying.
+   * Requests for more fuel than any pump has are cancelled by the same summary.
+   */
+  public Availability getAvailability(GasType type) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    var index = indexes.get(type);
+    return new Availability(type, index.maxAvailableAmount(), index.totalAvailableAmount(),
+        index.idlePumps());
+  }
+
+  /**
+   * Publishes every following sale and cancellation of the station to the publisher,
+   * null stops publishing.
+   * Clients are not delayed by slow subscribers unless the publisher blocks on overflow.
+   */
+  public void setEventPublisher(SalesEventPublisher publisher) {
+    events = publisher;
+  }
+
+  /**
+   * Returns all statistics counters read at once.
+   */
+  public StatsSnapshot getStats() {
+    return stats.snapshot();
+  }
+
+  /**
+   * Enables or disables recording of hot path metrics, disabled by default.
+   * Disabled metrics do not read the clock and cost almost nothing.
+   */
+  public void setMetricsEnabled(boolean enabled) {
+    metrics.setEnabled(enabled);
+  }
+
+  public boolean isMetricsEnabled() {
+    return metrics.isEnabled();
+  }
+
+  /**
+   * Returns durations of reservation, waiting in line and pumping
+   * recorded while metrics were enabled, and current line lengths.
+   */
+  public MetricsSnapshot getMetrics() {
+    return metrics.snapshot();
+  }
+
+  /**
+   * Returns sales and cancellations of the type in the last time window
+   * counted while metrics were enabled, cheap enough to poll every second.
+   */
+  public WindowStats getWindowStats(GasType type, StatsWindow window) {
+    if (type == null) {
+      throw new IllegalArgumentException("type must be not null");
+    }
+    if (window == null) {
+      throw new IllegalArgumentException("window cannot be null");
+    }
+    return metrics.windowStats(type, window);
+  }
+
+  /**
+   * Returns sales of the pump in the last time window counted while metrics were enabled.
+   */
+  public WindowStats getWindowStats(GasPump pump, StatsWindow window) {
+    if (window == null) {
+      throw new IllegalArgumentException("window cannot be null");
+    }
+    var queue = pump == null ? null : pumps.snapshot().queues.get(pump);
+    if (queue == null) {
+      throw new IllegalArgumentException("pump is not in the station");
+    }
+    return metrics.windowStats(queue, window);
+  }
+
+  /**
+   * Registers {@link StationMetricsMXBean} of this station in platform MBean server.
+   *
+   * @param name value of the name key of MBean object name
+   * @return object name to unregister the MBean
+   */
+  public ObjectName registerMBean(String name) throws JMException {
+    var objectName = new ObjectName(
+        "net.bigpoint.assessment.gasstation:type=FastGasStation,name=" + ObjectName.quote(name));
+    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+    return objectName;
   }
 
   @Override
   public double getPrice(GasType type) {
-    if (price.get(type) == null) {
+    double typePrice = type == null ? PriceTable.NOT_SET : prices.get(type);
+    if (typePrice == PriceTable.NOT_SET) {
       throw new IllegalStateException("Price was was not set");
     }
-    return price.get(type);
+    return typePrice;
   }
 
   @Override
@@ -216,9 +1195,9 @@ public class FastGasStation implements GasStation {
       throw new IllegalArgumentException("gas price must be positive");
     }
     //possible check
-    //if (price.get(type) != null) {
+    //if (prices.get(type) != PriceTable.NOT_SET) {
     //  throw new IllegalStateException("price cannot change once set");
     //}
-    price.put(type, typePrice);
+    prices.set(type, typePrice);
   }
 }
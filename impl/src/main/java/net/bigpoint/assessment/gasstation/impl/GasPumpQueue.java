@@ -0,0 +1,269 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Entity to store some additional data about the pump and handle waiting clients.
+ * Fuel and place in line are reserved with CAS, so clients of one gas type
+ * can reserve different pumps in parallel.
+ * Closed pump accepts no reservations, it is drained when its line becomes empty.
+ * Tanker refills raise available fuel only after the gas was poured into the pump,
+ * so reserved fuel is always in the pump when the client gets there.
+ */
+final class GasPumpQueue {
+
+  /** Fuel and place in line were reserved. */
+  static final int RESERVED = 0;
+  /** Pump has not enough fuel. */
+  static final int NO_FUEL = 1;
+  /** Line of the pump already has maximum length. */
+  static final int LINE_FULL = 2;
+
+  private static final VarHandle AVAILABLE_AMOUNT;
+  private static final VarHandle PENDING_REFILL;
+  private static final VarHandle REFILLED_AMOUNT;
+  private static final VarHandle METRICS;
+  private static final VarHandle WORKER;
+
+  static {
+    try {
+      var lookup = MethodHandles.lookup();
+      AVAILABLE_AMOUNT = lookup.findVarHandle(GasPumpQueue.class, "availableAmount", double.class);
+      PENDING_REFILL = lookup.findVarHandle(GasPumpQueue.class, "pendingRefill", double.class);
+      REFILLED_AMOUNT = lookup.findVarHandle(GasPumpQueue.class, "refilledAmount", double.class);
+      METRICS = lookup.findVarHandle(
+          GasPumpQueue.class, "metrics", StationMetrics.PumpMetrics.class);
+      WORKER = lookup.findVarHandle(GasPumpQueue.class, "worker", PumpWorker.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /** The pump itself, only client that acquired it from dispatcher may use it. */
+  final GasPump gasPump;
+  /** Provides safe waiting mechanism for clients from multiple threads. */
+  final BlockingQueue<GasPump> pump = new ArrayBlockingQueue<>(1, true);
+  /** Marks that the pump is used, for dispatchers with explicit waiters. */
+  final AtomicBoolean busy = new AtomicBoolean();
+  /** Clients waiting for this pump, for dispatchers with explicit waiters. */
+  final Deque<Waiter> waiters = new ConcurrentLinkedDeque<>();
+  /** Counts clients in the shared line of the type with fuel reserved at this pump. */
+  final AtomicInteger sharedWaiters = new AtomicInteger();
+  /** Helps better distribute clients between pumps. */
+  private final AtomicInteger length = new AtomicInteger();
+  /** Indicates amount of fuel after all waiting clients is served. */
+  private volatile double availableAmount;
+  /** Fuel of refills that were announced but not poured yet. */
+  private volatile double pendingRefill;
+  /** Held while gas flows into or out of the pump, client does not pump while tanker pours. */
+  final ReentrantLock tank = new ReentrantLock(true);
+  /** Gas poured by tankers, {@link GasPump} does not count it. */
+  private volatile double refilledAmount;
+  /** Unique id of the pump in the station. */
+  final int id;
+  final GasType type;
+  /** Created when pump is used with metrics enabled first time. */
+  private volatile StationMetrics.PumpMetrics metrics;
+  /** Current entry in the index, changed only by the thread updating index. */
+  PumpIndex.Entry entry;
+  /** Counts requested index updates, see {@link PumpIndex#update(GasPumpQueue)}. */
+  final AtomicInteger updates = new AtomicInteger();
+  /** Serves asynchronous clients of the pump one by one. */
+  final Executor lane;
+  /** Completed when pump is closed and its line is empty. */
+  final CompletableFuture<Void> drained = new CompletableFuture<>();
+  /** Owns the pump in {@link DispatchMode#WORKERS}, started on first use. */
+  private volatile PumpWorker worker;
+
+  /**
+   * Initializes the queue.
+   */
+  GasPumpQueue(GasPump pump, int id, Executor executor) {
+    this.pump.add(pump);
+    gasPump = pump;
+    this.id = id;
+    type = pump.getGasType();
+    lane = new SerialExecutor(executor);
+    availableAmount = pump.getRemainingAmount();
+  }
+
+  int length() {
+    return length.get();
+  }
+
+  double availableAmount() {
+    return availableAmount;
+  }
+
+  /**
+   * Reserves fuel and place in line if pump has more fuel than requested.
+   *
+   * @return false if pump has not enough fuel
+   */
+  boolean tryReserve(double amountInLiters) {
+    return tryReserve(amountInLiters, Integer.MAX_VALUE) == RESERVED;
+  }
+
+  /**
+   * Reserves fuel and place in line if pump has more fuel than requested
+   * and less clients in line than allowed, the client at the pump included.
+   *
+   * @return {@link #RESERVED}, {@link #NO_FUEL} or {@link #LINE_FULL}
+   */
+  int tryReserve(double amountInLiters, int maxLength) {
+    while (true) {
+      double available = availableAmount;
+      if (available <= amountInLiters) {
+        return NO_FUEL;
+      }
+      // place in line is taken first, so pump is not drained while client reserves fuel
+      if (length.incrementAndGet() > maxLength) {
+        exit();
+        return LINE_FULL;
+      }
+      if (AVAILABLE_AMOUNT.compareAndSet(this, available, available - amountInLiters)) {
+        return RESERVED;
+      }
+      exit();
+    }
+  }
+
+  /**
+   * Stops accepting reservations, clients already in line are still served.
+   * Fuel returned by cancelled clients is not available anymore.
+   */
+  void close() {
+    AVAILABLE_AMOUNT.setVolatile(this, Double.NEGATIVE_INFINITY);
+    if (length.get() == 0) {
+      drained.complete(null);
+    }
+  }
+
+  boolean isClosed() {
+    return availableAmount == Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Makes fuel poured into the pump available for new clients.
+   *
+   * @return false if pump is closed
+   */
+  boolean refill(double amountInLiters) {
+    while (true) {
+      double available = availableAmount;
+      if (available == Double.NEGATIVE_INFINITY) {
+        return false;
+      }
+      if (AVAILABLE_AMOUNT.compareAndSet(this, available, available + amountInLiters)) {
+        return true;
+      }
+    }
+  }
+
+  double pendingRefill() {
+    return pendingRefill;
+  }
+
+  /**
+   * Announces refill that will be poured later or removes announcement of poured one.
+   */
+  void addPendingRefill(double amountInLiters) {
+    while (true) {
+      double pending = pendingRefill;
+      if (PENDING_REFILL.compareAndSet(this, pending, pending + amountInLiters)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Gas in the pump including refills, fuel reserved by clients in line included.
+   */
+  double remainingAmount() {
+    return gasPump.getRemainingAmount() + refilledAmount;
+  }
+
+  /**
+   * Counts gas poured into the pump.
+   */
+  void addRefilled(double amountInLiters) {
+    while (true) {
+      double refilled = refilledAmount;
+      if (REFILLED_AMOUNT.compareAndSet(this, refilled, refilled + amountInLiters)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Histograms of the pump, created on first use.
+   */
+  StationMetrics.PumpMetrics metrics() {
+    var current = metrics;
+    if (current == null) {
+      METRICS.compareAndSet(this, null, new StationMetrics.PumpMetrics());
+      current = metrics;
+    }
+    return current;
+  }
+
+  /**
+   * Worker owning the pump, created and started on first use.
+   */
+  PumpWorker worker(PumpWorker.Service service) {
+    var current = worker;
+    if (current == null) {
+      var created = new PumpWorker(this, service);
+      if (WORKER.compareAndSet(this, null, created)) {
+        created.start();
+      }
+      current = worker;
+    }
+    return current;
+  }
+
+  /**
+   * Histograms of the pump if it was used with metrics enabled.
+   */
+  StationMetrics.PumpMetrics metricsIfCreated() {
+    return metrics;
+  }
+
+  /**
+   * Returns reserved fuel and releases place in line of client that will not pump here.
+   */
+  void cancel(double amountInLiters) {
+    while (true) {
+      double available = availableAmount;
+      if (AVAILABLE_AMOUNT.compareAndSet(this, available, available + amountInLiters)) {
+        exit();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Releases place in line after pumping.
+   */
+  void leave() {
+    exit();
+  }
+
+  private void exit() {
+    if (length.decrementAndGet() == 0 && isClosed()) {
+      drained.complete(null);
+    }
+  }
+}
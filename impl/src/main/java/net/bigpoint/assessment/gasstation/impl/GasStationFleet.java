@@ -0,0 +1,193 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * Many independent stations that serve clients as one.
+ * Stations are split into shards, every client thread has its home shard,
+ * so threads running on different cores mostly use different stations.
+ * Purchase is routed to the better of two different random stations of the home shard
+ * that sell the gas at the price the client pays:
+ * the one whose best pump has shorter line, then more fuel.
+ * If no such station of the home shard has enough fuel all stations are checked.
+ * Statistics are kept by stations and summed on read, so there is no shared counter.
+ */
+public class GasStationFleet {
+
+  private final List<FastGasStation> stations;
+  private final int shards;
+
+  /**
+   * Initializes fleet of provided stations with a shard per available processor.
+   */
+  public GasStationFleet(Collection<FastGasStation> stations) {
+    this(stations, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Initializes fleet of provided stations split into given number of shards.
+   * There are no more shards than stations.
+   */
+  public GasStationFleet(Collection<FastGasStation> stations, int shards) {
+    if (stations == null || stations.isEmpty()) {
+      throw new IllegalArgumentException("fleet must have stations");
+    }
+    if (shards <= 0) {
+      throw new IllegalArgumentException("number of shards must be positive");
+    }
+    var copy = new ArrayList<>(stations);
+    for (var station : copy) {
+      if (station == null) {
+        throw new IllegalArgumentException("station cannot be null");
+      }
+    }
+    this.stations = Collections.unmodifiableList(copy);
+    this.shards = Math.min(shards, copy.size());
+  }
+
+  /**
+   * Stations of the fleet in shard order.
+   */
+  public List<FastGasStation> getStations() {
+    return stations;
+  }
+
+  public int getNumberOfShards() {
+    return shards;
+  }
+
+  /**
+   * Buys gas at the station most likely to serve the client quickly,
+   * see {@link FastGasStation#buyGas}.
+   */
+  public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter)
+      throws NotEnoughGasException, GasTooExpensiveException {
+    return route(type, amountInLiters, maxPricePerLiter)
+        .buyGas(type, amountInLiters, maxPricePerLiter);
+  }
+
+  /**
+   * Buys gas at the station most likely to serve the client quickly
+   * reporting cancellations as {@link Outcome} codes, see {@link FastGasStation#tryBuyGas}.
+   */
+  public int tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter,
+      PurchaseResult result) {
+    return route(type, amountInLiters, maxPricePerLiter)
+        .tryBuyGas(type, amountInLiters, maxPricePerLiter, result);
+  }
+
+  /**
+   * Selects station for the purchase.
+   * When no station has enough fuel at accepted price the purchase goes
+   * to a station of the home shard, which cancels and counts it.
+   */
+  FastGasStation route(GasType type, double amountInLiters, double maxPricePerLiter) {
+    if (type == null) {
+      throw new IllegalArgumentException("GasType cannot be null");
+    }
+    int size = stations.size();
+    int shard = (int) (Thread.currentThread().getId() % shards);
+    int from = (int) ((long) shard * size / shards);
+    int to = (int) ((long) (shard + 1) * size / shards);
+    var random = ThreadLocalRandom.current();
+    int count = to - from;
+    int firstId = random.nextInt(count);
+    int secondId = count == 1 ? firstId : (firstId + 1 + random.nextInt(count - 1)) % count;
+    var first = stations.get(from + firstId);
+    var second = stations.get(from + secondId);
+    var firstPump = candidate(first, type, amountInLiters, maxPricePerLiter);
+    var secondPump = candidate(second, type, amountInLiters, maxPricePerLiter);
+    if (firstPump != null || secondPump != null) {
+      return isBetter(secondPump, firstPump) ? second : first;
+    }
+    // home shard may still have fuel in other stations, look at the whole fleet
+    FastGasStation best = null;
+    GasPumpQueue bestPump = null;
+    for (var station : stations) {
+      var pump = candidate(station, type, amountInLiters, maxPricePerLiter);
+      if (isBetter(pump, bestPump)) {
+        best = station;
+        bestPump = pump;
+      }
+    }
+    return best != null ? best : first;
+  }
+
+  /**
+   * Finds pump the client would select at the station.
+   *
+   * @return null if no pump has enough fuel or gas is more expensive than the client pays
+   */
+  private static GasPumpQueue candidate(FastGasStation station, GasType type,
+      double amountInLiters, double maxPricePerLiter) {
+    return station.isPriceAccepted(type, maxPricePerLiter)
+        ? station.selectPump(type, amountInLiters) : null;
+  }
+
+  /**
+   * Compares pumps selected at different stations, null means no pump.
+   */
+  private static boolean isBetter(GasPumpQueue pump, GasPumpQueue other) {
+    if (pump == null || other == null) {
+      return other == null && pump != null;
+    }
+    int byLength = Integer.compare(pump.length(), other.length());
+    return byLength != 0 ? byLength < 0 : pump.availableAmount() > other.availableAmount();
+  }
+
+  /**
+   * Sets price of the gas type at every station.
+   */
+  public void setPrice(GasType type, double price) {
+    for (var station : stations) {
+      station.setPrice(type, price);
+    }
+  }
+
+  /**
+   * Sums statistics of all stations.
+   * Every station is read consistently, but stations are read one after another.
+   */
+  public StatsSnapshot getStats() {
+    long sales = 0;
+    double revenue = 0.0;
+    long cancelNotEnough = 0;
+    long cancelTooExpensive = 0;
+    long cancelLineFull = 0;
+    long cancelTimedOut = 0;
+    for (var station : stations) {
+      var stats = station.getStats();
+      sales += stats.getNumberOfSales();
+      revenue += stats.getRevenue();
+      cancelNotEnough += stats.getNumberOfCancellationsNoGas();
+      cancelTooExpensive += stats.getNumberOfCancellationsTooExpensive();
+      cancelLineFull += stats.getNumberOfCancellationsLineFull();
+      cancelTimedOut += stats.getNumberOfCancellationsTimedOut();
+    }
+    return new StatsSnapshot(sales, revenue, cancelNotEnough, cancelTooExpensive,
+        cancelLineFull, cancelTimedOut);
+  }
+
+  public double getRevenue() {
+    return getStats().getRevenue();
+  }
+
+  public long getNumberOfSales() {
+    return getStats().getNumberOfSales();
+  }
+
+  public long getNumberOfCancellationsNoGas() {
+    return getStats().getNumberOfCancellationsNoGas();
+  }
+
+  public long getNumberOfCancellationsTooExpensive() {
+    return getStats().getNumberOfCancellationsTooExpensive();
+  }
+}
@@ -0,0 +1,78 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Dispatcher that hands pumps over between clients:
+ * client waits until it gets exclusive access to a pump, pumps gas on its own thread
+ * and gives the pump to the next client.
+ * Asynchronous clients wait and pump on the lane of the reserved pump.
+ */
+abstract class HandoverDispatcher implements Dispatcher {
+
+  /**
+   * Waits until client gets exclusive access to a pump.
+   *
+   * @param reserved pump where client reserved fuel and place in line
+   * @return pump the client may use, with fuel and place in line reserved
+   */
+  public abstract GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters);
+
+  /**
+   * Waits until client gets exclusive access to a pump or deadline passes.
+   *
+   * @param reserved pump where client reserved fuel and place in line
+   * @param deadline value of {@link System#nanoTime()} to stop waiting at
+   * @return pump the client may use, with fuel and place in line reserved,
+   *     or null if deadline passed, fuel and place in line stay reserved at the reserved pump
+   */
+  public abstract GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters,
+      long deadline);
+
+  /**
+   * Releases the pump after client left its line.
+   */
+  public abstract void release(GasPumpQueue queue);
+
+  @Override
+  public GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service) {
+    var servingQueue = acquire(reserved, amountInLiters);
+    pump(servingQueue, amountInLiters, start, service);
+    return servingQueue;
+  }
+
+  @Override
+  public GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start,
+      long deadline, PumpWorker.Service service) {
+    var servingQueue = acquire(reserved, amountInLiters, deadline);
+    if (servingQueue != null) {
+      pump(servingQueue, amountInLiters, start, service);
+    }
+    return servingQueue;
+  }
+
+  @Override
+  public void submit(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service, BiConsumer<GasPumpQueue, Throwable> completion) {
+    reserved.lane.execute(() -> {
+      GasPumpQueue servingQueue;
+      try {
+        servingQueue = serve(reserved, amountInLiters, start, service);
+      } catch (Throwable e) {
+        completion.accept(null, e);
+        return;
+      }
+      completion.accept(servingQueue, null);
+    });
+  }
+
+  private void pump(GasPumpQueue servingQueue, double amountInLiters, long start,
+      PumpWorker.Service service) {
+    try {
+      service.serve(servingQueue, amountInLiters, start);
+    } finally {
+      release(servingQueue); // give pump to the next client, even if pumping failed
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Copy of the latency histogram, all values are in nanoseconds.
+ */
+public final class HistogramSnapshot {
+
+  private final long[] counts;
+  private final long count;
+  private final long sum;
+  private final long max;
+
+  HistogramSnapshot(long[] counts, long count, long sum, long max) {
+    this.counts = counts;
+    this.count = count;
+    this.sum = sum;
+    this.max = max;
+  }
+
+  /**
+   * Number of recorded values.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return count == 0 ? 0.0 : (double) sum / count;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * Value that is not exceeded by given percent of recorded values.
+   * Reported as the highest value of the bucket, so it is never lower than the real one.
+   *
+   * @param percentile from 0 to 100, e.g. 99.9
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (percentile < 0.0 || percentile > 100.0) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100");
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        long highest = i + 1 < counts.length ? LatencyHistogram.lowestValue(i + 1) - 1 : max;
+        return Math.min(highest, max);
+      }
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,111 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Station state rebuilt from {@link TransactionJournal} records:
+ * statistics counters and remaining gas of every pump that was not removed.
+ */
+public final class JournalState {
+
+  /**
+   * Pump rebuilt from the journal.
+   */
+  static final class Pump {
+    final int id;
+    final GasType type;
+    double remainingAmount;
+
+    Pump(int id, GasType type, double remainingAmount) {
+      this.id = id;
+      this.type = type;
+      this.remainingAmount = remainingAmount;
+    }
+  }
+
+  private final Map<Integer, Pump> pumps = new LinkedHashMap<>();
+  private long records;
+  private long sales;
+  private long revenueUnits;
+  private long cancelNotEnough;
+  private long cancelTooExpensive;
+  private long cancelLineFull;
+  private long cancelTimedOut;
+
+  /**
+   * Applies next record of the journal.
+   */
+  void apply(byte kind, GasType type, int pumpId, double amountInLiters, double cost) {
+    records++;
+    switch (kind) {
+      case TransactionJournal.SALE:
+        sales++;
+        revenueUnits += StationStats.toUnits(cost);
+        var pump = pumps.get(pumpId);
+        if (pump != null) {
+          pump.remainingAmount -= amountInLiters;
+        }
+        break;
+      case TransactionJournal.CANCEL_NOT_ENOUGH:
+        cancelNotEnough++;
+        break;
+      case TransactionJournal.CANCEL_TOO_EXPENSIVE:
+        cancelTooExpensive++;
+        break;
+      case TransactionJournal.CANCEL_LINE_FULL:
+        cancelLineFull++;
+        break;
+      case TransactionJournal.CANCEL_TIMED_OUT:
+        cancelTimedOut++;
+        break;
+      case TransactionJournal.REFILL:
+        var refilled = pumps.get(pumpId);
+        if (refilled != null) {
+          refilled.remainingAmount += amountInLiters;
+        }
+        break;
+      case TransactionJournal.PUMP_ADDED:
+        pumps.put(pumpId, new Pump(pumpId, type, amountInLiters));
+        break;
+      case TransactionJournal.PUMP_REMOVED:
+        pumps.remove(pumpId);
+        break;
+      default:
+        throw new IllegalStateException("unknown journal record kind " + kind);
+    }
+  }
+
+  /**
+   * Number of replayed records.
+   */
+  long records() {
+    return records;
+  }
+
+  long revenueUnits() {
+    return revenueUnits;
+  }
+
+  /**
+   * Pumps in order they were added.
+   */
+  Collection<Pump> pumps() {
+    return Collections.unmodifiableCollection(pumps.values());
+  }
+
+  public int getNumberOfPumps() {
+    return pumps.size();
+  }
+
+  /**
+   * Statistics counters at the end of the journal.
+   */
+  public StatsSnapshot getStats() {
+    return new StatsSnapshot(sales, revenueUnits / StationStats.REVENUE_SCALE,
+        cancelNotEnough, cancelTooExpensive, cancelLineFull, cancelTimedOut);
+  }
+}
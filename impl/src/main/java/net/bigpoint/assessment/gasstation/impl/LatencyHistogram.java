@@ -0,0 +1,66 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of durations in nanoseconds with log-linear buckets like HdrHistogram.
+ * Every power of two is split into {@code 2^SUB_BITS} buckets, which keeps relative error
+ * below 1/32 with fixed memory. Recording does not allocate and does not lock,
+ * sum and maximum are striped so recording threads do not contend on them.
+ */
+final class LatencyHistogram {
+
+  private static final int SUB_BITS = 5;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  /** Durations longer than 2^42 ns (more than an hour) are counted in the last bucket. */
+  private static final int MAX_EXPONENT = 42;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Index of the bucket that counts the value.
+   */
+  static int bucket(long value) {
+    if (value < SUB_COUNT) {
+      return (int) Math.max(value, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+    return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+  }
+
+  /**
+   * Lowest value counted by the bucket.
+   */
+  static long lowestValue(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int group = bucket / SUB_COUNT;
+    return (long) (SUB_COUNT + bucket % SUB_COUNT) << (group - 1);
+  }
+
+  void record(long nanos) {
+    counts.incrementAndGet(bucket(nanos));
+    sum.add(nanos);
+    max.accumulate(nanos);
+  }
+
+  HistogramSnapshot snapshot() {
+    var copy = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      count += copy[i];
+    }
+    return new HistogramSnapshot(copy, count, sum.sum(), max.get());
+  }
+}
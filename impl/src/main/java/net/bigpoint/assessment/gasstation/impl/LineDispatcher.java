@@ -0,0 +1,57 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ * Clients wait in fair line of the selected pump and leave it only when their deadline passes,
+ * interruption does not stop waiting.
+ */
+final class LineDispatcher extends HandoverDispatcher {
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters) {
+    GasPump pump = null;
+    boolean interrupted = false;
+    while (pump == null) {
+      try {
+        pump = reserved.pump.take();
+      } catch (InterruptedException e) {
+        interrupted = true; // keep waiting, status is restored below
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return reserved;
+  }
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters, long deadline) {
+    GasPump pump = null;
+    boolean interrupted = false;
+    try {
+      while (pump == null) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        try {
+          pump = reserved.pump.poll(remaining, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+          interrupted = true; // keep waiting, status is restored below
+        }
+      }
+      return reserved;
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void release(GasPumpQueue queue) {
+    queue.pump.add(queue.gasPump); // return pump for the next pump in line
+  }
+}
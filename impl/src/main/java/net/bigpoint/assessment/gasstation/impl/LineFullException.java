@@ -0,0 +1,25 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * Thrown when client is turned away as lines of all pumps with enough gas are full,
+ * see {@link FastGasStation#setMaxLineLength}.
+ * Extends {@link NotEnoughGasException}, so it fits the GasStation contract,
+ * but it is counted separately from cancellations as not enough gas.
+ */
+public class LineFullException extends StacklessNotEnoughGasException {
+
+  private static final long serialVersionUID = 6180475217034591012L;
+
+  public LineFullException() {
+    super(true);
+  }
+
+  /**
+   * Creates exception that captures stack trace only if {@code writableStackTrace} is true.
+   */
+  public LineFullException(boolean writableStackTrace) {
+    super(writableStackTrace);
+  }
+}
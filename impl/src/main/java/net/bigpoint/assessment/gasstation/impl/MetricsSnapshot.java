@@ -0,0 +1,72 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.List;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Hot path metrics of the station, see {@link FastGasStation#getMetrics()}.
+ * Histograms count only purchases made while metrics were enabled.
+ */
+public final class MetricsSnapshot {
+
+  private final HistogramSnapshot[] reservationTime;
+  private final HistogramSnapshot[] queueWait;
+  private final HistogramSnapshot[] pumpTime;
+  private final HistogramSnapshot[] refillStall;
+  private final int[] lineLength;
+  private final List<PumpMetricsSnapshot> pumps;
+
+  MetricsSnapshot(HistogramSnapshot[] reservationTime, HistogramSnapshot[] queueWait,
+      HistogramSnapshot[] pumpTime, HistogramSnapshot[] refillStall, int[] lineLength,
+      List<PumpMetricsSnapshot> pumps) {
+    this.reservationTime = reservationTime;
+    this.queueWait = queueWait;
+    this.pumpTime = pumpTime;
+    this.refillStall = refillStall;
+    this.lineLength = lineLength;
+    this.pumps = pumps;
+  }
+
+  /**
+   * Time spent selecting a pump and reserving fuel, including retries after lost races.
+   */
+  public HistogramSnapshot getReservationTime(GasType type) {
+    return reservationTime[type.ordinal()];
+  }
+
+  /**
+   * Time clients waited in lines of pumps of the type.
+   */
+  public HistogramSnapshot getQueueWait(GasType type) {
+    return queueWait[type.ordinal()];
+  }
+
+  /**
+   * Time clients spent pumping gas of the type.
+   */
+  public HistogramSnapshot getPumpTime(GasType type) {
+    return pumpTime[type.ordinal()];
+  }
+
+  /**
+   * Time clients at pumps of the type waited for tanker to finish pouring,
+   * only clients that had to wait are counted.
+   */
+  public HistogramSnapshot getRefillStall(GasType type) {
+    return refillStall[type.ordinal()];
+  }
+
+  /**
+   * Number of clients in lines of all pumps of the type.
+   */
+  public int getLineLength(GasType type) {
+    return lineLength[type.ordinal()];
+  }
+
+  /**
+   * Metrics of every pump.
+   */
+  public List<PumpMetricsSnapshot> getPumps() {
+    return pumps;
+  }
+}
@@ -0,0 +1,26 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Codes of purchase outcomes returned by methods that do not throw on cancellations.
+ */
+public final class Outcome {
+
+  /** Gas was sold. */
+  public static final int SOLD = 0;
+  /** Cancelled as no single pump has enough gas, see {@link
+   * net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException}. */
+  public static final int NOT_ENOUGH_GAS = 1;
+  /** Cancelled as gas is more expensive than requested, see {@link
+   * net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException}. */
+  public static final int TOO_EXPENSIVE = 2;
+  /** Turned away as lines of all pumps with enough gas were full, see {@link
+   * LineFullException}. */
+  public static final int LINE_FULL = 3;
+  /** Client left the line when its deadline passed, see {@link
+   * FastGasStation#buyGas(net.bigpoint.assessment.gasstation.GasType, double, double, long,
+   * java.util.concurrent.TimeUnit)}. */
+  public static final int TIMED_OUT = 4;
+
+  private Outcome() {
+  }
+}
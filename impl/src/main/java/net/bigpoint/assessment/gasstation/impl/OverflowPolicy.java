@@ -0,0 +1,16 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * What {@link SalesEventPublisher} does with a new event when buffer of a subscriber is full.
+ */
+public enum OverflowPolicy {
+  /** Event is dropped and counted, buying client is not delayed. */
+  DROP,
+  /**
+   * Event is added to a running total of events with the same outcome and gas type,
+   * delivered later as one event, buying client is not delayed.
+   */
+  COALESCE,
+  /** Buying client waits after checkout until the subscriber makes room. */
+  BLOCK
+}
@@ -0,0 +1,30 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Prices of gas types that can be changed while clients are buying.
+ * Prices are stored as bits of primitive doubles indexed by {@link GasType#ordinal()},
+ * so reads and writes neither lock nor box.
+ */
+final class PriceTable {
+
+  /** Price is positive when set, so zero bits mean that it is not set. */
+  static final double NOT_SET = 0.0;
+
+  private final AtomicLongArray prices = new AtomicLongArray(GasType.values().length);
+
+  /**
+   * Current price of the type.
+   *
+   * @return {@link #NOT_SET} if price was not set
+   */
+  double get(GasType type) {
+    return Double.longBitsToDouble(prices.get(type.ordinal()));
+  }
+
+  void set(GasType type, double price) {
+    prices.set(type.ordinal(), Double.doubleToRawLongBits(price));
+  }
+}
@@ -0,0 +1,30 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ * Performs the actual pumping once a client got exclusive access to the pump.
+ * Default implementation calls {@link GasPump#pumpGas(double)} which sleeps to simulate pumping.
+ * Other implementations allow to measure station overhead without simulated pumping time.
+ * Implementations are called by one thread at a time for a given pump.
+ */
+@FunctionalInterface
+public interface PumpDriver {
+
+  /** Pumps gas using the pump itself. */
+  PumpDriver GAS_PUMP = GasPump::pumpGas;
+
+  /**
+   * Pumps requested amount of gas from the pump.
+   */
+  void pump(GasPump pump, double amountInLiters);
+
+  /**
+   * Pours gas delivered by a tanker into the pump, nobody pumps meanwhile.
+   * {@link GasPump} cannot take gas in, so the station accounts refilled gas itself
+   * and remaining amount of the pump goes below zero once refilled gas is pumped.
+   * Implementations may simulate pouring time, default implementation does nothing.
+   */
+  default void refill(GasPump pump, double amountInLiters) {
+  }
+}
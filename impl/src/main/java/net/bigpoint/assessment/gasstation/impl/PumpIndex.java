@@ -0,0 +1,240 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of pumps of one gas type ordered for selection:
+ * shorter line first, then more fuel first.
+ * Best pump with enough fuel is found in O(log(pumps)) for every distinct line length
+ * instead of scanning all pumps.
+ * Entries are immutable snapshots of pump state, pump replaces its entry after every change.
+ * Stale entries may be found for a moment, reservation on the pump itself stays authoritative.
+ * Summary of entries is kept alongside: the largest amount of one pump,
+ * total amount and number of idle pumps, so hopeless requests are rejected in O(1).
+ */
+final class PumpIndex {
+
+  /**
+   * Immutable key of the pump in the index.
+   */
+  static final class Entry implements Comparable<Entry> {
+    final GasPumpQueue queue;
+    final int length;
+    final double availableAmount;
+    final int id;
+
+    Entry(GasPumpQueue queue, int length, double availableAmount, int id) {
+      this.queue = queue;
+      this.length = length;
+      this.availableAmount = availableAmount;
+      this.id = id;
+    }
+
+    @Override
+    public int compareTo(Entry other) {
+      if (length != other.length) {
+        return Integer.compare(length, other.length);
+      }
+      int byAmount = Double.compare(other.availableAmount, availableAmount);
+      return byAmount != 0 ? byAmount : Integer.compare(id, other.id);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Entry && compareTo((Entry) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return id;
+    }
+  }
+
+  /** Orders entries by amount, most fuel first. */
+  private static final Comparator<Entry> BY_AMOUNT = (a, b) -> {
+    int byAmount = Double.compare(b.availableAmount, a.availableAmount);
+    return byAmount != 0 ? byAmount : Integer.compare(a.id, b.id);
+  };
+  /** Precedes every entry in {@link #BY_AMOUNT} order. */
+  private static final Entry MOST_FUEL =
+      new Entry(null, 0, Double.POSITIVE_INFINITY, Integer.MIN_VALUE);
+  /** Total amount is summed in milliliters, so it does not drift with rounding. */
+  private static final double UNITS_PER_LITER = 1000.0;
+
+  private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+  private final ConcurrentSkipListSet<Entry> byAmount = new ConcurrentSkipListSet<>(BY_AMOUNT);
+  private final AtomicLong totalUnits = new AtomicLong();
+  private final AtomicInteger idle = new AtomicInteger();
+  private final List<GasPumpQueue> queues = new CopyOnWriteArrayList<>();
+
+  /**
+   * Adds pump to the index.
+   */
+  void add(GasPumpQueue queue) {
+    queues.add(queue);
+    update(queue);
+  }
+
+  /**
+   * Adds many pumps to the index at once.
+   */
+  void addAll(Collection<GasPumpQueue> added) {
+    queues.addAll(added);
+    for (var queue : added) {
+      update(queue);
+    }
+  }
+
+  /**
+   * Removes pump from the index.
+   * Takes over updates of the pump and never gives them back,
+   * so later updates do not bring the entry back.
+   */
+  void remove(GasPumpQueue queue) {
+    if (!queues.remove(queue)) {
+      return; // already removed
+    }
+    while (!queue.updates.compareAndSet(0, 1)) {
+      Thread.onSpinWait(); // other thread is updating the entry
+    }
+    if (queue.entry != null) {
+      entries.remove(queue.entry);
+      byAmount.remove(queue.entry);
+      summarize(queue.entry, null);
+    }
+  }
+
+  boolean isEmpty() {
+    return queues.isEmpty();
+  }
+
+  /**
+   * All pumps in the index.
+   */
+  Collection<GasPumpQueue> queues() {
+    return Collections.unmodifiableList(queues);
+  }
+
+  /**
+   * Finds pump with the shortest line among pumps with more fuel than requested,
+   * if several have the same line selects the one with more fuel.
+   *
+   * @return null if no pump has enough fuel
+   */
+  GasPumpQueue select(double amountInLiters) {
+    if (!(maxAvailableAmount() > amountInLiters)) {
+      return null; // no pump has enough fuel
+    }
+    Entry entry = entries.isEmpty() ? null : entries.first();
+    while (entry != null) {
+      if (entry.availableAmount > amountInLiters) {
+        return entry.queue;
+      }
+      // first entry of the line length has most fuel, skip to the next line length
+      entry = entries.ceiling(
+          new Entry(null, entry.length + 1, Double.POSITIVE_INFINITY, Integer.MIN_VALUE));
+    }
+    return null;
+  }
+
+  /**
+   * Replaces entry of the pump after its state changed.
+   * Only one thread updates entries of a pump, others just ask it to repeat,
+   * so the index always contains an entry for every pump.
+   */
+  void update(GasPumpQueue queue) {
+    if (queue.updates.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      var entry = new Entry(queue, queue.length(), queue.availableAmount(), queue.id);
+      var previous = queue.entry;
+      entries.add(entry); // add before remove so the pump is always present
+      if (previous != null && !previous.equals(entry)) {
+        entries.remove(previous);
+      }
+      if (previous == null || BY_AMOUNT.compare(previous, entry) != 0) {
+        byAmount.add(entry);
+        if (previous != null) {
+          byAmount.remove(previous);
+        }
+      }
+      summarize(previous, entry);
+      queue.entry = entry;
+      missed = queue.updates.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  /**
+   * Same as {@link #update}, but returns only when the index holds one current entry
+   * of the pump, even if other thread was updating it.
+   */
+  void refresh(GasPumpQueue queue) {
+    update(queue);
+    // updating thread repeats the update for us, removed pump is never updated again
+    while (queue.updates.get() != 0 && !queue.isClosed()) {
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Moves summary from the previous entry of a pump to its new entry, null if there is none.
+   */
+  private void summarize(Entry previous, Entry entry) {
+    long units = units(entry) - units(previous);
+    if (units != 0) {
+      totalUnits.addAndGet(units);
+    }
+    int idleChange = isIdle(entry) - isIdle(previous);
+    if (idleChange != 0) {
+      idle.addAndGet(idleChange);
+    }
+  }
+
+  private static long units(Entry entry) {
+    return entry == null || !(entry.availableAmount > 0.0)
+        ? 0 : Math.round(entry.availableAmount * UNITS_PER_LITER);
+  }
+
+  private static int isIdle(Entry entry) {
+    return entry != null && entry.length == 0 ? 1 : 0;
+  }
+
+  /**
+   * Largest amount available at one pump, 0 if there are no pumps.
+   * Request for this amount or more cannot be served.
+   */
+  double maxAvailableAmount() {
+    var entry = byAmount.ceiling(MOST_FUEL);
+    return entry == null ? 0.0 : Math.max(entry.availableAmount, 0.0);
+  }
+
+  /**
+   * Total amount available at all pumps.
+   */
+  double totalAvailableAmount() {
+    return totalUnits.get() / UNITS_PER_LITER;
+  }
+
+  /**
+   * Number of pumps with nobody in line.
+   */
+  int idlePumps() {
+    return idle.get();
+  }
+
+  /**
+   * Number of entries, equals to number of pumps when no updates are in progress.
+   */
+  int size() {
+    return entries.size();
+  }
+}
@@ -0,0 +1,56 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Metrics of one pump, see {@link MetricsSnapshot}.
+ */
+public final class PumpMetricsSnapshot {
+
+  private final int id;
+  private final GasType gasType;
+  private final int lineLength;
+  private final HistogramSnapshot queueWait;
+  private final HistogramSnapshot pumpTime;
+
+  PumpMetricsSnapshot(int id, GasType gasType, int lineLength,
+      HistogramSnapshot queueWait, HistogramSnapshot pumpTime) {
+    this.id = id;
+    this.gasType = gasType;
+    this.lineLength = lineLength;
+    this.queueWait = queueWait;
+    this.pumpTime = pumpTime;
+  }
+
+  /**
+   * Id of the pump, pumps are numbered in order they were added to the station.
+   */
+  public int getId() {
+    return id;
+  }
+
+  public GasType getGasType() {
+    return gasType;
+  }
+
+  /**
+   * Number of clients waiting in line or pumping.
+   */
+  public int getLineLength() {
+    return lineLength;
+  }
+
+  /**
+   * Time clients waited in line of this pump.
+   */
+  public HistogramSnapshot getQueueWait() {
+    return queueWait;
+  }
+
+  /**
+   * Time clients spent pumping.
+   */
+  public HistogramSnapshot getPumpTime() {
+    return pumpTime;
+  }
+}
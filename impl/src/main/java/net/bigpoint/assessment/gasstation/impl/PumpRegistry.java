@@ -0,0 +1,82 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ * Pumps of the station kept as copy-on-write snapshots.
+ * Readers get current immutable snapshot with a single volatile read,
+ * writers copy it under the lock, changes of pumps are rare.
+ */
+final class PumpRegistry {
+
+  /**
+   * Immutable state of the registry.
+   */
+  static final class Snapshot {
+    /** Unmodifiable view of the pumps, shared by all readers. */
+    final Set<GasPump> pumps;
+    final Map<GasPump, GasPumpQueue> queues;
+
+    Snapshot(Map<GasPump, GasPumpQueue> queues) {
+      this.queues = queues;
+      pumps = Collections.unmodifiableSet(queues.keySet());
+    }
+  }
+
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyMap());
+  /** Ids are never reused as they order pumps in {@link PumpIndex}. */
+  private int nextId;
+
+  Snapshot snapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Creates queue of the pump and publishes it.
+   *
+   * @return created queue, or null if pump was already added
+   */
+  synchronized GasPumpQueue add(GasPump pump, Executor executor) {
+    var current = snapshot.queues;
+    if (current.containsKey(pump)) {
+      return null;
+    }
+    var queue = new GasPumpQueue(pump, nextId++, executor);
+    Map<GasPump, GasPumpQueue> queues = new HashMap<>(current);
+    queues.put(pump, queue);
+    snapshot = new Snapshot(queues);
+    return queue;
+  }
+
+  /**
+   * Publishes queues of pumps with ids they had before restart at once.
+   */
+  synchronized void restore(Collection<GasPumpQueue> restored) {
+    Map<GasPump, GasPumpQueue> queues = new HashMap<>(snapshot.queues);
+    for (var queue : restored) {
+      queues.put(queue.gasPump, queue);
+      nextId = Math.max(nextId, queue.id + 1);
+    }
+    snapshot = new Snapshot(queues);
+  }
+
+  /**
+   * Removes the pump.
+   *
+   * @return false if pump was already removed
+   */
+  synchronized boolean remove(GasPump pump) {
+    Map<GasPump, GasPumpQueue> queues = new HashMap<>(snapshot.queues);
+    if (queues.remove(pump) == null) {
+      return false;
+    }
+    snapshot = new Snapshot(queues);
+    return true;
+  }
+}
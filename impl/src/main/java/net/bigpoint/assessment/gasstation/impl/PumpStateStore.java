@@ -0,0 +1,234 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Arrays;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Compact state of very many pumps for capacity models.
+ * Pumps of every gas type are kept in parallel primitive arrays instead of objects:
+ * fuel available for new clients, fuel reserved by clients in line and line length,
+ * so a pump costs 20 bytes and selection scans contiguous memory.
+ * {@link CapacityModel} runs clients on the store.
+ * Pumps are addressed by gas type and index, selection is the same as in
+ * {@link FastGasStation}: shorter line first, then more fuel first.
+ * Pumps of one type are guarded by one monitor, different types do not contend.
+ * Pumps cannot be removed.
+ */
+public final class PumpStateStore {
+
+  /** Result of reservation when no pump has enough fuel. */
+  public static final int NO_FUEL = -1;
+  /** Result of reservation when lines of all pumps with enough fuel are full. */
+  public static final int LINE_FULL = -2;
+
+  private static final int INITIAL_CAPACITY = 16;
+  /** Rounding error allowed when reserved amounts are subtracted in other order. */
+  private static final double TOLERANCE = 1e-9;
+
+  /**
+   * Pumps of one gas type.
+   */
+  private static final class Segment {
+    double[] available = new double[INITIAL_CAPACITY];
+    double[] reserved = new double[INITIAL_CAPACITY];
+    int[] length = new int[INITIAL_CAPACITY];
+    int size;
+  }
+
+  private final Segment[] segments = new Segment[GasType.values().length];
+
+  /**
+   * Initializes empty store.
+   */
+  public PumpStateStore() {
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  private Segment segment(GasType type) {
+    if (type == null) {
+      throw new IllegalArgumentException("GasType cannot be null");
+    }
+    return segments[type.ordinal()];
+  }
+
+  private static void checkPump(Segment segment, int pump) {
+    if (pump < 0 || pump >= segment.size) {
+      throw new IllegalArgumentException("no such pump " + pump);
+    }
+  }
+
+  /**
+   * Removes client with reserved fuel from line of the pump.
+   *
+   * @throws IllegalStateException if nobody waits in line or the amount was not reserved
+   */
+  private static void exit(Segment segment, int pump, double amountInLiters) {
+    checkPump(segment, pump);
+    if (segment.length[pump] == 0) {
+      throw new IllegalStateException("no client in line of pump " + pump);
+    }
+    double reserved = segment.reserved[pump];
+    if (amountInLiters > reserved + TOLERANCE) {
+      throw new IllegalStateException("amount was not reserved at pump " + pump);
+    }
+    // empty line has nothing reserved, rounding errors do not pile up
+    segment.reserved[pump] = --segment.length[pump] == 0
+        ? 0.0 : Math.max(reserved - amountInLiters, 0.0);
+  }
+
+  /**
+   * Adds pump with given amount of fuel.
+   *
+   * @return index of the pump among pumps of the type
+   */
+  public int addPump(GasType type, double amountInLiters) {
+    var segment = segment(type);
+    if (amountInLiters < 0.0) {
+      throw new IllegalArgumentException("amount cannot be negative");
+    }
+    synchronized (segment) {
+      int pump = segment.size;
+      if (pump == segment.available.length) {
+        int capacity = pump * 2;
+        segment.available = Arrays.copyOf(segment.available, capacity);
+        segment.reserved = Arrays.copyOf(segment.reserved, capacity);
+        segment.length = Arrays.copyOf(segment.length, capacity);
+      }
+      segment.available[pump] = amountInLiters;
+      segment.size = pump + 1;
+      return pump;
+    }
+  }
+
+  /**
+   * Finds pump with the shortest line among pumps with more fuel than requested,
+   * if several have the same line selects the one with more fuel,
+   * and reserves fuel and place in its line.
+   *
+   * @param maxLength maximum line length with the new client, {@link Integer#MAX_VALUE} if any
+   * @return index of the pump, {@link #NO_FUEL} or {@link #LINE_FULL}
+   */
+  public int reserve(GasType type, double amountInLiters, int maxLength) {
+    var segment = segment(type);
+    checkAmount(amountInLiters);
+    synchronized (segment) {
+      var available = segment.available;
+      var length = segment.length;
+      int best = NO_FUEL;
+      int bestLength = Integer.MAX_VALUE;
+      double bestAvailable = 0.0;
+      for (int i = 0, size = segment.size; i < size; i++) {
+        double amount = available[i];
+        int line = length[i];
+        if (amount > amountInLiters
+            && (line < bestLength || line == bestLength && amount > bestAvailable)) {
+          best = i;
+          bestLength = line;
+          bestAvailable = amount;
+        }
+      }
+      if (best == NO_FUEL) {
+        return NO_FUEL;
+      }
+      if (bestLength >= maxLength) {
+        return LINE_FULL;
+      }
+      available[best] -= amountInLiters;
+      segment.reserved[best] += amountInLiters;
+      length[best]++;
+      return best;
+    }
+  }
+
+  /**
+   * Releases place in line of client that pumped reserved fuel.
+   *
+   * @throws IllegalStateException if nobody waits in line or the amount was not reserved
+   */
+  public void leave(GasType type, int pump, double amountInLiters) {
+    var segment = segment(type);
+    checkAmount(amountInLiters);
+    synchronized (segment) {
+      exit(segment, pump, amountInLiters);
+    }
+  }
+
+  /**
+   * Returns reserved fuel and releases place in line of client that will not pump.
+   *
+   * @throws IllegalStateException if nobody waits in line or the amount was not reserved
+   */
+  public void cancel(GasType type, int pump, double amountInLiters) {
+    var segment = segment(type);
+    checkAmount(amountInLiters);
+    synchronized (segment) {
+      exit(segment, pump, amountInLiters);
+      segment.available[pump] += amountInLiters;
+    }
+  }
+
+  private static void checkAmount(double amountInLiters) {
+    if (amountInLiters <= 0.0) {
+      throw new IllegalArgumentException("requested amount must be positive");
+    }
+  }
+
+  /**
+   * Adds fuel poured into the pump.
+   */
+  public void refill(GasType type, int pump, double amountInLiters) {
+    var segment = segment(type);
+    if (amountInLiters <= 0.0) {
+      throw new IllegalArgumentException("refill amount must be positive");
+    }
+    synchronized (segment) {
+      checkPump(segment, pump);
+      segment.available[pump] += amountInLiters;
+    }
+  }
+
+  /**
+   * Number of pumps of the type.
+   */
+  public int getNumberOfPumps(GasType type) {
+    var segment = segment(type);
+    synchronized (segment) {
+      return segment.size;
+    }
+  }
+
+  /**
+   * Fuel of the pump not reserved by clients in line.
+   */
+  public double getAvailableAmount(GasType type, int pump) {
+    var segment = segment(type);
+    synchronized (segment) {
+      checkPump(segment, pump);
+      return segment.available[pump];
+    }
+  }
+
+  /**
+   * Fuel in the pump including fuel reserved by clients in line.
+   */
+  public double getRemainingAmount(GasType type, int pump) {
+    var segment = segment(type);
+    synchronized (segment) {
+      checkPump(segment, pump);
+      return segment.available[pump] + segment.reserved[pump];
+    }
+  }
+
+  /**
+   * Number of clients in line of the pump, the client at the pump included.
+   */
+  public int getLineLength(GasType type, int pump) {
+    var segment = segment(type);
+    synchronized (segment) {
+      checkPump(segment, pump);
+      return segment.length[pump];
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Worker thread that owns one pump and serves its line from a preallocated ring of requests,
+ * see {@link DispatchMode#WORKERS}.
+ * Clients claim a sequence number with one atomic increment, fill the slot and publish it,
+ * the worker serves slots in sequence order, so only the worker touches the pump
+ * and no lock or queue node is handed over between clients.
+ * Every slot has one counter {@code turn} that only grows, for request with sequence
+ * {@code s} it is {@code 8s} plus state of the request.
+ * Slot is reused by request {@code s + RING_SIZE} once request {@code s} is released
+ * by its client or cancelled.
+ * Worker stops when the pump is drained.
+ */
+final class PumpWorker implements Runnable {
+
+  /** Number of slots, more clients in line wait for a free slot before publishing. */
+  static final int RING_SIZE = 256;
+  /** Waiting clients spin this many times before parking. */
+  private static final int SPINS = 100;
+
+  private static final int PUBLISHED = 0;
+  private static final int SERVING = 1;
+  /** Worker served the request, client did not read the result yet. */
+  private static final int SERVED = 2;
+  private static final int RELEASED = 3;
+  private static final int CANCELLED = 4;
+
+  private static final VarHandle TURN;
+
+  static {
+    try {
+      TURN = MethodHandles.lookup().findVarHandle(Slot.class, "turn", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Serves one client at the pump, called by the worker only.
+   */
+  @FunctionalInterface
+  interface Service {
+    void serve(GasPumpQueue queue, double amountInLiters, long start);
+  }
+
+  /**
+   * Preallocated request, fields are written before turn publishes them.
+   */
+  private static final class Slot {
+    volatile long turn;
+    double amountInLiters;
+    /** Time client started waiting, see {@link StationMetrics#start()}. */
+    long start;
+    /** Client to wake up, null for asynchronous clients. */
+    Thread client;
+    /** Runs on the worker after serving, null for blocking clients. */
+    Consumer<Throwable> completion;
+    /** Thrown by pumping, read by the client after serving. */
+    Throwable failure;
+  }
+
+  private final GasPumpQueue queue;
+  private final Service service;
+  private final Slot[] ring = new Slot[RING_SIZE];
+  private final AtomicLong claimed = new AtomicLong();
+  private final Thread thread;
+  /** Set while worker is parked or going to park. */
+  private volatile boolean sleeping;
+
+  PumpWorker(GasPumpQueue queue, Service service) {
+    this.queue = queue;
+    this.service = service;
+    for (int i = 0; i < RING_SIZE; i++) {
+      ring[i] = new Slot();
+      ring[i].turn = turn(i - RING_SIZE, RELEASED); // previous request of the slot
+    }
+    thread = new Thread(this, "gas-pump-worker-" + queue.id);
+    thread.setDaemon(true);
+  }
+
+  private static long turn(long sequence, int state) {
+    return (sequence << 3) + state;
+  }
+
+  private Slot slot(long sequence) {
+    return ring[(int) sequence & (RING_SIZE - 1)];
+  }
+
+  void start() {
+    thread.start();
+    queue.drained.thenRun(() -> LockSupport.unpark(thread));
+  }
+
+  /**
+   * Publishes request of client with place in line and fuel reserved at the pump
+   * and waits until it is served.
+   * Interruption does not stop waiting, interrupt status is kept.
+   *
+   * @param start time client started waiting, see {@link StationMetrics#start()}
+   */
+  void pump(double amountInLiters, long start) {
+    long sequence = publish(amountInLiters, start, null);
+    var slot = slot(sequence);
+    long served = turn(sequence, SERVED);
+    boolean interrupted = false;
+    for (int spins = 0; slot.turn < served; spins++) {
+      if (spins < SPINS) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.park(this);
+        // park returns at once while interrupt status is set
+        interrupted |= Thread.interrupted();
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    release(slot, sequence);
+  }
+
+  /**
+   * Same as {@link #pump(double, long)} but client leaves the line when deadline passes
+   * before the worker started serving it, reservation is kept.
+   *
+   * @return false if client left the line
+   */
+  boolean pump(double amountInLiters, long start, long deadline) {
+    long sequence = publish(amountInLiters, start, null);
+    var slot = slot(sequence);
+    long served = turn(sequence, SERVED);
+    boolean waiting = true;
+    boolean interrupted = false;
+    try {
+      for (int spins = 0; slot.turn < served; spins++) {
+        long remaining = deadline - System.nanoTime();
+        if (waiting && remaining <= 0) {
+          if (TURN.compareAndSet(slot, turn(sequence, PUBLISHED), turn(sequence, CANCELLED))) {
+            return false;
+          }
+          waiting = false; // worker is serving the client already
+        } else if (spins < SPINS) {
+          Thread.onSpinWait();
+        } else {
+          if (waiting) {
+            LockSupport.parkNanos(this, remaining);
+          } else {
+            LockSupport.park(this);
+          }
+          interrupted |= Thread.interrupted();
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    release(slot, sequence);
+    return true;
+  }
+
+  /**
+   * Reads result of served request and frees the slot.
+   */
+  private static void release(Slot slot, long sequence) {
+    var failure = slot.failure;
+    slot.failure = null;
+    slot.turn = turn(sequence, RELEASED);
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    if (failure != null) {
+      throw new IllegalStateException("pumping failed", failure);
+    }
+  }
+
+  /**
+   * Publishes request of asynchronous client, waits only if all slots are taken.
+   *
+   * @param completion runs on the worker after serving, receives exception of pumping or null
+   */
+  void submit(double amountInLiters, long start, Consumer<Throwable> completion) {
+    publish(amountInLiters, start, completion);
+  }
+
+  private long publish(double amountInLiters, long start, Consumer<Throwable> completion) {
+    long sequence = claimed.getAndIncrement();
+    var slot = slot(sequence);
+    long free = turn(sequence - RING_SIZE, RELEASED);
+    boolean interrupted = false;
+    while (slot.turn < free) {
+      LockSupport.parkNanos(this, 1_000L); // ring is full, wait until its client leaves
+      interrupted |= Thread.interrupted();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    slot.amountInLiters = amountInLiters;
+    slot.start = start;
+    slot.client = completion == null ? Thread.currentThread() : null;
+    slot.completion = completion;
+    slot.turn = turn(sequence, PUBLISHED);
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+    return sequence;
+  }
+
+  @Override
+  public void run() {
+    for (long next = 0; ; ) {
+      var slot = slot(next);
+      long published = turn(next, PUBLISHED);
+      long turn = slot.turn;
+      if (turn < published) {
+        if (queue.drained.isDone()) {
+          return; // pump was removed and its line is empty
+        }
+        idle(slot, published);
+        continue;
+      }
+      if (turn == published && TURN.compareAndSet(slot, published, turn(next, SERVING))) {
+        serve(slot, next);
+      }
+      next++; // cancelled request is skipped
+    }
+  }
+
+  private void serve(Slot slot, long sequence) {
+    Throwable failure = null;
+    try {
+      service.serve(queue, slot.amountInLiters, slot.start);
+    } catch (Throwable e) {
+      failure = e; // reported to the client, worker must not die with clients in line
+    }
+    var client = slot.client;
+    var completion = slot.completion;
+    if (client != null) {
+      slot.failure = failure;
+      slot.turn = turn(sequence, SERVED);
+      LockSupport.unpark(client);
+      return;
+    }
+    slot.completion = null;
+    slot.turn = turn(sequence, RELEASED);
+    try {
+      completion.accept(failure);
+    } catch (Throwable ignored) {
+      // completion reports its own failures, worker keeps serving
+    }
+  }
+
+  /**
+   * Parks until next request is published or the pump is drained.
+   */
+  private void idle(Slot slot, long published) {
+    for (int spins = 0; spins < SPINS; spins++) {
+      if (slot.turn >= published) {
+        return;
+      }
+      Thread.onSpinWait();
+    }
+    sleeping = true;
+    // publisher reads sleeping after publishing, so one of us sees the other
+    if (slot.turn < published && !queue.drained.isDone()) {
+      LockSupport.park(this);
+    }
+    sleeping = false;
+  }
+}
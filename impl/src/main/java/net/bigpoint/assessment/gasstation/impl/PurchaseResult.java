@@ -0,0 +1,36 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Reusable holder of purchase result, see {@link FastGasStation#tryBuyGas}.
+ * Not thread safe, every client thread should use its own instance.
+ */
+public final class PurchaseResult {
+
+  private int outcome = Outcome.SOLD;
+  private double cost;
+  /** Reused by the station, so purchases with this result do not allocate. */
+  final Reservation reservation = new Reservation();
+
+  void set(int outcome, double cost) {
+    this.outcome = outcome;
+    this.cost = cost;
+  }
+
+  /**
+   * {@link Outcome} code of the last purchase.
+   */
+  public int getOutcome() {
+    return outcome;
+  }
+
+  /**
+   * Price the customer has to pay for the last purchase, 0 if it was cancelled.
+   */
+  public double getCost() {
+    return cost;
+  }
+
+  public boolean isSold() {
+    return outcome == Outcome.SOLD;
+  }
+}
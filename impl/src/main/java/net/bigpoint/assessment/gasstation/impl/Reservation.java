@@ -0,0 +1,18 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Reusable result of accepting a purchase and reserving fuel for it,
+ * filled by {@link FastGasStation#acceptPrice} and {@link FastGasStation#reserveOrCancel}
+ * while their outcome is returned as {@link Outcome} code.
+ * Not thread safe, every client thread should use its own instance.
+ */
+final class Reservation {
+
+  /** Price per liter the client pays, read once when purchase is accepted. */
+  double price;
+  /**
+   * Pump with reserved fuel and place in line, for {@link Outcome#LINE_FULL} the pump
+   * whose full line turned the client away, otherwise null if nothing was reserved.
+   */
+  GasPumpQueue queue;
+}
@@ -0,0 +1,135 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sales, cancellations and line lengths of the last hour in rings of time buckets.
+ * Seconds ring answers windows up to {@link #SECONDS} seconds, minutes ring longer ones,
+ * every event is added to the current bucket of both.
+ * Bucket whose time passed is replaced by a new one with CAS, adding to a bucket
+ * is a few atomic additions, reading sums the buckets of the window without locking.
+ * Windows are aligned to buckets, the current bucket is included while it fills.
+ */
+final class RollingStats {
+
+  /** Number of one-second buckets. */
+  static final int SECONDS = 300;
+  /** Number of one-minute buckets. */
+  static final int MINUTES = 60;
+
+  /** Index of sales in totals filled by {@link #sum}. */
+  static final int SALES = 0;
+  /** Index of revenue units, see {@link StationStats#toUnits}. */
+  static final int REVENUE = 1;
+  static final int CANCELLATIONS = 2;
+  /** Index of sum of sampled line lengths. */
+  static final int LINE_SUM = 3;
+  static final int LINE_SAMPLES = 4;
+  /** Length of totals array. */
+  static final int TOTALS = 5;
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final long NANOS_PER_MINUTE = 60 * NANOS_PER_SECOND;
+
+  private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  /**
+   * Counters of one time interval.
+   */
+  private static final class Bucket {
+    /** Number of the interval since time 0. */
+    final long epoch;
+    /** Indexed like totals, updated atomically. */
+    final long[] counters = new long[TOTALS];
+
+    Bucket(long epoch) {
+      this.epoch = epoch;
+    }
+  }
+
+  private final AtomicReferenceArray<Bucket> seconds = new AtomicReferenceArray<>(SECONDS);
+  private final AtomicReferenceArray<Bucket> minutes = new AtomicReferenceArray<>(MINUTES);
+
+  /**
+   * Adds sale that left given number of clients in line.
+   *
+   * @param now time in nanoseconds
+   */
+  void addSale(long now, long revenueUnits, int lineLength) {
+    add(bucket(seconds, Math.floorDiv(now, NANOS_PER_SECOND)), revenueUnits, lineLength);
+    add(bucket(minutes, Math.floorDiv(now, NANOS_PER_MINUTE)), revenueUnits, lineLength);
+  }
+
+  private static void add(Bucket bucket, long revenueUnits, int lineLength) {
+    if (bucket == null) {
+      return;
+    }
+    COUNTERS.getAndAdd(bucket.counters, SALES, 1L);
+    COUNTERS.getAndAdd(bucket.counters, REVENUE, revenueUnits);
+    COUNTERS.getAndAdd(bucket.counters, LINE_SUM, (long) lineLength);
+    COUNTERS.getAndAdd(bucket.counters, LINE_SAMPLES, 1L);
+  }
+
+  /**
+   * Adds cancelled purchase.
+   *
+   * @param now time in nanoseconds
+   */
+  void addCancellation(long now) {
+    var second = bucket(seconds, Math.floorDiv(now, NANOS_PER_SECOND));
+    if (second != null) {
+      COUNTERS.getAndAdd(second.counters, CANCELLATIONS, 1L);
+    }
+    var minute = bucket(minutes, Math.floorDiv(now, NANOS_PER_MINUTE));
+    if (minute != null) {
+      COUNTERS.getAndAdd(minute.counters, CANCELLATIONS, 1L);
+    }
+  }
+
+  /**
+   * Finds bucket of the interval, replaces bucket of older interval in its place.
+   *
+   * @return null if the place already holds newer interval, event came too late
+   */
+  private static Bucket bucket(AtomicReferenceArray<Bucket> ring, long epoch) {
+    int index = (int) Math.floorMod(epoch, (long) ring.length());
+    while (true) {
+      var bucket = ring.get(index);
+      if (bucket != null && bucket.epoch >= epoch) {
+        return bucket.epoch == epoch ? bucket : null;
+      }
+      var fresh = new Bucket(epoch);
+      if (ring.compareAndSet(index, bucket, fresh)) {
+        return fresh;
+      }
+    }
+  }
+
+  /**
+   * Adds counters of the window ending now to totals.
+   *
+   * @param totals indexed by {@link #SALES} and other constants, length {@link #TOTALS}
+   */
+  void sum(long now, int windowSeconds, long[] totals) {
+    if (windowSeconds <= SECONDS) {
+      sum(seconds, Math.floorDiv(now, NANOS_PER_SECOND), windowSeconds, totals);
+    } else {
+      sum(minutes, Math.floorDiv(now, NANOS_PER_MINUTE),
+          Math.min(windowSeconds / 60, MINUTES), totals);
+    }
+  }
+
+  private static void sum(AtomicReferenceArray<Bucket> ring, long current, int buckets,
+      long[] totals) {
+    for (int i = 0; i < ring.length(); i++) {
+      var bucket = ring.get(i);
+      if (bucket != null && bucket.epoch <= current && bucket.epoch > current - buckets) {
+        for (int counter = 0; counter < TOTALS; counter++) {
+          totals[counter] += (long) COUNTERS.getVolatile(bucket.counters, counter);
+        }
+      }
+    }
+  }
+}
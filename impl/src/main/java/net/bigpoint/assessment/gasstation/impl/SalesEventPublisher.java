@@ -0,0 +1,359 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Stream of sale and cancellation events of stations, see
+ * {@link FastGasStation#setEventPublisher}.
+ * Every subscriber has its own bounded ring of preallocated events,
+ * so publishing is a slot claimed with CAS and a few field writes without allocation.
+ * Events are delivered on the executor in batches of preallocated {@link SalesEvents},
+ * one batch per requested item, a subscriber receives batches from one thread at a time.
+ * When ring of a subscriber is full {@link OverflowPolicy} decides what happens to new events,
+ * other subscribers are not affected by a slow one.
+ * Events published before subscription are not delivered.
+ */
+public final class SalesEventPublisher implements Flow.Publisher<SalesEvents> {
+
+  private static final int OUTCOMES = Outcome.TIMED_OUT + 1;
+  private static final GasType[] GAS_TYPES = GasType.values();
+
+  /**
+   * Preallocated event, fields are written before sequence publishes them.
+   */
+  private static final class Slot {
+    volatile long sequence = -1;
+    int outcome;
+    GasType type;
+    int pumpId;
+    double amountInLiters;
+    double cost;
+    long timestamp;
+  }
+
+  private final Executor executor;
+  private final int bufferSize;
+  private final OverflowPolicy policy;
+  private final int maxBatchSize;
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private volatile boolean closed;
+
+  /**
+   * Initializes publisher that delivers events on the executor.
+   *
+   * @param bufferSize events buffered for every subscriber, power of 2
+   * @param policy what happens to events when buffer of a subscriber is full
+   * @param maxBatchSize maximum number of events in one batch
+   */
+  public SalesEventPublisher(Executor executor, int bufferSize, OverflowPolicy policy,
+      int maxBatchSize) {
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null");
+    }
+    if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+      throw new IllegalArgumentException("buffer size must be a power of 2");
+    }
+    if (policy == null) {
+      throw new IllegalArgumentException("policy cannot be null");
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("batch size must be positive");
+    }
+    this.executor = executor;
+    this.bufferSize = bufferSize;
+    this.policy = policy;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super SalesEvents> subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber cannot be null");
+    }
+    var subscription = new Subscription(subscriber);
+    subscriptions.add(subscription);
+    subscriber.onSubscribe(subscription);
+    if (closed) {
+      subscription.complete();
+    }
+  }
+
+  /**
+   * Number of subscribers that did not cancel yet.
+   */
+  public int getNumberOfSubscribers() {
+    return subscriptions.size();
+  }
+
+  /**
+   * Number of events dropped for all subscribers by {@link OverflowPolicy#DROP}.
+   */
+  public long getDroppedEvents() {
+    long dropped = 0;
+    for (var subscription : subscriptions) {
+      dropped += subscription.dropped.get();
+    }
+    return dropped;
+  }
+
+  /**
+   * Publishes event to every subscriber.
+   *
+   * @param pumpId id of the pump that sold gas, -1 for cancellations
+   */
+  void publish(int outcome, GasType type, int pumpId, double amountInLiters, double cost) {
+    if (subscriptions.isEmpty()) {
+      return;
+    }
+    long timestamp = System.currentTimeMillis();
+    for (var subscription : subscriptions) {
+      subscription.offer(outcome, type, pumpId, amountInLiters, cost, timestamp);
+    }
+  }
+
+  /**
+   * Completes every subscriber after its buffered events are delivered,
+   * later events are not published.
+   */
+  public void close() {
+    closed = true;
+    for (var subscription : subscriptions) {
+      subscription.complete();
+    }
+  }
+
+  /**
+   * Ring of one subscriber, filled by many publishing threads and drained by one.
+   */
+  private final class Subscription implements Flow.Subscription {
+
+    private final Flow.Subscriber<? super SalesEvents> subscriber;
+    private final Slot[] ring = new Slot[bufferSize];
+    /** Next sequence to claim by publishers. */
+    private final AtomicLong tail = new AtomicLong();
+    /** Next sequence to deliver, written by the draining thread only. */
+    private volatile long head;
+    private final AtomicLong demand = new AtomicLong();
+    /** Non-zero while a drain is scheduled or running. */
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * Coalesced events by outcome and gas type, every cell is guarded by its lock,
+     * so count, amount and cost of a cell are always consistent.
+     */
+    private final Object[] coalescedLocks = new Object[OUTCOMES * GAS_TYPES.length];
+    private final long[] coalescedCounts = new long[coalescedLocks.length];
+    private final double[] coalescedAmounts = new double[coalescedLocks.length];
+    private final double[] coalescedCosts = new double[coalescedLocks.length];
+    private volatile boolean coalescedPending;
+    private final SalesEvents batch = new SalesEvents(maxBatchSize);
+    private volatile boolean cancelled;
+    private volatile boolean completing;
+    /** Error of an invalid request, delivered by drain instead of further events. */
+    private volatile Throwable error;
+    private boolean done;
+    /** Scheduled on the executor, allocated once so publishing does not allocate. */
+    private final Runnable drainTask = this::drain;
+
+    Subscription(Flow.Subscriber<? super SalesEvents> subscriber) {
+      this.subscriber = subscriber;
+      for (int i = 0; i < ring.length; i++) {
+        ring[i] = new Slot();
+      }
+      for (int i = 0; i < coalescedLocks.length; i++) {
+        coalescedLocks[i] = new Object();
+      }
+    }
+
+    void offer(int outcome, GasType type, int pumpId, double amountInLiters, double cost,
+        long timestamp) {
+      long sequence;
+      while (true) {
+        sequence = tail.get();
+        if (sequence - head >= bufferSize) {
+          if (cancelled) {
+            return;
+          }
+          if (policy == OverflowPolicy.DROP) {
+            dropped.incrementAndGet();
+            return;
+          }
+          if (policy == OverflowPolicy.COALESCE) {
+            coalesce(outcome, type, amountInLiters, cost);
+            return;
+          }
+          LockSupport.parkNanos(this, 1_000L); // BLOCK until the subscriber makes room
+        } else if (tail.compareAndSet(sequence, sequence + 1)) {
+          break;
+        }
+      }
+      var slot = ring[(int) sequence & (bufferSize - 1)];
+      slot.outcome = outcome;
+      slot.type = type;
+      slot.pumpId = pumpId;
+      slot.amountInLiters = amountInLiters;
+      slot.cost = cost;
+      slot.timestamp = timestamp;
+      slot.sequence = sequence;
+      signal();
+    }
+
+    private void coalesce(int outcome, GasType type, double amountInLiters, double cost) {
+      int cell = outcome * GAS_TYPES.length + type.ordinal();
+      synchronized (coalescedLocks[cell]) {
+        coalescedCounts[cell]++;
+        coalescedAmounts[cell] += amountInLiters;
+        coalescedCosts[cell] += cost;
+      }
+      coalescedPending = true;
+      signal();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        // onError is delivered by drain, so it never overlaps onNext
+        error = new IllegalArgumentException("request must be positive");
+        subscriptions.remove(this);
+        signal();
+        return;
+      }
+      demand.getAndAccumulate(n, (current, added) -> {
+        long sum = current + added;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+      });
+      signal();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      subscriptions.remove(this);
+    }
+
+    void complete() {
+      completing = true;
+      signal();
+    }
+
+    /**
+     * Schedules drain unless it is already running, drain checks for work after it ends,
+     * so events published meanwhile are not stranded.
+     */
+    private void signal() {
+      if (wip.get() == 0 && wip.compareAndSet(0, 1)) {
+        executor.execute(drainTask);
+      }
+    }
+
+    private boolean hasWork() {
+      if (cancelled || done) {
+        return false;
+      }
+      if (error != null) {
+        return true;
+      }
+      boolean pending = ring[(int) head & (bufferSize - 1)].sequence == head
+          || coalescedPending;
+      return pending ? demand.get() > 0 : completing;
+    }
+
+    private void drain() {
+      while (true) {
+        try {
+          deliver();
+        } catch (RuntimeException e) {
+          cancel(); // subscriber failed
+        }
+        wip.set(0);
+        if (!hasWork() || !wip.compareAndSet(0, 1)) {
+          return;
+        }
+      }
+    }
+
+    private void deliver() {
+      if (deliverError()) {
+        return;
+      }
+      while (!cancelled && !done && error == null && demand.get() > 0) {
+        batch.clear();
+        long next = head;
+        while (batch.size() < batch.capacity()) {
+          var slot = ring[(int) next & (bufferSize - 1)];
+          if (slot.sequence != next) {
+            break;
+          }
+          batch.add(slot.outcome, slot.type, slot.pumpId, slot.amountInLiters, slot.cost,
+              slot.timestamp, 1);
+          next++;
+        }
+        head = next; // events are copied, publishers may reuse the slots
+        if (coalescedPending && batch.size() < batch.capacity()) {
+          drainCoalesced();
+        }
+        if (batch.size() == 0) {
+          break;
+        }
+        demand.decrementAndGet();
+        subscriber.onNext(batch);
+      }
+      if (deliverError()) {
+        return;
+      }
+      if (completing && !done && !cancelled && !hasEvents()) {
+        done = true;
+        subscriptions.remove(this);
+        subscriber.onComplete();
+      }
+    }
+
+    private boolean deliverError() {
+      var failure = error;
+      if (failure == null) {
+        return false;
+      }
+      if (!cancelled && !done) {
+        done = true;
+        cancel();
+        subscriber.onError(failure);
+      }
+      return true;
+    }
+
+    private boolean hasEvents() {
+      return ring[(int) head & (bufferSize - 1)].sequence == head || coalescedPending;
+    }
+
+    private void drainCoalesced() {
+      coalescedPending = false;
+      long timestamp = System.currentTimeMillis();
+      for (int outcome = 0; outcome < OUTCOMES; outcome++) {
+        for (var type : GAS_TYPES) {
+          int cell = outcome * GAS_TYPES.length + type.ordinal();
+          synchronized (coalescedLocks[cell]) {
+            if (coalescedCounts[cell] == 0) {
+              continue;
+            }
+            if (batch.size() == batch.capacity()) {
+              coalescedPending = true; // rest goes to the next batch
+              return;
+            }
+            batch.add(outcome, type, -1, coalescedAmounts[cell], coalescedCosts[cell], timestamp,
+                (int) coalescedCounts[cell]);
+            coalescedCounts[cell] = 0;
+            coalescedAmounts[cell] = 0;
+            coalescedCosts[cell] = 0;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Batch of sale and cancellation events delivered by {@link SalesEventPublisher}.
+ * Batch is reused by the publisher, it is valid only until
+ * {@link java.util.concurrent.Flow.Subscriber#onNext} returns and must be copied to be kept.
+ * Events of the batch are in order they were published, except coalesced events
+ * that summarize several events and come after the others.
+ */
+public final class SalesEvents {
+
+  private final int[] outcomes;
+  private final GasType[] types;
+  private final int[] pumpIds;
+  private final double[] amounts;
+  private final double[] costs;
+  private final long[] timestamps;
+  private final int[] counts;
+  private int size;
+
+  SalesEvents(int capacity) {
+    outcomes = new int[capacity];
+    types = new GasType[capacity];
+    pumpIds = new int[capacity];
+    amounts = new double[capacity];
+    costs = new double[capacity];
+    timestamps = new long[capacity];
+    counts = new int[capacity];
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  int capacity() {
+    return outcomes.length;
+  }
+
+  void add(int outcome, GasType type, int pumpId, double amountInLiters, double cost,
+      long timestamp, int count) {
+    outcomes[size] = outcome;
+    types[size] = type;
+    pumpIds[size] = pumpId;
+    amounts[size] = amountInLiters;
+    costs[size] = cost;
+    timestamps[size] = timestamp;
+    counts[size] = count;
+    size++;
+  }
+
+  /**
+   * Number of events in the batch.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * {@link Outcome} code of the event.
+   */
+  public int getOutcome(int event) {
+    return outcomes[check(event)];
+  }
+
+  public GasType getGasType(int event) {
+    return types[check(event)];
+  }
+
+  /**
+   * Id of the pump that sold gas, -1 for cancellations and coalesced events.
+   */
+  public int getPumpId(int event) {
+    return pumpIds[check(event)];
+  }
+
+  /**
+   * Requested amount, sum of amounts for coalesced event.
+   */
+  public double getAmountInLiters(int event) {
+    return amounts[check(event)];
+  }
+
+  /**
+   * Price paid for sale, sum of prices for coalesced event, 0 for cancellations.
+   */
+  public double getCost(int event) {
+    return costs[check(event)];
+  }
+
+  /**
+   * Time of the event in milliseconds since epoch, time of delivery for coalesced event.
+   */
+  public long getTimestamp(int event) {
+    return timestamps[check(event)];
+  }
+
+  /**
+   * Number of purchases summarized by the event, 1 if it was not coalesced.
+   */
+  public int getCount(int event) {
+    return counts[check(event)];
+  }
+
+  private int check(int event) {
+    if (event < 0 || event >= size) {
+      throw new IndexOutOfBoundsException("no event " + event + " in batch of " + size);
+    }
+    return event;
+  }
+}
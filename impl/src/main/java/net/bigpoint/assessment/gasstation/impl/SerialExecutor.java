@@ -0,0 +1,53 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks one at a time in submission order on threads of another executor.
+ * Keeps at most one thread busy, so executor per pump bounds threads by the number of pumps.
+ * Tasks should handle their exceptions, a failing task does not stop the tasks after it.
+ */
+final class SerialExecutor implements Executor {
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  /** Number of submitted tasks not completed yet. */
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Executor executor;
+
+  SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    tasks.add(task);
+    if (pending.getAndIncrement() == 0) {
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException | Error e) {
+        tasks.remove(task);
+        if (pending.decrementAndGet() != 0) {
+          drain(); // tasks submitted meanwhile expect a drain, run them here
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void drain() {
+    boolean failed = true;
+    try {
+      do {
+        tasks.poll().run();
+      } while (pending.decrementAndGet() != 0);
+      failed = false;
+    } finally {
+      if (failed && pending.decrementAndGet() != 0) {
+        executor.execute(this::drain); // the rest runs in a new drain
+      }
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+
+/**
+ * {@link GasTooExpensiveException} without stack trace,
+ * cheap to create for frequent cancellations.
+ */
+class StacklessGasTooExpensiveException extends GasTooExpensiveException {
+
+  private static final long serialVersionUID = 4427958126370193305L;
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,30 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * {@link NotEnoughGasException} that is cheap to create for frequent cancellations,
+ * stack trace is captured only when requested.
+ */
+class StacklessNotEnoughGasException extends NotEnoughGasException {
+
+  private static final long serialVersionUID = -1766202536342517683L;
+
+  StacklessNotEnoughGasException() {
+    this(false);
+  }
+
+  StacklessNotEnoughGasException(boolean writableStackTrace) {
+    if (writableStackTrace) {
+      super.fillInStackTrace();
+    }
+  }
+
+  /**
+   * Skips capturing stack trace when called from the constructor of Throwable.
+   */
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
@@ -0,0 +1,305 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Records where purchases spend time: reserving a pump, waiting in line,
+ * waiting for a tanker that pours gas into the pump and pumping.
+ * Durations are counted per gas type and per pump in {@link LatencyHistogram}s.
+ * Sales and cancellations of the last hour are counted per pump and per gas type
+ * in {@link RollingStats}, gas type counters are striped between threads.
+ * When disabled station does not even read the clock,
+ * histograms of a pump are allocated when it is used with metrics enabled first time.
+ */
+final class StationMetrics implements StationMetricsMXBean {
+
+  /**
+   * Histograms of one pump.
+   */
+  static final class PumpMetrics {
+    final LatencyHistogram queueWait = new LatencyHistogram();
+    final LatencyHistogram pumpTime = new LatencyHistogram();
+    final RollingStats window = new RollingStats();
+  }
+
+  private final Map<GasType, PumpIndex> indexes;
+  private final LatencyHistogram[] reservationTime;
+  private final LatencyHistogram[] queueWait;
+  private final LatencyHistogram[] pumpTime;
+  private final LatencyHistogram[] refillStall;
+  /** Stripes of rolling statistics of every gas type. */
+  private final RollingStats[][] windows;
+  private final int mask;
+  /** Time of rolling statistics in nanoseconds. */
+  private final LongSupplier clock;
+  private volatile boolean enabled;
+
+  /**
+   * Initializes disabled metrics of pumps in provided indexes.
+   */
+  StationMetrics(Map<GasType, PumpIndex> indexes) {
+    this(indexes, System::nanoTime);
+  }
+
+  /**
+   * Initializes disabled metrics with clock of rolling statistics.
+   */
+  StationMetrics(Map<GasType, PumpIndex> indexes, LongSupplier clock) {
+    this.indexes = indexes;
+    this.clock = clock;
+    int types = GasType.values().length;
+    int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    windows = new RollingStats[types][stripes];
+    for (var typeWindows : windows) {
+      for (int i = 0; i < stripes; i++) {
+        typeWindows[i] = new RollingStats();
+      }
+    }
+    mask = stripes - 1;
+    reservationTime = new LatencyHistogram[types];
+    queueWait = new LatencyHistogram[types];
+    pumpTime = new LatencyHistogram[types];
+    refillStall = new LatencyHistogram[types];
+    for (int i = 0; i < types; i++) {
+      reservationTime[i] = new LatencyHistogram();
+      queueWait[i] = new LatencyHistogram();
+      pumpTime[i] = new LatencyHistogram();
+      refillStall[i] = new LatencyHistogram();
+    }
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Current time for measurements, 0 when metrics are disabled.
+   */
+  long start() {
+    return enabled ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * Records time of pump selection and fuel reservation.
+   *
+   * @param start result of {@link #start()}, nothing is recorded if it is 0
+   * @return current time
+   */
+  long recordReservation(GasType type, long start) {
+    if (start == 0L) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    reservationTime[type.ordinal()].record(now - start);
+    return now;
+  }
+
+  /**
+   * Records time spent waiting in line.
+   *
+   * @param start result of {@link #start()}, nothing is recorded if it is 0
+   * @return current time
+   */
+  long recordQueueWait(GasPumpQueue queue, long start) {
+    if (start == 0L) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    queueWait[queue.type.ordinal()].record(now - start);
+    queue.metrics().queueWait.record(now - start);
+    return now;
+  }
+
+  /**
+   * Records time client at the pump waited for tanker to finish pouring.
+   *
+   * @param start result of {@link #start()}, nothing is recorded if it is 0
+   * @return current time
+   */
+  long recordRefillStall(GasPumpQueue queue, long start) {
+    if (start == 0L) {
+      return 0L;
+    }
+    long now = System.nanoTime();
+    refillStall[queue.type.ordinal()].record(now - start);
+    return now;
+  }
+
+  /**
+   * Records time spent pumping.
+   *
+   * @param start result of {@link #start()}, nothing is recorded if it is 0
+   */
+  void recordPumping(GasPumpQueue queue, long start) {
+    if (start == 0L) {
+      return;
+    }
+    long duration = System.nanoTime() - start;
+    pumpTime[queue.type.ordinal()].record(duration);
+    queue.metrics().pumpTime.record(duration);
+  }
+
+  /**
+   * Counts sale in rolling statistics together with clients left in line of the pump.
+   */
+  void recordSale(GasPumpQueue queue, double cost) {
+    if (!enabled) {
+      return;
+    }
+    long now = clock.getAsLong();
+    long units = StationStats.toUnits(cost);
+    int length = queue.length();
+    stripe(queue.type).addSale(now, units, length);
+    queue.metrics().window.addSale(now, units, length);
+  }
+
+  /**
+   * Counts cancellation in rolling statistics of the type and of the pump if it is known.
+   *
+   * @param queue pump the client left or was turned away from, null if there is none
+   */
+  void recordCancel(GasType type, GasPumpQueue queue) {
+    if (!enabled) {
+      return;
+    }
+    long now = clock.getAsLong();
+    stripe(type).addCancellation(now);
+    if (queue != null) {
+      queue.metrics().window.addCancellation(now);
+    }
+  }
+
+  private RollingStats stripe(GasType type) {
+    int index = StationStats.mix(System.identityHashCode(Thread.currentThread()));
+    return windows[type.ordinal()][index & mask];
+  }
+
+  /**
+   * Sums stripes of the type over the window ending now.
+   */
+  WindowStats windowStats(GasType type, StatsWindow window) {
+    long now = clock.getAsLong();
+    var totals = new long[RollingStats.TOTALS];
+    for (var stripe : windows[type.ordinal()]) {
+      stripe.sum(now, window.getSeconds(), totals);
+    }
+    return new WindowStats(window, totals);
+  }
+
+  /**
+   * Sums statistics of the pump over the window ending now.
+   */
+  WindowStats windowStats(GasPumpQueue queue, StatsWindow window) {
+    var totals = new long[RollingStats.TOTALS];
+    var metrics = queue.metricsIfCreated();
+    if (metrics != null) {
+      metrics.window.sum(clock.getAsLong(), window.getSeconds(), totals);
+    }
+    return new WindowStats(window, totals);
+  }
+
+  MetricsSnapshot snapshot() {
+    int types = GasType.values().length;
+    var reservation = new HistogramSnapshot[types];
+    var wait = new HistogramSnapshot[types];
+    var pumping = new HistogramSnapshot[types];
+    var stall = new HistogramSnapshot[types];
+    var lines = new int[types];
+    var pumps = new ArrayList<PumpMetricsSnapshot>();
+    var empty = new LatencyHistogram().snapshot();
+    for (var type : GasType.values()) {
+      int i = type.ordinal();
+      reservation[i] = reservationTime[i].snapshot();
+      wait[i] = queueWait[i].snapshot();
+      pumping[i] = pumpTime[i].snapshot();
+      stall[i] = refillStall[i].snapshot();
+      for (var queue : indexes.get(type).queues()) {
+        lines[i] += queue.length();
+        var metrics = queue.metricsIfCreated();
+        pumps.add(new PumpMetricsSnapshot(queue.id, type, queue.length(),
+            metrics == null ? empty : metrics.queueWait.snapshot(),
+            metrics == null ? empty : metrics.pumpTime.snapshot()));
+      }
+    }
+    return new MetricsSnapshot(reservation, wait, pumping, stall, lines,
+        Collections.unmodifiableList(pumps));
+  }
+
+  @Override
+  public Map<String, Integer> getLineLengths() {
+    var lines = new LinkedHashMap<String, Integer>();
+    for (var type : GasType.values()) {
+      int length = 0;
+      for (var queue : indexes.get(type).queues()) {
+        length += queue.length();
+      }
+      lines.put(type.name(), length);
+    }
+    return lines;
+  }
+
+  @Override
+  public Map<String, Double> getReservationTimeP99() {
+    return percentile(reservationTime, 99.0);
+  }
+
+  @Override
+  public Map<String, Double> getQueueWaitP99() {
+    return percentile(queueWait, 99.0);
+  }
+
+  @Override
+  public Map<String, Double> getQueueWaitP999() {
+    return percentile(queueWait, 99.9);
+  }
+
+  @Override
+  public Map<String, Double> getPumpTimeP99() {
+    return percentile(pumpTime, 99.0);
+  }
+
+  @Override
+  public Map<String, Double> getRefillStallP99() {
+    return percentile(refillStall, 99.0);
+  }
+
+  @Override
+  public Map<String, Double> getSalesPerSecond() {
+    var result = new LinkedHashMap<String, Double>();
+    for (var type : GasType.values()) {
+      result.put(type.name(), windowStats(type, StatsWindow.ONE_MINUTE).getSalesPerSecond());
+    }
+    return result;
+  }
+
+  @Override
+  public Map<String, Double> getCancellationRatio() {
+    var result = new LinkedHashMap<String, Double>();
+    for (var type : GasType.values()) {
+      result.put(type.name(),
+          windowStats(type, StatsWindow.ONE_MINUTE).getCancellationRatio());
+    }
+    return result;
+  }
+
+  private static Map<String, Double> percentile(LatencyHistogram[] histograms,
+      double percentile) {
+    var result = new LinkedHashMap<String, Double>();
+    for (var type : GasType.values()) {
+      var histogram = histograms[type.ordinal()].snapshot();
+      result.put(type.name(), histogram.getValueAtPercentile(percentile) / 1000.0);
+    }
+    return result;
+  }
+}
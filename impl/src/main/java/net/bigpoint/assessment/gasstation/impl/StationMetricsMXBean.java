@@ -0,0 +1,32 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Map;
+
+/**
+ * JMX view of station metrics, see {@link FastGasStation#registerMBean(String)}.
+ * Maps are keyed by gas type name, durations are in microseconds.
+ */
+public interface StationMetricsMXBean {
+
+  boolean isEnabled();
+
+  void setEnabled(boolean enabled);
+
+  Map<String, Integer> getLineLengths();
+
+  Map<String, Double> getReservationTimeP99();
+
+  Map<String, Double> getQueueWaitP99();
+
+  Map<String, Double> getQueueWaitP999();
+
+  Map<String, Double> getPumpTimeP99();
+
+  Map<String, Double> getRefillStallP99();
+
+  /** Sales per second in the last minute. */
+  Map<String, Double> getSalesPerSecond();
+
+  /** Share of cancelled purchases in the last minute. */
+  Map<String, Double> getCancellationRatio();
+}
@@ -0,0 +1,70 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Discrete-event simulation of clients of {@link FastGasStation} on a virtual clock.
+ * Clients select and reserve pumps with the logic of the station,
+ * but pumping and waiting in line are computed instead of slept:
+ * every pump serves its line in arrival order, pumping takes a fixed time per liter.
+ * Events run in one thread in order of time and scheduling, so the same clients
+ * always give the same sales, cancellations and waits.
+ * Lines follow {@link DispatchMode#LINES}, the station should not serve real clients meanwhile.
+ */
+public final class StationSimulation extends DiscreteEventModel<GasPumpQueue> {
+
+  /** Pumping time of {@link net.bigpoint.assessment.gasstation.GasPump#pumpGas}. */
+  public static final long GAS_PUMP_NANOS_PER_LITER = 100_000_000L;
+
+  private final FastGasStation station;
+  /** Virtual time when every pump finishes serving its line. */
+  private final Map<GasPumpQueue, Long> freeAt = new HashMap<>();
+  private final Reservation reservation = new Reservation();
+
+  /**
+   * Initializes simulation of the station with pumping time of {@link #GAS_PUMP_NANOS_PER_LITER}.
+   */
+  public StationSimulation(FastGasStation station) {
+    this(station, GAS_PUMP_NANOS_PER_LITER);
+  }
+
+  /**
+   * Initializes simulation of the station with given pumping time of one liter.
+   */
+  public StationSimulation(FastGasStation station, long nanosPerLiter) {
+    super(nanosPerLiter);
+    if (station == null) {
+      throw new IllegalArgumentException("station cannot be null");
+    }
+    this.station = station;
+  }
+
+  @Override
+  void arrive(GasType type, double amountInLiters, double maxPricePerLiter) {
+    int outcome = station.acceptPrice(type, amountInLiters, maxPricePerLiter, reservation);
+    if (outcome != Outcome.SOLD) {
+      return;
+    }
+    if (station.reserveOrCancel(type, amountInLiters, reservation) != Outcome.SOLD) {
+      return;
+    }
+    enterLine(reservation.queue, type, amountInLiters, reservation.price);
+  }
+
+  @Override
+  void depart(GasPumpQueue pump, GasType type, double amountInLiters, double price) {
+    station.checkout(pump, type, amountInLiters, price);
+  }
+
+  @Override
+  long freeAt(GasType type, GasPumpQueue pump) {
+    return freeAt.getOrDefault(pump, 0L);
+  }
+
+  @Override
+  void setFreeAt(GasType type, GasPumpQueue pump, long time) {
+    freeAt.put(pump, time);
+  }
+}
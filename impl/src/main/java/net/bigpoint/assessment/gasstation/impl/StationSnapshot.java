@@ -0,0 +1,151 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Compact binary image of station state for fast restarts.
+ * Pumps are kept in parallel arrays and the whole image is read and written at once.
+ * Layout, little endian:
+ *  - int magic, int version;
+ *  - long sales, long revenue units, long cancellations as not enough gas,
+ *    long cancellations as too expensive, long cancellations as line full
+ *    and long cancellations as timed out, the last two are missing in version 1;
+ *  - int number of gas types, double price of every type, 0 if not set;
+ *  - int number of pumps, then int id, byte gas type ordinal
+ *    and double amount available for new clients of every pump.
+ */
+final class StationSnapshot {
+
+  private static final int MAGIC = 0x47534E50; // GSNP
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 2 * Integer.BYTES + 6 * Long.BYTES + Integer.BYTES;
+  private static final int PUMP_SIZE = Integer.BYTES + Byte.BYTES + Double.BYTES;
+
+  final long sales;
+  final long revenueUnits;
+  final long cancelNotEnough;
+  final long cancelTooExpensive;
+  final long cancelLineFull;
+  final long cancelTimedOut;
+  final double[] prices;
+  final int[] ids;
+  final GasType[] types;
+  final double[] amounts;
+
+  StationSnapshot(long sales, long revenueUnits, long cancelNotEnough, long cancelTooExpensive,
+      long cancelLineFull, long cancelTimedOut, double[] prices, int[] ids, GasType[] types,
+      double[] amounts) {
+    this.sales = sales;
+    this.revenueUnits = revenueUnits;
+    this.cancelNotEnough = cancelNotEnough;
+    this.cancelTooExpensive = cancelTooExpensive;
+    this.cancelLineFull = cancelLineFull;
+    this.cancelTimedOut = cancelTimedOut;
+    this.prices = prices;
+    this.ids = ids;
+    this.types = types;
+    this.amounts = amounts;
+  }
+
+  /**
+   * Encodes the snapshot into a buffer ready to be written.
+   */
+  ByteBuffer encode() {
+    var buffer = ByteBuffer.allocate(HEADER_SIZE + prices.length * Double.BYTES
+        + Integer.BYTES + ids.length * PUMP_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(VERSION);
+    buffer.putLong(sales).putLong(revenueUnits).putLong(cancelNotEnough)
+        .putLong(cancelTooExpensive).putLong(cancelLineFull).putLong(cancelTimedOut);
+    buffer.putInt(prices.length);
+    for (double price : prices) {
+      buffer.putDouble(price);
+    }
+    buffer.putInt(ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      buffer.putInt(ids[i]).put((byte) types[i].ordinal()).putDouble(amounts[i]);
+    }
+    return buffer.flip();
+  }
+
+  /**
+   * Decodes snapshot from the buffer.
+   *
+   * @throws IOException if buffer does not contain a snapshot
+   */
+  static StationSnapshot decode(ByteBuffer buffer) throws IOException {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("not a station snapshot");
+      }
+      int version = buffer.getInt();
+      if (version < 1 || version > VERSION) {
+        throw new IOException("unsupported snapshot version " + version);
+      }
+      // counters are read in file order before the rest of the snapshot
+      final long sales = buffer.getLong();
+      final long revenueUnits = buffer.getLong();
+      final long cancelNotEnough = buffer.getLong();
+      final long cancelTooExpensive = buffer.getLong();
+      final long cancelLineFull = version > 1 ? buffer.getLong() : 0;
+      final long cancelTimedOut = version > 1 ? buffer.getLong() : 0;
+      var gasTypes = GasType.values();
+      if (buffer.getInt() != gasTypes.length) {
+        throw new IOException("snapshot has different gas types");
+      }
+      var prices = new double[gasTypes.length];
+      for (int i = 0; i < prices.length; i++) {
+        prices[i] = buffer.getDouble();
+      }
+      int size = buffer.getInt();
+      if (size < 0 || size > buffer.remaining() / PUMP_SIZE) {
+        throw new IOException("snapshot is truncated");
+      }
+      var ids = new int[size];
+      var types = new GasType[size];
+      var amounts = new double[size];
+      for (int i = 0; i < size; i++) {
+        ids[i] = buffer.getInt();
+        types[i] = gasTypes[buffer.get()];
+        amounts[i] = buffer.getDouble();
+      }
+      return new StationSnapshot(sales, revenueUnits, cancelNotEnough, cancelTooExpensive,
+          cancelLineFull, cancelTimedOut, prices, ids, types, amounts);
+    } catch (RuntimeException e) {
+      throw new IOException("snapshot is corrupted", e);
+    }
+  }
+
+  /**
+   * Writes snapshot to a temporary file, forces it to disk and moves it over the target,
+   * so the target always holds a complete snapshot even after a crash.
+   */
+  void write(Path file) throws IOException {
+    var temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      var buffer = encode();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads snapshot with one bulk read of the file.
+   */
+  static StationSnapshot read(Path file) throws IOException {
+    return decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+  }
+}
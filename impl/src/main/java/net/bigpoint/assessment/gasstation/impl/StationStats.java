@@ -0,0 +1,205 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.ToLongFunction;
+
+/**
+ * Contention-free statistics of the station.
+ * Counters are striped between cells like in {@link java.util.concurrent.atomic.LongAdder}
+ * so threads selling different gas do not fight for one lock.
+ * Every cell is updated under its own sequence lock, which allows to read all counters
+ * of a cell consistently without blocking writers.
+ * Revenue is summed as fixed-point number so its sum does not depend on sales order.
+ */
+final class StationStats {
+
+  /** Number of revenue units in one unit of money. */
+  static final double REVENUE_SCALE = 1_000_000.0;
+
+  private static final VarHandle VERSION;
+
+  static {
+    try {
+      VERSION = MethodHandles.lookup().findVarHandle(Cell.class, "version", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Stripe of the counters, fields are guarded by version.
+   */
+  private static final class Cell {
+    /** Odd while cell is updated, incremented on every update. */
+    volatile long version;
+    long sales;
+    long revenue;
+    long cancelNotEnough;
+    long cancelTooExpensive;
+    long cancelLineFull;
+    long cancelTimedOut;
+  }
+
+  private final Cell[] cells;
+  private final int mask;
+
+  /**
+   * Initializes stripes according to the number of processors.
+   */
+  StationStats() {
+    int size = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+    cells = new Cell[size];
+    for (int i = 0; i < size; i++) {
+      cells[i] = new Cell();
+    }
+    mask = size - 1;
+  }
+
+  /**
+   * Converts money into revenue units.
+   */
+  static long toUnits(double money) {
+    return Math.round(money * REVENUE_SCALE);
+  }
+
+  void addSale(double cost) {
+    add(1, toUnits(cost), 0, 0);
+  }
+
+  void addCancelNotEnough() {
+    add(0, 0, 1, 0);
+  }
+
+  void addCancelTooExpensive() {
+    add(0, 0, 0, 1);
+  }
+
+  void addCancelLineFull() {
+    add(0, 0, 0, 0, 1, 0);
+  }
+
+  void addCancelTimedOut() {
+    add(0, 0, 0, 0, 0, 1);
+  }
+
+  /**
+   * Adds values to sales and cancellations counters at once.
+   */
+  void add(long sales, long revenueUnits, long cancelNotEnough, long cancelTooExpensive) {
+    add(sales, revenueUnits, cancelNotEnough, cancelTooExpensive, 0, 0);
+  }
+
+  /**
+   * Adds values to all counters at once, including clients turned away by admission control.
+   */
+  void add(long sales, long revenueUnits, long cancelNotEnough, long cancelTooExpensive,
+      long cancelLineFull, long cancelTimedOut) {
+    var cell = lock();
+    cell.sales += sales;
+    cell.revenue += revenueUnits;
+    cell.cancelNotEnough += cancelNotEnough;
+    cell.cancelTooExpensive += cancelTooExpensive;
+    cell.cancelLineFull += cancelLineFull;
+    cell.cancelTimedOut += cancelTimedOut;
+    cell.version++; // volatile write publishes values and unlocks
+  }
+
+  /**
+   * Locks cell of the current thread or next free one if it is busy.
+   */
+  private Cell lock() {
+    int index = mix(System.identityHashCode(Thread.currentThread()));
+    while (true) {
+      var cell = cells[index & mask];
+      long version = cell.version;
+      if ((version & 1) == 0 && VERSION.compareAndSet(cell, version, version + 1)) {
+        return cell;
+      }
+      index++;
+      Thread.onSpinWait();
+    }
+  }
+
+  /**
+   * Spreads hash of a thread over stripes.
+   */
+  static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  long sales() {
+    return sum(cell -> cell.sales);
+  }
+
+  double revenue() {
+    return sum(cell -> cell.revenue) / REVENUE_SCALE;
+  }
+
+  /**
+   * Sums one counter without waiting for writers.
+   */
+  private long sum(ToLongFunction<Cell> counter) {
+    long sum = 0;
+    for (var cell : cells) {
+      // volatile read makes counters visible, cells never updated hold zeros
+      if (cell.version != 0) {
+        sum += counter.applyAsLong(cell);
+      }
+    }
+    return sum;
+  }
+
+  long cancelNotEnough() {
+    return sum(cell -> cell.cancelNotEnough);
+  }
+
+  long cancelTooExpensive() {
+    return sum(cell -> cell.cancelTooExpensive);
+  }
+
+  long cancelLineFull() {
+    return sum(cell -> cell.cancelLineFull);
+  }
+
+  long cancelTimedOut() {
+    return sum(cell -> cell.cancelTimedOut);
+  }
+
+  /**
+   * Reads all counters so that every update is either fully included or not included at all.
+   */
+  StatsSnapshot snapshot() {
+    long sales = 0;
+    long revenue = 0;
+    long cancelNotEnough = 0;
+    long cancelTooExpensive = 0;
+    long cancelLineFull = 0;
+    long cancelTimedOut = 0;
+    for (var cell : cells) {
+      while (true) {
+        long version = cell.version;
+        long cellSales = cell.sales;
+        long cellRevenue = cell.revenue;
+        long cellNotEnough = cell.cancelNotEnough;
+        long cellTooExpensive = cell.cancelTooExpensive;
+        long cellLineFull = cell.cancelLineFull;
+        long cellTimedOut = cell.cancelTimedOut;
+        VarHandle.acquireFence();
+        if ((version & 1) == 0 && version == cell.version) {
+          sales += cellSales;
+          revenue += cellRevenue;
+          cancelNotEnough += cellNotEnough;
+          cancelTooExpensive += cellTooExpensive;
+          cancelLineFull += cellLineFull;
+          cancelTimedOut += cellTimedOut;
+          break;
+        }
+        Thread.onSpinWait();
+      }
+    }
+    return new StatsSnapshot(sales, revenue / REVENUE_SCALE, cancelNotEnough, cancelTooExpensive,
+        cancelLineFull, cancelTimedOut);
+  }
+}
@@ -0,0 +1,64 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Consistent view of station statistics at some moment.
+ * Every sale is either counted together with its revenue or not counted at all.
+ */
+public final class StatsSnapshot {
+
+  private final long sales;
+  private final double revenue;
+  private final long cancelNotEnough;
+  private final long cancelTooExpensive;
+  private final long cancelLineFull;
+  private final long cancelTimedOut;
+
+  StatsSnapshot(long sales, double revenue, long cancelNotEnough, long cancelTooExpensive,
+      long cancelLineFull, long cancelTimedOut) {
+    this.sales = sales;
+    this.revenue = revenue;
+    this.cancelNotEnough = cancelNotEnough;
+    this.cancelTooExpensive = cancelTooExpensive;
+    this.cancelLineFull = cancelLineFull;
+    this.cancelTimedOut = cancelTimedOut;
+  }
+
+  public double getRevenue() {
+    return revenue;
+  }
+
+  public long getNumberOfSales() {
+    return sales;
+  }
+
+  public long getNumberOfCancellationsNoGas() {
+    return cancelNotEnough;
+  }
+
+  public long getNumberOfCancellationsTooExpensive() {
+    return cancelTooExpensive;
+  }
+
+  /**
+   * Clients turned away by admission control as lines of suitable pumps were full.
+   */
+  public long getNumberOfCancellationsLineFull() {
+    return cancelLineFull;
+  }
+
+  /**
+   * Clients that left the line when their deadline passed.
+   */
+  public long getNumberOfCancellationsTimedOut() {
+    return cancelTimedOut;
+  }
+
+  @Override
+  public String toString() {
+    return "StatsSnapshot[sales=" + sales + ", revenue=" + revenue
+        + ", cancelNotEnough=" + cancelNotEnough
+        + ", cancelTooExpensive=" + cancelTooExpensive
+        + ", cancelLineFull=" + cancelLineFull
+        + ", cancelTimedOut=" + cancelTimedOut + "]";
+  }
+}
@@ -0,0 +1,23 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Time windows of rolling statistics, see {@link FastGasStation#getWindowStats}.
+ */
+public enum StatsWindow {
+  ONE_MINUTE(60),
+  FIVE_MINUTES(300),
+  ONE_HOUR(3600);
+
+  private final int seconds;
+
+  StatsWindow(int seconds) {
+    this.seconds = seconds;
+  }
+
+  /**
+   * Length of the window.
+   */
+  public int getSeconds() {
+    return seconds;
+  }
+}
@@ -0,0 +1,114 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Map;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Clients wait in line of the selected pump, lines work like work-stealing deques:
+ * pump serves own line from the head, and pump whose line is empty
+ * steals the client from the tail of the longest line of other pump of the same type
+ * if it has enough fuel for that client.
+ * Fuel reservation and place in line move together with the client.
+ */
+final class StealingDispatcher extends HandoverDispatcher {
+
+  private final Map<GasType, PumpIndex> indexes;
+
+  StealingDispatcher(Map<GasType, PumpIndex> indexes) {
+    this.indexes = indexes;
+  }
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters) {
+    if (reserved.waiters.isEmpty() && reserved.busy.compareAndSet(false, true)) {
+      return reserved;
+    }
+    return join(reserved, amountInLiters).await();
+  }
+
+  @Override
+  public GasPumpQueue acquire(GasPumpQueue reserved, double amountInLiters, long deadline) {
+    if (reserved.waiters.isEmpty() && reserved.busy.compareAndSet(false, true)) {
+      return reserved;
+    }
+    var waiter = join(reserved, amountInLiters);
+    var granted = waiter.await(deadline);
+    if (granted == null) {
+      // stealing pump may have taken the client out of line already
+      reserved.waiters.removeFirstOccurrence(waiter);
+    }
+    return granted;
+  }
+
+  private Waiter join(GasPumpQueue reserved, double amountInLiters) {
+    var waiter = new Waiter(reserved, amountInLiters);
+    reserved.waiters.offerLast(waiter);
+    if (reserved.busy.compareAndSet(false, true)) {
+      release(reserved); // pump was released before client joined the line
+    }
+    return waiter;
+  }
+
+  @Override
+  public void release(GasPumpQueue queue) {
+    while (true) {
+      var next = queue.waiters.pollFirst();
+      if (next != null) {
+        if (next.grant(queue)) {
+          return;
+        }
+        continue; // client stopped waiting
+      }
+      if (steal(queue)) {
+        return;
+      }
+      queue.busy.set(false);
+      // client could join the line after it was checked
+      if (queue.waiters.isEmpty() || !queue.busy.compareAndSet(false, true)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Moves last client of the longest line that idle pump can serve to it.
+   *
+   * @return true if client was moved
+   */
+  private boolean steal(GasPumpQueue thief) {
+    var index = indexes.get(thief.type);
+    GasPumpQueue victim = null;
+    for (var queue : index.queues()) {
+      if (queue != thief && !queue.waiters.isEmpty()
+          && (victim == null || queue.length() > victim.length())) {
+        victim = queue;
+      }
+    }
+    if (victim == null) {
+      return false;
+    }
+    var waiter = victim.waiters.peekLast();
+    if (waiter == null || thief.availableAmount() <= waiter.amountInLiters
+        || !victim.waiters.removeLastOccurrence(waiter)) {
+      return false;
+    }
+    if (!thief.tryReserve(waiter.amountInLiters)) {
+      // fuel was taken meanwhile, return client to its line
+      victim.waiters.offerLast(waiter);
+      if (victim.busy.compareAndSet(false, true)) {
+        release(victim);
+      }
+      return false;
+    }
+    if (!waiter.grant(thief)) {
+      thief.cancel(waiter.amountInLiters); // client stopped waiting and returns its fuel itself
+      return false;
+    }
+    // reservation moves only after the pump was granted, cancelled client returns it to victim
+    victim.cancel(waiter.amountInLiters);
+    index.update(victim);
+    index.update(thief);
+    waiter.reserved = thief;
+    return true;
+  }
+}
@@ -0,0 +1,312 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Durable log of station transactions in memory-mapped segment files.
+ * Every transaction is a fixed-size record written to a slot claimed with one atomic increment,
+ * so appending is a few memory writes, it maps a segment file only when the next segment
+ * was not mapped ahead yet.
+ * Written records are forced to disk by background group commit every commit interval,
+ * which also maps the next segment before it is needed.
+ * Mapping and forcing use different locks, so appends never wait for a disk write.
+ * Record is valid when its sequence number, written last, matches its slot,
+ * replay stops at the first slot that was not written completely.
+ * Record layout, little endian:
+ *  - 0: long sequence number starting from 1;
+ *  - 8: byte record kind, 9: byte gas type ordinal, 12: int pump id;
+ *  - 16: double amount in liters;
+ *  - 24: double cost of the sale.
+ */
+public final class TransactionJournal implements AutoCloseable {
+
+  static final int RECORD_SIZE = 32;
+  /** Sale of gas at pump. */
+  static final byte SALE = 1;
+  /** Cancellation as no pump had enough gas. */
+  static final byte CANCEL_NOT_ENOUGH = 2;
+  /** Cancellation as gas was too expensive. */
+  static final byte CANCEL_TOO_EXPENSIVE = 3;
+  /** Pump added with amount of gas. */
+  static final byte PUMP_ADDED = 4;
+  /** Pump removed from station. */
+  static final byte PUMP_REMOVED = 5;
+  /** Client turned away as lines of suitable pumps were full. */
+  static final byte CANCEL_LINE_FULL = 6;
+  /** Client left the line when its deadline passed. */
+  static final byte CANCEL_TIMED_OUT = 7;
+  /** Gas poured into pump by a tanker. */
+  static final byte REFILL = 8;
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  /**
+   * Mapped segment file.
+   */
+  private static final class Segment {
+    final long index;
+    final MappedByteBuffer buffer;
+
+    Segment(long index, MappedByteBuffer buffer) {
+      this.index = index;
+      this.buffer = buffer;
+    }
+  }
+
+  private final Path directory;
+  private final int recordsPerSegment;
+  /** Last claimed sequence number. */
+  private final AtomicLong sequence;
+  /** Segments that may have records not forced to disk yet. */
+  private final Map<Long, Segment> segments = new ConcurrentSkipListMap<>();
+  /** Segment of the latest appends. */
+  private volatile Segment current;
+  private final JournalState recovered;
+  private final ScheduledExecutorService committer;
+  /** Guards forcing segments, appends take only the lock of this journal to map segments. */
+  private final Object commitLock = new Object();
+  private volatile boolean closed;
+  /** Records appended after close. */
+  private final AtomicLong dropped = new AtomicLong();
+
+  private TransactionJournal(Path directory, int recordsPerSegment, long commitIntervalMillis)
+      throws IOException {
+    this.directory = directory;
+    this.recordsPerSegment = recordsPerSegment;
+    Files.createDirectories(directory);
+    recovered = replay();
+    sequence = new AtomicLong(recovered.records());
+    current = segment(recovered.records() / recordsPerSegment);
+    truncate(recovered.records());
+    committer = Executors.newSingleThreadScheduledExecutor(task -> {
+      var thread = new Thread(task, "gas-journal-commit");
+      thread.setDaemon(true);
+      return thread;
+    });
+    committer.scheduleWithFixedDelay(this::groupCommit,
+        commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Opens journal in the directory with segments of 1 MB committed every 10 ms.
+   */
+  public static TransactionJournal open(Path directory) throws IOException {
+    return open(directory, 1 << 20, 10);
+  }
+
+  /**
+   * Opens journal in the directory and replays records already written there.
+   *
+   * @param segmentSize size of segment file in bytes, rounded down to whole records
+   * @param commitIntervalMillis delay between forcing written records to disk
+   */
+  public static TransactionJournal open(Path directory, int segmentSize,
+      long commitIntervalMillis) throws IOException {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory cannot be null");
+    }
+    if (segmentSize < RECORD_SIZE) {
+      throw new IllegalArgumentException("segment must fit at least one record");
+    }
+    if (commitIntervalMillis <= 0) {
+      throw new IllegalArgumentException("commit interval must be positive");
+    }
+    return new TransactionJournal(directory, segmentSize / RECORD_SIZE, commitIntervalMillis);
+  }
+
+  /**
+   * State written to the journal before it was opened.
+   */
+  public JournalState getRecoveredState() {
+    return recovered;
+  }
+
+  /**
+   * Number of records appended since the journal was created.
+   */
+  public long size() {
+    return sequence.get();
+  }
+
+  /**
+   * Number of records dropped as they were appended after close.
+   */
+  public long getDroppedRecords() {
+    return dropped.get();
+  }
+
+  /**
+   * Appends record of a transaction.
+   * Transaction already happened when it is appended, so after close its record is dropped
+   * and counted instead of failing the client, records appended while closing
+   * may not be forced to disk.
+   */
+  void append(byte kind, GasType type, int pumpId, double amountInLiters, double cost) {
+    if (closed) {
+      dropped.incrementAndGet();
+      return;
+    }
+    long seq = sequence.incrementAndGet();
+    long slot = seq - 1;
+    var segment = current;
+    long index = slot / recordsPerSegment;
+    if (segment.index != index) {
+      segment = advance(index); // rare, committer maps segments ahead
+    }
+    var buffer = segment.buffer;
+    int offset = (int) (slot % recordsPerSegment) * RECORD_SIZE;
+    buffer.put(offset + 8, kind);
+    buffer.put(offset + 9, type == null ? -1 : (byte) type.ordinal());
+    buffer.putInt(offset + 12, pumpId);
+    LONGS.set(buffer, offset + 16, Double.doubleToRawLongBits(amountInLiters));
+    LONGS.set(buffer, offset + 24, Double.doubleToRawLongBits(cost));
+    LONGS.setRelease(buffer, offset, seq); // publishes the record
+  }
+
+  /**
+   * Forces all written records to disk.
+   */
+  public void commit() {
+    groupCommit();
+  }
+
+  private void groupCommit() {
+    synchronized (commitLock) {
+      long written = sequence.get();
+      long last = current.index;
+      for (var segment : segments.values()) {
+        segment.buffer.force();
+        long end = (segment.index + 1) * recordsPerSegment;
+        if (segment.index < last && end <= written && isComplete(segment)) {
+          segments.remove(segment.index); // never written again, mapping is released by GC
+        }
+      }
+      if (!closed) {
+        segment(last + 1); // map ahead so appends do not wait for it
+      }
+    }
+  }
+
+  /**
+   * Checks that every record of the segment was written.
+   */
+  private boolean isComplete(Segment segment) {
+    long first = segment.index * recordsPerSegment + 1;
+    for (int i = 0; i < recordsPerSegment; i++) {
+      if ((long) LONGS.getAcquire(segment.buffer, i * RECORD_SIZE) != first + i) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Makes segment current if it is later than current one.
+   */
+  private synchronized Segment advance(long index) {
+    var segment = segment(index);
+    if (current.index < index) {
+      current = segment;
+    }
+    return segment;
+  }
+
+  /**
+   * Maps segment file, creating it if needed.
+   */
+  private synchronized Segment segment(long index) {
+    var segment = segments.get(index);
+    if (segment == null) {
+      try (var channel = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+            (long) recordsPerSegment * RECORD_SIZE);
+        segment = new Segment(index, buffer);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      segments.put(index, segment);
+    }
+    return segment;
+  }
+
+  private Path segmentPath(long index) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+  }
+
+  /**
+   * Reads records from the first segment until the first missing one.
+   */
+  private JournalState replay() throws IOException {
+    var state = new JournalState();
+    long seq = 1;
+    for (long index = 0; Files.exists(segmentPath(index)); index++) {
+      try (var channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+            Math.min(channel.size(), (long) recordsPerSegment * RECORD_SIZE));
+        for (int offset = 0; offset + RECORD_SIZE <= buffer.capacity();
+            offset += RECORD_SIZE, seq++) {
+          if ((long) LONGS.get(buffer, offset) != seq) {
+            return state;
+          }
+          byte type = buffer.get(offset + 9);
+          state.apply(buffer.get(offset + 8), type < 0 ? null : GasType.values()[type],
+              buffer.getInt(offset + 12),
+              Double.longBitsToDouble((long) LONGS.get(buffer, offset + 16)),
+              Double.longBitsToDouble((long) LONGS.get(buffer, offset + 24)));
+        }
+      }
+    }
+    return state;
+  }
+
+  /**
+   * Erases records after the last replayed one, so records left after a gap
+   * are not taken for new ones on the next replay.
+   */
+  private void truncate(long records) throws IOException {
+    var buffer = current.buffer;
+    for (int slot = (int) (records % recordsPerSegment); slot < recordsPerSegment; slot++) {
+      LONGS.set(buffer, slot * RECORD_SIZE, 0L);
+    }
+    buffer.force();
+    for (long index = current.index + 1; Files.deleteIfExists(segmentPath(index)); index++) {
+      // later segments hold only records after the gap
+    }
+  }
+
+  /**
+   * Stops group commit and forces written records to disk.
+   * Records appended after close are dropped, see {@link #getDroppedRecords}.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    committer.shutdown();
+    try {
+      committer.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    groupCommit();
+  }
+}
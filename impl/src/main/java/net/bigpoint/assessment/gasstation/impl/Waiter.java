@@ -0,0 +1,105 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Client waiting for a pump in dispatchers that hand pumps over explicitly.
+ * Pump is granted once, by the thread that won {@link #grant},
+ * or never if client cancelled waiting first.
+ */
+final class Waiter {
+
+  private static final VarHandle GRANTED;
+  /** Value of granted pump of client that stopped waiting. */
+  private static final Object CANCELLED = new Object();
+
+  static {
+    try {
+      GRANTED = MethodHandles.lookup()
+          .findVarHandle(Waiter.class, "granted", Object.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  final Thread thread = Thread.currentThread();
+  final double amountInLiters;
+  /** Pump where fuel and place in line are reserved, moves only after pump was granted. */
+  volatile GasPumpQueue reserved;
+  /** Pump granted to the client or {@link #CANCELLED}. */
+  private volatile Object granted;
+
+  Waiter(GasPumpQueue reserved, double amountInLiters) {
+    this.reserved = reserved;
+    this.amountInLiters = amountInLiters;
+  }
+
+  /**
+   * Checks if client got a pump or cancelled waiting.
+   */
+  boolean isGranted() {
+    return granted != null;
+  }
+
+  /**
+   * Claims the client for the pump and wakes it up.
+   *
+   * @return false if the pump was already granted by someone else
+   */
+  boolean grant(GasPumpQueue queue) {
+    if (!GRANTED.compareAndSet(this, null, queue)) {
+      return false;
+    }
+    LockSupport.unpark(thread);
+    return true;
+  }
+
+  /**
+   * Waits until pump is granted.
+   * Interruption does not stop waiting, interrupt status is kept.
+   */
+  GasPumpQueue await() {
+    boolean interrupted = false;
+    while (granted == null) {
+      LockSupport.park(this);
+      // park returns at once while interrupt status is set
+      interrupted |= Thread.interrupted();
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return (GasPumpQueue) granted;
+  }
+
+  /**
+   * Waits until pump is granted or deadline passes.
+   * Interruption does not stop waiting, interrupt status is kept.
+   *
+   * @param deadline value of {@link System#nanoTime()} to stop waiting at
+   * @return null if waiting was cancelled, fuel and place in line stay reserved at
+   *     {@link #reserved} pump and the caller has to return them
+   */
+  GasPumpQueue await(long deadline) {
+    boolean interrupted = false;
+    try {
+      while (granted == null) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          if (GRANTED.compareAndSet(this, null, CANCELLED)) {
+            return null;
+          }
+          break; // pump was granted just now
+        }
+        LockSupport.parkNanos(this, remaining);
+        interrupted |= Thread.interrupted();
+      }
+      return (GasPumpQueue) granted;
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
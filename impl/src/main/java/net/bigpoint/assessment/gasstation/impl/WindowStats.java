@@ -0,0 +1,70 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+/**
+ * Sales and cancellations of a gas type or a pump in the last time window,
+ * see {@link FastGasStation#getWindowStats}.
+ * Clients that timed out or found the line full are counted for the pump they waited for,
+ * other cancellations are counted per gas type only.
+ */
+public final class WindowStats {
+
+  private final StatsWindow window;
+  private final long sales;
+  private final double revenue;
+  private final long cancellations;
+  private final double averageLineLength;
+
+  WindowStats(StatsWindow window, long[] totals) {
+    this.window = window;
+    sales = totals[RollingStats.SALES];
+    revenue = totals[RollingStats.REVENUE] / StationStats.REVENUE_SCALE;
+    cancellations = totals[RollingStats.CANCELLATIONS];
+    long samples = totals[RollingStats.LINE_SAMPLES];
+    averageLineLength = samples == 0 ? 0.0 : (double) totals[RollingStats.LINE_SUM] / samples;
+  }
+
+  public StatsWindow getWindow() {
+    return window;
+  }
+
+  public long getSales() {
+    return sales;
+  }
+
+  public double getRevenue() {
+    return revenue;
+  }
+
+  public long getCancellations() {
+    return cancellations;
+  }
+
+  public double getSalesPerSecond() {
+    return (double) sales / window.getSeconds();
+  }
+
+  public double getRevenuePerMinute() {
+    return revenue * 60 / window.getSeconds();
+  }
+
+  /**
+   * Share of cancelled purchases among all purchases, 0 if there were none.
+   */
+  public double getCancellationRatio() {
+    long purchases = sales + cancellations;
+    return purchases == 0 ? 0.0 : (double) cancellations / purchases;
+  }
+
+  /**
+   * Average number of clients left in line by clients that finished pumping.
+   */
+  public double getAverageLineLength() {
+    return averageLineLength;
+  }
+
+  @Override
+  public String toString() {
+    return window + ": " + sales + " sales, " + revenue + " revenue, " + cancellations
+        + " cancellations, " + averageLineLength + " average line";
+  }
+}
@@ -0,0 +1,31 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Clients wait in line of the selected pump and worker owning the pump pumps for them,
+ * see {@link DispatchMode#WORKERS}.
+ * Clients never move to another pump.
+ */
+final class WorkerDispatcher implements Dispatcher {
+
+  @Override
+  public GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service) {
+    reserved.worker(service).pump(amountInLiters, start);
+    return reserved;
+  }
+
+  @Override
+  public GasPumpQueue serve(GasPumpQueue reserved, double amountInLiters, long start,
+      long deadline, PumpWorker.Service service) {
+    return reserved.worker(service).pump(amountInLiters, start, deadline) ? reserved : null;
+  }
+
+  @Override
+  public void submit(GasPumpQueue reserved, double amountInLiters, long start,
+      PumpWorker.Service service, BiConsumer<GasPumpQueue, Throwable> completion) {
+    reserved.worker(service).submit(amountInLiters, start,
+        failure -> completion.accept(failure == null ? reserved : null, failure));
+  }
+}
@@ -0,0 +1,100 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Synthetic workload, the same seed always gives the same requests.
+ * Clients arrive as Poisson process with given rate.
+ * Amounts follow exponential distribution with given mean, few clients buy a lot.
+ * Gas type is chosen with given weights.
+ * Maximum price is uniform between given bounds, so the price at the station
+ * decides which part of clients cancels as too expensive.
+ */
+public final class WorkloadGenerator implements WorkloadSource {
+
+  /** Smallest generated amount, exponential distribution may give 0. */
+  static final double MIN_AMOUNT = 0.01;
+
+  private static final long NANOS_PER_SECOND = 1_000_000_000L;
+  private static final GasType[] TYPES = GasType.values();
+
+  private final SplittableRandom random;
+  private final double meanGap;
+  private final long durationNanos;
+  private final double meanAmountInLiters;
+  /** Cumulative share of clients of every gas type. */
+  private final double[] typeShares = new double[TYPES.length];
+  private final double minPricePerLiter;
+  private final double maxPricePerLiter;
+  private long offset;
+
+  /**
+   * Initializes generator of requests arriving during given duration.
+   *
+   * @param typeMix weights of gas types, types without weight are not requested
+   */
+  public WorkloadGenerator(long seed, double clientsPerSecond, long durationNanos,
+      double meanAmountInLiters, Map<GasType, Double> typeMix, double minPricePerLiter,
+      double maxPricePerLiter) {
+    if (clientsPerSecond <= 0.0 || durationNanos < 0 || meanAmountInLiters <= 0.0) {
+      throw new IllegalArgumentException("rate, duration and amount must be positive");
+    }
+    if (typeMix == null) {
+      throw new IllegalArgumentException("type mix cannot be null");
+    }
+    if (minPricePerLiter <= 0.0 || maxPricePerLiter < minPricePerLiter) {
+      throw new IllegalArgumentException("prices must be positive and ordered");
+    }
+    double total = 0.0;
+    int last = 0;
+    for (int i = 0; i < TYPES.length; i++) {
+      double weight = typeMix.getOrDefault(TYPES[i], 0.0);
+      if (!(weight >= 0.0)) {
+        throw new IllegalArgumentException("weight of " + TYPES[i] + " cannot be negative");
+      }
+      total += weight;
+      typeShares[i] = total;
+      last = weight > 0.0 ? i : last;
+    }
+    if (total <= 0.0) {
+      throw new IllegalArgumentException("type mix must have positive weight");
+    }
+    for (int i = 0; i < TYPES.length; i++) {
+      typeShares[i] /= total;
+    }
+    typeShares[last] = 1.0; // rounding never selects types without weight
+    this.random = new SplittableRandom(seed);
+    this.meanGap = NANOS_PER_SECOND / clientsPerSecond;
+    this.durationNanos = durationNanos;
+    this.meanAmountInLiters = meanAmountInLiters;
+    this.minPricePerLiter = minPricePerLiter;
+    this.maxPricePerLiter = maxPricePerLiter;
+  }
+
+  @Override
+  public WorkloadRequest next() {
+    offset += (long) (exponential() * meanGap);
+    if (offset >= durationNanos) {
+      offset = durationNanos;
+      return null;
+    }
+    double amount = Math.max(exponential() * meanAmountInLiters, MIN_AMOUNT);
+    double price = minPricePerLiter
+        + random.nextDouble() * (maxPricePerLiter - minPricePerLiter);
+    return new WorkloadRequest(offset, type(random.nextDouble()), amount, price);
+  }
+
+  private double exponential() {
+    return -Math.log(1.0 - random.nextDouble());
+  }
+
+  private GasType type(double share) {
+    int i = 0;
+    while (share >= typeShares[i]) {
+      i++;
+    }
+    return TYPES[i];
+  }
+}
@@ -0,0 +1,106 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.util.Locale;
+
+/**
+ * Results of a workload run against a station.
+ * Latency of every request is measured from its scheduled arrival, not from the moment
+ * it was sent, so delays of the load generator itself are not hidden.
+ */
+public final class WorkloadReport {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final long requests;
+  private final long durationNanos;
+  private final long sales;
+  private final long cancellationsNoGas;
+  private final long cancellationsTooExpensive;
+  private final long failures;
+  private final long maxSendDelayNanos;
+  private final HistogramSnapshot latency;
+
+  WorkloadReport(long requests, long durationNanos, long sales, long cancellationsNoGas,
+      long cancellationsTooExpensive, long failures, long maxSendDelayNanos,
+      HistogramSnapshot latency) {
+    this.requests = requests;
+    this.durationNanos = durationNanos;
+    this.sales = sales;
+    this.cancellationsNoGas = cancellationsNoGas;
+    this.cancellationsTooExpensive = cancellationsTooExpensive;
+    this.failures = failures;
+    this.maxSendDelayNanos = maxSendDelayNanos;
+    this.latency = latency;
+  }
+
+  public long getRequests() {
+    return requests;
+  }
+
+  /**
+   * Time from the start of the run until the last request completed.
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Completed requests per second.
+   */
+  public double getThroughput() {
+    return durationNanos == 0 ? 0.0 : requests * NANOS_PER_SECOND / durationNanos;
+  }
+
+  /**
+   * Sales counted by the station during the run.
+   */
+  public long getSales() {
+    return sales;
+  }
+
+  /**
+   * Cancellations as not enough gas counted by the station during the run.
+   */
+  public long getCancellationsNoGas() {
+    return cancellationsNoGas;
+  }
+
+  /**
+   * Cancellations as too expensive counted by the station during the run.
+   */
+  public long getCancellationsTooExpensive() {
+    return cancellationsTooExpensive;
+  }
+
+  /**
+   * Requests that failed with unexpected exceptions.
+   */
+  public long getFailures() {
+    return failures;
+  }
+
+  /**
+   * Longest delay of sending a request after its scheduled arrival.
+   * Large delays mean the load generator could not keep up with the workload.
+   */
+  public long getMaxSendDelayNanos() {
+    return maxSendDelayNanos;
+  }
+
+  /**
+   * Latency of all requests from scheduled arrival to response.
+   */
+  public HistogramSnapshot getLatency() {
+    return latency;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(Locale.ROOT,
+        "WorkloadReport[requests=%d, throughput=%.1f/s, p50=%dns, p99=%dns, p99.9=%dns,"
+            + " max=%dns, sales=%d, cancelNoGas=%d, cancelTooExpensive=%d, failures=%d]",
+        requests, getThroughput(), latency.getValueAtPercentile(50.0),
+        latency.getValueAtPercentile(99.0), latency.getValueAtPercentile(99.9),
+        latency.getMax(), sales, cancellationsNoGas, cancellationsTooExpensive, failures);
+  }
+}
@@ -0,0 +1,54 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * One client of a workload: when it arrives and what it wants to buy.
+ */
+public final class WorkloadRequest {
+
+  private final long offsetNanos;
+  private final GasType type;
+  private final double amountInLiters;
+  private final double maxPricePerLiter;
+
+  /**
+   * Initializes request of a client arriving given time after the start of the workload.
+   */
+  public WorkloadRequest(long offsetNanos, GasType type, double amountInLiters,
+      double maxPricePerLiter) {
+    if (offsetNanos < 0) {
+      throw new IllegalArgumentException("offset cannot be negative");
+    }
+    FastGasStation.checkArguments(type, amountInLiters, maxPricePerLiter);
+    this.offsetNanos = offsetNanos;
+    this.type = type;
+    this.amountInLiters = amountInLiters;
+    this.maxPricePerLiter = maxPricePerLiter;
+  }
+
+  /**
+   * Arrival time of the client relative to the start of the workload.
+   */
+  public long getOffsetNanos() {
+    return offsetNanos;
+  }
+
+  public GasType getType() {
+    return type;
+  }
+
+  public double getAmountInLiters() {
+    return amountInLiters;
+  }
+
+  public double getMaxPricePerLiter() {
+    return maxPricePerLiter;
+  }
+
+  @Override
+  public String toString() {
+    return "WorkloadRequest[offsetNanos=" + offsetNanos + ", type=" + type
+        + ", amountInLiters=" + amountInLiters + ", maxPricePerLiter=" + maxPricePerLiter + "]";
+  }
+}
@@ -0,0 +1,107 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import net.bigpoint.assessment.gasstation.GasStation;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ * Drives a station with a workload in open loop:
+ * every request is sent at its scheduled time whether earlier requests completed or not,
+ * like real clients that do not wait for each other.
+ * Requests run on the customer executor, which should start a thread per request,
+ * see {@link CustomerThreads}. Latency is measured from the scheduled time,
+ * so a slow station or a saturated executor shows up in the latency
+ * instead of silently lowering the offered load.
+ */
+public final class WorkloadRunner {
+
+  private final GasStation station;
+  private final Executor customers;
+
+  /**
+   * Initializes runner sending requests to the station from customer threads.
+   */
+  public WorkloadRunner(GasStation station, Executor customers) {
+    if (station == null) {
+      throw new IllegalArgumentException("station cannot be null");
+    }
+    if (customers == null) {
+      throw new IllegalArgumentException("customers cannot be null");
+    }
+    this.station = station;
+    this.customers = customers;
+  }
+
+  /**
+   * Sends all requests of the source and waits until they complete.
+   * Cancellations are taken from the station counters,
+   * so the station should not serve other clients meanwhile.
+   *
+   * @throws IOException if the source cannot be read, sent requests still complete
+   */
+  public WorkloadReport run(WorkloadSource source) throws IOException {
+    if (source == null) {
+      throw new IllegalArgumentException("source cannot be null");
+    }
+    long sales = station.getNumberOfSales();
+    long cancelNotEnough = station.getNumberOfCancellationsNoGas();
+    long cancelTooExpensive = station.getNumberOfCancellationsTooExpensive();
+    var latency = new LatencyHistogram();
+    var failures = new AtomicLong();
+    var done = new CompletableFuture<Void>();
+    // one for every request in progress and one for the sender
+    var pending = new AtomicLong(1);
+    long requests = 0;
+    long maxSendDelay = 0;
+    long start = System.nanoTime();
+    try {
+      for (var request = source.next(); request != null; request = source.next()) {
+        long scheduled = start + request.getOffsetNanos();
+        long delay = System.nanoTime() - scheduled;
+        while (delay < 0) {
+          LockSupport.parkNanos(-delay);
+          delay = System.nanoTime() - scheduled;
+        }
+        maxSendDelay = Math.max(maxSendDelay, delay);
+        pending.incrementAndGet();
+        requests++;
+        var sent = request;
+        Runnable customer = () -> {
+          try {
+            station.buyGas(sent.getType(), sent.getAmountInLiters(), sent.getMaxPricePerLiter());
+          } catch (NotEnoughGasException | GasTooExpensiveException e) {
+            // counted by the station
+          } catch (RuntimeException e) {
+            failures.incrementAndGet();
+          } finally {
+            latency.record(System.nanoTime() - scheduled);
+            if (pending.decrementAndGet() == 0) {
+              done.complete(null);
+            }
+          }
+        };
+        try {
+          customers.execute(customer);
+        } catch (RuntimeException e) {
+          pending.decrementAndGet(); // never sent, the sender still holds its own count
+          throw e;
+        }
+      }
+    } finally {
+      if (pending.decrementAndGet() == 0) {
+        done.complete(null);
+      }
+      done.join();
+    }
+    return new WorkloadReport(requests, System.nanoTime() - start,
+        station.getNumberOfSales() - sales,
+        station.getNumberOfCancellationsNoGas() - cancelNotEnough,
+        station.getNumberOfCancellationsTooExpensive() - cancelTooExpensive,
+        failures.get(), maxSendDelay, latency.snapshot());
+  }
+}
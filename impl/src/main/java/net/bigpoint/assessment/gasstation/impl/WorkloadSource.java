@@ -0,0 +1,19 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.IOException;
+
+/**
+ * Stream of workload requests in order of arrival.
+ * Requests are pulled one by one, so workloads of any size need no memory for the whole stream.
+ */
+@FunctionalInterface
+public interface WorkloadSource {
+
+  /**
+   * Next request, its offset is not lower than offset of the previous one.
+   *
+   * @return null at the end of the workload
+   * @throws IOException if request cannot be read
+   */
+  WorkloadRequest next() throws IOException;
+}
@@ -0,0 +1,243 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ * Workload traces stored in files and streamed request by request.
+ * Files with {@code .csv} extension are text with a header line and lines
+ * {@code offset_nanos,gas_type,amount_liters,max_price_per_liter}.
+ * Other files are binary, big endian: int magic, int version,
+ * then long offset, byte gas type ordinal, double amount and double maximum price
+ * of every request.
+ */
+public final class WorkloadTrace {
+
+  static final String CSV_HEADER = "offset_nanos,gas_type,amount_liters,max_price_per_liter";
+
+  private static final int MAGIC = 0x47535754; // GSWT
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final GasType[] TYPES = GasType.values();
+
+  private WorkloadTrace() {
+  }
+
+  private static boolean isCsv(Path file) {
+    return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+  }
+
+  /**
+   * Opens trace for reading, format is selected by the file extension.
+   */
+  public static Reader open(Path file) throws IOException {
+    if (isCsv(file)) {
+      return new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+    }
+    return new BinaryReader(new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE)));
+  }
+
+  /**
+   * Creates or replaces trace file, format is selected by the file extension.
+   */
+  public static Writer create(Path file) throws IOException {
+    if (isCsv(file)) {
+      return new CsvWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8));
+    }
+    return new BinaryWriter(new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE)));
+  }
+
+  /**
+   * Writes all requests of the source to the file, e.g. to replay generated workload later.
+   *
+   * @return number of written requests
+   */
+  public static long record(WorkloadSource source, Path file) throws IOException {
+    long count = 0;
+    try (var writer = create(file)) {
+      for (var request = source.next(); request != null; request = source.next()) {
+        writer.write(request);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Trace opened for reading.
+   */
+  public abstract static class Reader implements WorkloadSource, Closeable {
+
+    private long lastOffset;
+
+    Reader() {
+    }
+
+    /**
+     * Checks that requests are ordered by arrival.
+     */
+    WorkloadRequest ordered(WorkloadRequest request) throws IOException {
+      if (request.getOffsetNanos() < lastOffset) {
+        throw new IOException("trace is not ordered by offset at " + request);
+      }
+      lastOffset = request.getOffsetNanos();
+      return request;
+    }
+  }
+
+  /**
+   * Trace opened for writing.
+   */
+  public abstract static class Writer implements Closeable {
+
+    Writer() {
+    }
+
+    /**
+     * Appends request to the trace.
+     */
+    public abstract void write(WorkloadRequest request) throws IOException;
+  }
+
+  private static final class BinaryReader extends Reader {
+    private final DataInputStream input;
+
+    BinaryReader(DataInputStream input) throws IOException {
+      this.input = input;
+      try {
+        if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+          throw new IOException("not a workload trace");
+        }
+      } catch (IOException e) {
+        input.close();
+        throw e;
+      }
+    }
+
+    @Override
+    public WorkloadRequest next() throws IOException {
+      long offset;
+      try {
+        offset = input.readLong();
+      } catch (EOFException e) {
+        return null;
+      }
+      try {
+        int type = input.readByte();
+        double amount = input.readDouble();
+        double price = input.readDouble();
+        return ordered(new WorkloadRequest(offset, TYPES[type], amount, price));
+      } catch (EOFException e) {
+        throw new IOException("trace is truncated", e);
+      } catch (RuntimeException e) {
+        throw new IOException("trace is corrupted", e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static final class BinaryWriter extends Writer {
+    private final DataOutputStream output;
+
+    BinaryWriter(DataOutputStream output) throws IOException {
+      this.output = output;
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+    }
+
+    @Override
+    public void write(WorkloadRequest request) throws IOException {
+      output.writeLong(request.getOffsetNanos());
+      output.writeByte(request.getType().ordinal());
+      output.writeDouble(request.getAmountInLiters());
+      output.writeDouble(request.getMaxPricePerLiter());
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+
+  private static final class CsvReader extends Reader {
+    private final BufferedReader input;
+    private long line;
+
+    CsvReader(BufferedReader input) {
+      this.input = input;
+    }
+
+    @Override
+    public WorkloadRequest next() throws IOException {
+      String text;
+      do {
+        text = input.readLine();
+        line++;
+        if (text == null) {
+          return null;
+        }
+      } while (text.trim().isEmpty() || text.startsWith("#") || text.equals(CSV_HEADER));
+      var fields = text.split(",", -1);
+      try {
+        if (fields.length != 4) {
+          throw new IllegalArgumentException("expected 4 fields");
+        }
+        return ordered(new WorkloadRequest(Long.parseLong(fields[0].trim()),
+            GasType.valueOf(fields[1].trim()), Double.parseDouble(fields[2].trim()),
+            Double.parseDouble(fields[3].trim())));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("invalid request at line " + line + ": " + text, e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      input.close();
+    }
+  }
+
+  private static final class CsvWriter extends Writer {
+    private final BufferedWriter output;
+
+    CsvWriter(BufferedWriter output) throws IOException {
+      this.output = output;
+      output.write(CSV_HEADER);
+      output.newLine();
+    }
+
+    @Override
+    public void write(WorkloadRequest request) throws IOException {
+      output.write(Long.toString(request.getOffsetNanos()));
+      output.write(',');
+      output.write(request.getType().name());
+      output.write(',');
+      output.write(Double.toString(request.getAmountInLiters()));
+      output.write(',');
+      output.write(Double.toString(request.getMaxPricePerLiter()));
+      output.newLine();
+    }
+
+    @Override
+    public void close() throws IOException {
+      output.close();
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.SplittableRandom;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestCapacityModel {
+
+  private static final long MILLIS = 1_000_000L;
+
+  @Test
+  @DisplayName("model needs store, pumping time and valid settings")
+  public void testConstructor() {
+    assertThrows(IllegalArgumentException.class, () -> new CapacityModel(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new CapacityModel(new PumpStateStore(), 0));
+    var model = new CapacityModel(new PumpStateStore());
+    assertThrows(IllegalArgumentException.class, () -> model.setPrice(null, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> model.setPrice(GasType.DIESEL, 0.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.setMaxLineLength(GasType.DIESEL, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> model.schedule(0, GasType.DIESEL, 0.0, 1.0));
+    model.schedule(0, GasType.DIESEL, 1.0, 1.0);
+    model.run(); // no pumps of the type, price is not needed
+    assertEquals(1, model.getNumberOfCancellationsNoGas());
+  }
+
+  @Test
+  @DisplayName("checks pumps of the type before the price like the station")
+  public void testNoPumps() throws Exception {
+    var station = new FastGasStation();
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    var store = new PumpStateStore();
+    store.addPump(GasType.REGULAR, 10.0);
+    var model = new CapacityModel(store);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 1.0));
+    model.schedule(0, GasType.DIESEL, 1.0, 1.0);
+    model.run();
+    assertEquals(station.getNumberOfCancellationsNoGas(), model.getNumberOfCancellationsNoGas());
+
+    model.setPrice(GasType.DIESEL, 5.0);
+    model.schedule(model.now(), GasType.DIESEL, 1.0, 1.0);
+    model.run();
+    assertEquals(2, model.getNumberOfCancellationsNoGas());
+    assertEquals(0, model.getNumberOfCancellationsTooExpensive());
+
+    model.schedule(model.now(), GasType.REGULAR, 1.0, 1.0);
+    assertThrows(IllegalStateException.class, model::run);
+  }
+
+  @Test
+  @DisplayName("clients of two pumps pump at the same time, third one waits")
+  public void testLines() {
+    var store = new PumpStateStore();
+    store.addPump(GasType.REGULAR, 10.0);
+    store.addPump(GasType.REGULAR, 10.0);
+    var model = new CapacityModel(store);
+    model.setPrice(GasType.REGULAR, 0.8);
+    model.schedule(0, GasType.REGULAR, 1.0, 1.0);
+    model.schedule(0, GasType.REGULAR, 1.0, 1.0);
+    model.schedule(50 * MILLIS, GasType.REGULAR, 2.0, 1.0);
+    model.schedule(60 * MILLIS, GasType.REGULAR, 1.0, 0.5);
+
+    assertEquals(100 * MILLIS, model.run(100 * MILLIS));
+    assertEquals(0, model.getNumberOfSales());
+    assertEquals(1, model.getNumberOfCancellationsTooExpensive());
+    assertEquals(2, store.getLineLength(GasType.REGULAR, 0));
+    assertEquals(100 * MILLIS + 1, model.run(100 * MILLIS + 1));
+    assertEquals(2, model.getNumberOfSales());
+    assertEquals(1.6, model.getRevenue(), 0.001);
+
+    assertEquals(300 * MILLIS, model.run());
+    assertEquals(3, model.getNumberOfSales());
+    assertEquals(4, model.getClients());
+    assertEquals(0, model.getPendingEvents());
+    assertEquals(16.0, store.getRemainingAmount(GasType.REGULAR, 0)
+        + store.getRemainingAmount(GasType.REGULAR, 1), 1e-9);
+    var wait = model.getQueueWait();
+    assertEquals(3, wait.getCount());
+    assertEquals(50 * MILLIS, wait.getMax());
+  }
+
+  @Test
+  @DisplayName("turns clients away without fuel or room in line, pumps may be added later")
+  public void testCancellations() {
+    var store = new PumpStateStore();
+    store.addPump(GasType.DIESEL, 3.0);
+    var model = new CapacityModel(store, MILLIS);
+    model.setPrice(GasType.DIESEL, 1.0);
+    model.setMaxLineLength(GasType.DIESEL, 1);
+    model.schedule(0, GasType.DIESEL, 1.0, 1.0);
+    model.schedule(0, GasType.DIESEL, 1.0, 1.0);
+    model.schedule(0, GasType.DIESEL, 5.0, 1.0);
+    model.run();
+    assertEquals(1, model.getNumberOfSales());
+    assertEquals(1, model.getNumberOfCancellationsLineFull());
+    assertEquals(1, model.getNumberOfCancellationsNoGas());
+
+    assertEquals(1, store.addPump(GasType.DIESEL, 10.0));
+    model.schedule(model.now(), GasType.DIESEL, 5.0, 1.0);
+    model.run();
+    assertEquals(2, model.getNumberOfSales());
+    assertEquals(5.0, store.getRemainingAmount(GasType.DIESEL, 1), 0.0);
+  }
+
+  @Test
+  @DisplayName("gives the same sales and cancellations as simulation of the station")
+  public void testSameAsStation() {
+    var station = new FastGasStation();
+    var store = new PumpStateStore();
+    for (int i = 0; i < 5; i++) {
+      for (var type : GasType.values()) {
+        station.addGasPump(new GasPump(type, 300.0));
+        store.addPump(type, 300.0);
+      }
+    }
+    var simulation = new StationSimulation(station);
+    var model = new CapacityModel(store);
+    for (var type : GasType.values()) {
+      station.setPrice(type, 1.5);
+      station.setMaxLineLength(type, 3);
+      model.setPrice(type, 1.5);
+      model.setMaxLineLength(type, 3);
+    }
+    long duration = 60 * 1000 * MILLIS;
+    assertEquals(
+        simulation.scheduleRandomTraffic(new SplittableRandom(7), 10.0, duration, 30.0, 2.0),
+        model.scheduleRandomTraffic(new SplittableRandom(7), 10.0, duration, 30.0, 2.0));
+    assertEquals(simulation.run(), model.run());
+
+    assertEquals(station.getNumberOfSales(), model.getNumberOfSales());
+    assertTrue(model.getNumberOfCancellationsNoGas() > 0);
+    assertTrue(model.getNumberOfCancellationsLineFull() > 0);
+    assertEquals(station.getNumberOfCancellationsNoGas(), model.getNumberOfCancellationsNoGas());
+    assertEquals(station.getNumberOfCancellationsLineFull(),
+        model.getNumberOfCancellationsLineFull());
+    assertEquals(station.getRevenue(), model.getRevenue(), 0.01);
+    assertEquals(simulation.getQueueWait().getCount(), model.getQueueWait().getCount());
+  }
+}
@@ -0,0 +1,49 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestCustomerThreads {
+
+  @Test
+  @DisplayName("platform threads are always supported")
+  public void testPlatform() throws Exception {
+    assertTrue(CustomerThreads.PLATFORM.isSupported());
+    var executor = CustomerThreads.PLATFORM.newExecutor();
+    assertEquals(1, (int) executor.submit(() -> 1).get());
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("virtual threads are created only if supported")
+  public void testVirtual() throws Exception {
+    if (CustomerThreads.VIRTUAL.isSupported()) {
+      var executor = CustomerThreads.VIRTUAL.newExecutor();
+      assertEquals(1, (int) executor.submit(() -> 1).get());
+      executor.shutdown();
+    } else {
+      assertThrows(UnsupportedOperationException.class,
+          () -> CustomerThreads.VIRTUAL.newExecutor());
+    }
+  }
+
+  @Test
+  @DisplayName("mode is selected by system property")
+  public void testFromSystemProperty() {
+    var previous = System.getProperty(CustomerThreads.PROPERTY);
+    try {
+      System.setProperty(CustomerThreads.PROPERTY, "virtual");
+      assertEquals(CustomerThreads.VIRTUAL, CustomerThreads.fromSystemProperty());
+      System.clearProperty(CustomerThreads.PROPERTY);
+      assertEquals(CustomerThreads.PLATFORM, CustomerThreads.fromSystemProperty());
+    } finally {
+      if (previous != null) {
+        System.setProperty(CustomerThreads.PROPERTY, previous);
+      }
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestFairDispatcher {
+
+  PumpIndex index;
+  GasPumpQueue first;
+  GasPumpQueue second;
+  FairDispatcher dispatcher;
+
+  @BeforeEach
+  public void create() {
+    Map<GasType, PumpIndex> indexes = new EnumMap<>(GasType.class);
+    index = new PumpIndex();
+    indexes.put(GasType.REGULAR, index);
+    first = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+    second = new GasPumpQueue(new GasPump(GasType.REGULAR, 4.0), 1, Runnable::run);
+    index.add(first);
+    index.add(second);
+    dispatcher = new FairDispatcher(indexes);
+  }
+
+  private void occupy(GasPumpQueue queue) {
+    assertTrue(queue.tryReserve(1.0));
+    assertSame(queue, dispatcher.acquire(queue, 1.0));
+  }
+
+  private void free(GasPumpQueue queue) {
+    queue.leave();
+    dispatcher.release(queue);
+  }
+
+  /** Reserves fuel at the queue and starts client waiting for a pump. */
+  private CompletableFuture<GasPumpQueue> client(GasPumpQueue queue, double amount) {
+    assertTrue(queue.tryReserve(amount));
+    index.update(queue);
+    int waiting = queue.sharedWaiters.get();
+    var client = CompletableFuture.supplyAsync(() -> dispatcher.acquire(queue, amount));
+    while (queue.sharedWaiters.get() == waiting) {
+      Thread.yield();
+    }
+    return client;
+  }
+
+  @Test
+  @DisplayName("idle pump is acquired without waiting")
+  public void testIdle() {
+    occupy(first);
+    assertTrue(first.busy.get());
+    free(first);
+    assertFalse(first.busy.get());
+  }
+
+  @Test
+  @Timeout(value = 5, unit = TimeUnit.SECONDS)
+  @DisplayName("released pump serves the earliest client of any line")
+  public void testEarliestFirst() throws Exception {
+    occupy(first);
+    occupy(second);
+    var early = client(first, 1.0);
+    var late = client(second, 1.0);
+
+    free(second);
+    assertSame(second, early.get());
+    assertFalse(late.isDone());
+    assertEquals(1, first.length());
+    assertEquals(9.0, first.availableAmount(), 0.001);
+    assertEquals(0, first.sharedWaiters.get());
+
+    free(first);
+    assertSame(first, late.get());
+    assertEquals(0, second.sharedWaiters.get());
+  }
+
+  @Test
+  @Timeout(value = 5, unit = TimeUnit.SECONDS)
+  @DisplayName("released pump skips client it has not enough fuel for")
+  public void testSkipLargeClient() throws Exception {
+    occupy(first);
+    occupy(second);
+    var large = client(first, 5.0);
+    var small = client(first, 1.0);
+
+    free(second);
+    assertSame(second, small.get());
+    assertFalse(large.isDone());
+    assertEquals(2.0, second.availableAmount(), 0.001);
+    assertEquals(4.0, first.availableAmount(), 0.001);
+
+    free(first);
+    assertSame(first, large.get());
+    free(first);
+    free(second);
+    assertFalse(first.busy.get());
+    assertFalse(second.busy.get());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("every client gets a pump under contention")
+  public void testConcurrent() throws Exception {
+    var big = new GasPumpQueue(new GasPump(GasType.REGULAR, 1e6), 2, Runnable::run);
+    var other = new GasPumpQueue(new GasPump(GasType.REGULAR, 1e6), 3, Runnable::run);
+    index.add(big);
+    index.add(other);
+    var clients = new CompletableFuture<?>[200];
+    for (int i = 0; i < clients.length; i++) {
+      var queue = i % 4 == 0 ? other : big;
+      clients[i] = CompletableFuture.runAsync(() -> {
+        assertTrue(queue.tryReserve(1.0));
+        index.update(queue);
+        var serving = dispatcher.acquire(queue, 1.0);
+        Thread.yield();
+        serving.leave();
+        index.update(serving);
+        dispatcher.release(serving);
+      });
+    }
+    CompletableFuture.allOf(clients).get();
+    assertEquals(0, big.length());
+    assertEquals(0, other.length());
+    assertEquals(2e6 - 200, big.availableAmount() + other.availableAmount(), 0.001);
+    assertFalse(big.busy.get());
+    assertFalse(other.busy.get());
+  }
+}
@@ -2,13 +2,26 @@ package net.bigpoint.assessment.gasstation.impl;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.management.Attribute;
+import javax.management.JMX;
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasStation;
 import net.bigpoint.assessment.gasstation.GasType;
 import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
 import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
@@ -20,6 +33,13 @@ public class TestFastGasStation {
 
   GasStation station;
 
+  @AfterEach
+  public void close() {
+    if (station instanceof FastGasStation) {
+      ((FastGasStation) station).close();
+    }
+  }
+
   private void assertStats(double revenue, int sales, int cancelNotEnough, int cancelExpensive) {
     assertEquals(revenue, station.getRevenue(), 0.001,
         () -> "revenue mismatch: expected: " + revenue
@@ -41,6 +61,686 @@ public class TestFastGasStation {
     new FastGasStation();
   }
 
+  @Test
+  @DisplayName("Constructor with pump driver")
+  public void testDriverConstructor() throws Exception {
+    assertThrows(IllegalArgumentException.class, () -> new FastGasStation(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FastGasStation(PumpDriver.GAS_PUMP, null));
+
+    var pumped = new double[1];
+    station = new FastGasStation((pump, amount) -> pumped[0] += amount);
+    station.addGasPump(new GasPump(GasType.DIESEL, 10.0));
+    station.setPrice(GasType.DIESEL, 2.0);
+    assertEquals(6.0, station.buyGas(GasType.DIESEL, 3.0, 2.0), 0.001);
+    assertEquals(3.0, pumped[0], 0.001);
+    assertStats(6.0, 1, 0, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Serves many concurrent customers in selected thread mode")
+  public void testManyCustomers() throws Exception {
+    station = new FastGasStation((pump, amount) -> Thread.yield());
+    for (int i = 0; i < 4; i++) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 10_000.0));
+    }
+    station.setPrice(GasType.REGULAR, 1.0);
+    var executor = CustomerThreads.fromSystemProperty().newExecutor();
+    for (int i = 0; i < 2000; i++) {
+      executor.submit(() -> station.buyGas(GasType.REGULAR, 1.0, 1.0));
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertStats(2000.0, 2000, 0, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Serves many concurrent customers when pumps steal clients")
+  public void testManyCustomersStealing() throws Exception {
+    assertThrows(IllegalArgumentException.class,
+        () -> new FastGasStation(PumpDriver.GAS_PUMP, Runnable::run, null));
+    serveManyCustomers(DispatchMode.STEALING);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Serves many concurrent customers in one fair line per gas type")
+  public void testManyCustomersFair() throws Exception {
+    serveManyCustomers(DispatchMode.FAIR);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Serves many concurrent customers when workers own the pumps")
+  public void testManyCustomersWorkers() throws Exception {
+    serveManyCustomers(DispatchMode.WORKERS);
+  }
+
+  private void serveManyCustomers(DispatchMode mode) throws Exception {
+    var pumped = new double[4];
+    station = new FastGasStation((pump, amount) -> {
+      Thread.yield();
+      synchronized (pumped) {
+        pumped[(int) pump.getRemainingAmount() - 10_000]++;
+      }
+    }, Runnable::run, mode);
+    for (int i = 0; i < 4; i++) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 10_000.0 + i));
+    }
+    station.setPrice(GasType.REGULAR, 1.0);
+    var executor = CustomerThreads.fromSystemProperty().newExecutor();
+    for (int i = 0; i < 2000; i++) {
+      executor.submit(() -> station.buyGas(GasType.REGULAR, 1.0, 1.0));
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertStats(2000.0, 2000, 0, 0);
+    assertEquals(2000.0, pumped[0] + pumped[1] + pumped[2] + pumped[3], 0.001);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Removed pump serves clients in its line first")
+  public void testRemoveWhileServing() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    var fastStation = new FastGasStation((pump, amount) -> {
+      pumping.countDown();
+      proceed.join();
+    });
+    station = fastStation;
+    var pump = new GasPump(GasType.DIESEL, 10.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.DIESEL, 2.0);
+    var first = fastStation.buyGasAsync(GasType.DIESEL, 1.0, 2.0);
+    var second = fastStation.buyGasAsync(GasType.DIESEL, 1.0, 2.0);
+    pumping.await();
+
+    var removed = fastStation.removeGasPump(pump);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 2.0));
+    assertFalse(removed.isDone());
+    assertTrue(station.getGasPumps().contains(pump));
+
+    proceed.complete(null);
+    assertEquals(2.0, first.get(), 0.001);
+    assertEquals(2.0, second.get(), 0.001);
+    assertTrue(removed.get());
+    assertTrue(station.getGasPumps().isEmpty());
+    assertStats(4.0, 2, 1, 0);
+  }
+
+  @Test
+  @DisplayName("Counts sales and cancellations of the last minutes per type and pump")
+  public void testWindowStats() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.DIESEL, 100.0);
+    station.addGasPump(pump);
+    station.addGasPump(new GasPump(GasType.DIESEL, 100.0));
+    station.setPrice(GasType.DIESEL, 2.0);
+    station.buyGas(GasType.DIESEL, 1.0, 2.0);
+    assertEquals(0, fastStation.getWindowStats(GasType.DIESEL, StatsWindow.ONE_MINUTE)
+        .getSales());
+
+    fastStation.setMetricsEnabled(true);
+    for (int i = 0; i < 6; i++) {
+      station.buyGas(GasType.DIESEL, 1.5, 2.0);
+    }
+    assertThrows(GasTooExpensiveException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 1.0));
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.DIESEL, 500.0, 2.0));
+    for (var window : StatsWindow.values()) {
+      var stats = fastStation.getWindowStats(GasType.DIESEL, window);
+      assertSame(window, stats.getWindow());
+      assertEquals(6, stats.getSales());
+      assertEquals(18.0, stats.getRevenue(), 1e-9);
+      assertEquals(2, stats.getCancellations());
+      assertEquals(0.25, stats.getCancellationRatio(), 1e-9);
+      assertEquals(6.0 / window.getSeconds(), stats.getSalesPerSecond(), 1e-9);
+      assertEquals(18.0 * 60 / window.getSeconds(), stats.getRevenuePerMinute(), 1e-9);
+      assertEquals(0.0, stats.getAverageLineLength(), 0.0);
+    }
+    var pumpStats = fastStation.getWindowStats(pump, StatsWindow.FIVE_MINUTES);
+    assertEquals(3, pumpStats.getSales()); // pumps of the same fuel alternate
+    assertEquals(0, pumpStats.getCancellations());
+    assertEquals(0, fastStation.getWindowStats(GasType.SUPER, StatsWindow.ONE_HOUR).getSales());
+    assertEquals(0.0, fastStation.getWindowStats(GasType.SUPER, StatsWindow.ONE_HOUR)
+        .getCancellationRatio(), 0.0);
+
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.getWindowStats((GasType) null, StatsWindow.ONE_MINUTE));
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.getWindowStats(GasType.DIESEL, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.getWindowStats(new GasPump(GasType.DIESEL, 1.0),
+            StatsWindow.ONE_MINUTE));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Counts timed out and turned away clients in statistics of their pump")
+  public void testPumpWindowCancellations() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CountDownLatch(1);
+    var fastStation = new FastGasStation((pump, amount) -> {
+      pumping.countDown();
+      try {
+        proceed.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.DIESEL, 100.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.DIESEL, 2.0);
+    fastStation.setMetricsEnabled(true);
+    var first = CompletableFuture.supplyAsync(() -> {
+      try {
+        return station.buyGas(GasType.DIESEL, 1.0, 2.0);
+      } catch (NotEnoughGasException | GasTooExpensiveException e) {
+        throw new CompletionException(e);
+      }
+    });
+    pumping.await();
+    assertThrows(TimeoutException.class,
+        () -> fastStation.buyGas(GasType.DIESEL, 1.0, 2.0, 10, TimeUnit.MILLISECONDS));
+    fastStation.setMaxLineLength(GasType.DIESEL, 1);
+    assertThrows(LineFullException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 2.0));
+    assertThrows(GasTooExpensiveException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 1.0));
+    proceed.countDown();
+    assertEquals(2.0, first.get(), 0.0);
+
+    var pumpStats = fastStation.getWindowStats(pump, StatsWindow.ONE_MINUTE);
+    assertEquals(1, pumpStats.getSales());
+    assertEquals(2, pumpStats.getCancellations()); // price was rejected before any pump
+    assertEquals(3, fastStation.getWindowStats(GasType.DIESEL, StatsWindow.ONE_MINUTE)
+        .getCancellations());
+  }
+
+  @Test
+  @DisplayName("Summarizes available fuel and rejects requests no pump can serve")
+  public void testAvailability() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    station = fastStation;
+    assertThrows(IllegalArgumentException.class, () -> fastStation.getAvailability(null));
+    var empty = fastStation.getAvailability(GasType.SUPER);
+    assertEquals(GasType.SUPER, empty.getGasType());
+    assertFalse(empty.isAvailable(0.5));
+    assertEquals(0, empty.getIdlePumps());
+
+    station.addGasPump(new GasPump(GasType.SUPER, 10.0));
+    station.addGasPump(new GasPump(GasType.SUPER, 4.0));
+    station.setPrice(GasType.SUPER, 1.0);
+    var availability = fastStation.getAvailability(GasType.SUPER);
+    assertEquals(10.0, availability.getMaxPumpAmount(), 0.0);
+    assertEquals(14.0, availability.getTotalAmount(), 0.0);
+    assertEquals(2, availability.getIdlePumps());
+    assertTrue(availability.isAvailable(9.0));
+    assertFalse(availability.isAvailable(10.0));
+
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.SUPER, 12.0, 1.0));
+    assertEquals(7.0, station.buyGas(GasType.SUPER, 7.0, 1.0), 0.0);
+    availability = fastStation.getAvailability(GasType.SUPER);
+    assertEquals(4.0, availability.getMaxPumpAmount(), 0.0);
+    assertEquals(7.0, availability.getTotalAmount(), 0.0);
+    assertEquals(2, availability.getIdlePumps());
+    assertStats(7.0, 1, 1, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Turns clients away when lines of all suitable pumps are full")
+  public void testMaxLineLength() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    var fastStation = new FastGasStation((pump, amount) -> {
+      pumping.countDown();
+      proceed.join();
+    });
+    station = fastStation;
+    station.addGasPump(new GasPump(GasType.DIESEL, 10.0));
+    station.setPrice(GasType.DIESEL, 2.0);
+    assertEquals(Integer.MAX_VALUE, fastStation.getMaxLineLength(GasType.DIESEL));
+    assertThrows(IllegalArgumentException.class, () -> fastStation.setMaxLineLength(null, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.setMaxLineLength(GasType.DIESEL, 0));
+    assertThrows(IllegalArgumentException.class, () -> fastStation.getMaxLineLength(null));
+    fastStation.setMaxLineLength(GasType.DIESEL, 2);
+    assertEquals(2, fastStation.getMaxLineLength(GasType.DIESEL));
+
+    var first = fastStation.buyGasAsync(GasType.DIESEL, 1.0, 2.0);
+    var second = fastStation.buyGasAsync(GasType.DIESEL, 1.0, 2.0);
+    pumping.await();
+    assertThrows(LineFullException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 2.0));
+    var result = new PurchaseResult();
+    assertEquals(Outcome.LINE_FULL, fastStation.tryBuyGas(GasType.DIESEL, 1.0, 2.0, result));
+    var outcomes = new int[1];
+    fastStation.buyGas(new GasType[] {GasType.DIESEL}, new double[] {1.0}, new double[] {2.0},
+        outcomes);
+    assertEquals(Outcome.LINE_FULL, outcomes[0]);
+    // not enough gas is checked before line length
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.DIESEL, 9.0, 2.0));
+
+    proceed.complete(null);
+    assertEquals(2.0, first.get(), 0.001);
+    assertEquals(2.0, second.get(), 0.001);
+    assertEquals(2.0, station.buyGas(GasType.DIESEL, 1.0, 2.0), 0.001);
+    assertStats(6.0, 3, 1, 0);
+    assertEquals(3, fastStation.getNumberOfCancellationsLineFull());
+    assertEquals(3, fastStation.getStats().getNumberOfCancellationsLineFull());
+  }
+
+  @Test
+  @Timeout(value = 30, unit = TimeUnit.SECONDS)
+  @DisplayName("Does not turn clients away while a pump is idle")
+  public void testNoSpuriousLineFull() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { });
+    station = fastStation;
+    int clients = 8;
+    for (int i = 0; i < clients; i++) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 1_000_000.0));
+    }
+    station.setPrice(GasType.REGULAR, 2.0);
+    fastStation.setMaxLineLength(GasType.REGULAR, 1);
+    int rounds = 2000;
+    var barrier = new CyclicBarrier(clients);
+    var futures = new CompletableFuture<?>[clients];
+    var pool = Executors.newFixedThreadPool(clients);
+    for (int t = 0; t < clients; t++) {
+      futures[t] = CompletableFuture.runAsync(() -> {
+        var result = new PurchaseResult();
+        try {
+          for (int i = 0; i < rounds; i++) {
+            barrier.await(); // every client is out of line, so every client finds idle pump
+            fastStation.tryBuyGas(GasType.REGULAR, 1.0, 2.0, result);
+          }
+        } catch (InterruptedException | BrokenBarrierException e) {
+          throw new CompletionException(e);
+        }
+      }, pool);
+    }
+    try {
+      CompletableFuture.allOf(futures).get();
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(0, fastStation.getNumberOfCancellationsLineFull());
+    assertStats(2.0 * clients * rounds, clients * rounds, 0, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Closed station serves clients in line, then stops workers of its pumps")
+  public void testClose() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    var workers = ConcurrentHashMap.<Thread>newKeySet();
+    var fastStation = new FastGasStation((pump, amount) -> {
+      workers.add(Thread.currentThread());
+      pumping.countDown();
+      proceed.join();
+    }, Runnable::run, DispatchMode.WORKERS);
+    station = fastStation;
+    station.addGasPump(new GasPump(GasType.DIESEL, 10.0));
+    station.setPrice(GasType.DIESEL, 1.0);
+    var first = fastStation.buyGasAsync(GasType.DIESEL, 1.0, 1.0);
+    pumping.await();
+    var second = fastStation.buyGasAsync(GasType.DIESEL, 2.0, 1.0);
+
+    fastStation.close();
+    fastStation.close();
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 1.0));
+    assertThrows(IllegalStateException.class,
+        () -> station.addGasPump(new GasPump(GasType.DIESEL, 10.0)));
+    assertEquals(1, station.getGasPumps().size());
+    proceed.complete(null);
+    assertEquals(1.0, first.get(), 0.0);
+    assertEquals(2.0, second.get(), 0.0);
+    var worker = workers.iterator().next();
+    worker.join(5_000);
+    assertFalse(worker.isAlive());
+    assertStats(3.0, 2, 1, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Failed pumping gives the pump to the next client")
+  public void testPumpingFailure() throws Exception {
+    for (var mode : DispatchMode.values()) {
+      var fastStation = new FastGasStation((pump, amount) -> {
+        if (amount > 2.0) {
+          throw new IllegalStateException("pump is broken");
+        }
+      }, Runnable::run, mode);
+      station = fastStation;
+      station.addGasPump(new GasPump(GasType.DIESEL, 10.0));
+      station.setPrice(GasType.DIESEL, 1.0);
+      assertThrows(IllegalStateException.class,
+          () -> station.buyGas(GasType.DIESEL, 3.0, 1.0), "" + mode);
+      assertEquals(0, fastStation.getMetrics().getLineLength(GasType.DIESEL), "" + mode);
+      assertEquals(1.0, station.buyGas(GasType.DIESEL, 1.0, 1.0), 0.0);
+      assertEquals(2.0, fastStation.buyGas(GasType.DIESEL, 2.0, 1.0, 1, TimeUnit.SECONDS), 0.0);
+      assertStats(3.0, 2, 0, 0);
+      fastStation.close();
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Interrupted client keeps waiting without spinning and keeps its interrupt")
+  public void testInterruptedClient() throws Exception {
+    var threads = ManagementFactory.getThreadMXBean();
+    for (var mode : DispatchMode.values()) {
+      var pumping = new CountDownLatch(1);
+      var proceed = new CompletableFuture<Void>();
+      var fastStation = new FastGasStation((pump, amount) -> {
+        pumping.countDown();
+        proceed.join();
+      }, Executors.newCachedThreadPool(), mode);
+      station = fastStation;
+      station.addGasPump(new GasPump(GasType.SUPER, 10.0));
+      station.setPrice(GasType.SUPER, 1.0);
+      var first = fastStation.buyGasAsync(GasType.SUPER, 1.0, 1.0);
+      pumping.await();
+
+      var interrupted = new CompletableFuture<Boolean>();
+      var cpuTime = new CompletableFuture<Long>();
+      var client = new Thread(() -> {
+        long cpu = threads.getCurrentThreadCpuTime();
+        try {
+          station.buyGas(GasType.SUPER, 2.0, 1.0);
+          cpuTime.complete(threads.getCurrentThreadCpuTime() - cpu);
+          interrupted.complete(Thread.currentThread().isInterrupted());
+        } catch (Exception e) {
+          interrupted.completeExceptionally(e);
+        }
+      });
+      client.start();
+      while (fastStation.getMetrics().getLineLength(GasType.SUPER) < 2) {
+        Thread.sleep(1);
+      }
+      Thread.sleep(10); // let the client park
+      client.interrupt();
+      Thread.sleep(200);
+      proceed.complete(null);
+      assertEquals(1.0, first.get(), 0.0);
+      assertTrue(interrupted.get(), "" + mode);
+      assertTrue(cpuTime.get() < TimeUnit.MILLISECONDS.toNanos(100), mode + " " + cpuTime.get());
+      assertStats(3.0, 2, 0, 0);
+      fastStation.close();
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Interrupted batch waits for its clients and keeps interrupt status")
+  public void testInterruptedBatch() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    var fastStation = new FastGasStation((pump, amount) -> {
+      pumping.countDown();
+      proceed.join();
+    }, Executors.newCachedThreadPool(), DispatchMode.LINES);
+    station = fastStation;
+    station.addGasPump(new GasPump(GasType.SUPER, 10.0));
+    station.setPrice(GasType.SUPER, 1.0);
+
+    var outcomes = new int[2];
+    var costs = new CompletableFuture<double[]>();
+    var interrupted = new CompletableFuture<Boolean>();
+    var client = new Thread(() -> {
+      try {
+        costs.complete(fastStation.buyGas(new GasType[] {GasType.SUPER, GasType.SUPER},
+            new double[] {1.0, 2.0}, new double[] {1.0, 1.0}, outcomes));
+        interrupted.complete(Thread.currentThread().isInterrupted());
+      } catch (RuntimeException e) {
+        costs.completeExceptionally(e);
+      }
+    });
+    client.start();
+    pumping.await();
+    client.interrupt();
+    Thread.sleep(50);
+    assertFalse(costs.isDone());
+    proceed.complete(null);
+    assertArrayEquals(new double[] {1.0, 2.0}, costs.get(), 0.0);
+    assertArrayEquals(new int[] {Outcome.SOLD, Outcome.SOLD}, outcomes);
+    assertTrue(interrupted.get());
+    assertStats(3.0, 2, 0, 0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Client leaves the line at deadline and returns its fuel")
+  public void testBuyGasTimeout() throws Exception {
+    for (var mode : DispatchMode.values()) {
+      var pumping = new CountDownLatch(1);
+      var proceed = new CompletableFuture<Void>();
+      var fastStation = new FastGasStation((pump, amount) -> {
+        pumping.countDown();
+        proceed.join();
+      }, Executors.newCachedThreadPool(), mode);
+      station = fastStation;
+      station.addGasPump(new GasPump(GasType.SUPER, 10.0));
+      station.setPrice(GasType.SUPER, 1.0);
+      assertThrows(IllegalArgumentException.class,
+          () -> fastStation.buyGas(GasType.SUPER, 1.0, 1.0, 1, null));
+
+      var first = fastStation.buyGasAsync(GasType.SUPER, 5.0, 1.0);
+      pumping.await();
+      long start = System.nanoTime();
+      assertThrows(TimeoutException.class,
+          () -> fastStation.buyGas(GasType.SUPER, 4.0, 1.0, 50, TimeUnit.MILLISECONDS), "" + mode);
+      assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+      // fuel of the client that left is available again
+      var third = fastStation.buyGasAsync(GasType.SUPER, 4.5, 1.0);
+
+      proceed.complete(null);
+      assertEquals(5.0, first.get(), 0.001);
+      assertEquals(4.5, third.get(), 0.001);
+      assertEquals(0.25, fastStation.buyGas(GasType.SUPER, 0.25, 1.0, 1, TimeUnit.SECONDS),
+          0.001);
+      assertStats(9.75, 3, 0, 0);
+      assertEquals(1, fastStation.getNumberOfCancellationsTimedOut());
+      assertEquals(0, fastStation.getMetrics().getLineLength(GasType.SUPER));
+      fastStation.close();
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Refilled gas is sold to new clients")
+  public void testRefill() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.REGULAR, 5.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.REGULAR, 1.0);
+    assertThrows(IllegalArgumentException.class, () -> fastStation.refill(null, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> fastStation.refill(pump, 0.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.scheduleRefill(pump, 1.0, 1, null));
+    assertFalse(fastStation.refill(new GasPump(GasType.REGULAR, 1.0), 1.0));
+
+    assertEquals(4.0, station.buyGas(GasType.REGULAR, 4.0, 1.0), 0.001);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 4.0, 1.0));
+    assertTrue(fastStation.refill(pump, 10.0));
+    assertEquals(8.0, station.buyGas(GasType.REGULAR, 8.0, 1.0), 0.001);
+    assertTrue(fastStation.scheduleRefill(pump, 2.0, 0, TimeUnit.SECONDS).get());
+    assertEquals(4.5, station.buyGas(GasType.REGULAR, 4.5, 1.0), 0.001);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 0.5, 1.0));
+    assertStats(16.5, 3, 2, 0);
+
+    assertTrue(fastStation.removeGasPump(pump).get());
+    assertFalse(fastStation.refill(pump, 1.0));
+    assertFalse(fastStation.scheduleRefill(pump, 1.0, 0, TimeUnit.SECONDS).get());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Station counts refilled gas the pump does not count")
+  public void testRemainingAmount() throws Exception {
+    var fastStation = new FastGasStation(PumpDriver.GAS_PUMP, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.REGULAR, 1.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.REGULAR, 1.0);
+    assertThrows(IllegalArgumentException.class, () -> fastStation.getRemainingAmount(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> fastStation.getRemainingAmount(new GasPump(GasType.REGULAR, 1.0)));
+    assertTrue(fastStation.refill(pump, 1.0));
+    assertEquals(2.0, fastStation.getRemainingAmount(pump), 0.001);
+    assertEquals(1.5, station.buyGas(GasType.REGULAR, 1.5, 1.0), 0.001);
+    assertEquals(0.5, fastStation.getRemainingAmount(pump), 0.001);
+    assertEquals(-0.5, pump.getRemainingAmount(), 0.001);
+
+    // pump with negative amount cannot be added again
+    assertTrue(fastStation.removeGasPump(pump).get());
+    assertThrows(IllegalArgumentException.class, () -> station.addGasPump(pump));
+    assertTrue(station.getGasPumps().isEmpty());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Interrupted client stops waiting for refill")
+  public void testInterruptedWaitForRefill() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.DIESEL, 1.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.DIESEL, 1.0);
+    var refill = fastStation.scheduleRefill(pump, 5.0, 1, TimeUnit.SECONDS);
+    Thread.currentThread().interrupt();
+    try {
+      assertThrows(NotEnoughGasException.class,
+          () -> fastStation.buyGas(GasType.DIESEL, 2.0, 1.0, 5, TimeUnit.SECONDS));
+      assertTrue(Thread.currentThread().isInterrupted());
+    } finally {
+      Thread.interrupted();
+    }
+    assertStats(0.0, 0, 1, 0);
+    assertEquals(0, fastStation.getNumberOfCancellationsTimedOut());
+    assertTrue(refill.get());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Clients with a deadline wait for announced refill")
+  public void testWaitForRefill() throws Exception {
+    var fastStation = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    station = fastStation;
+    var pump = new GasPump(GasType.DIESEL, 1.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.DIESEL, 1.0);
+    // nothing announced, cancelled at once
+    assertThrows(NotEnoughGasException.class,
+        () -> fastStation.buyGas(GasType.DIESEL, 2.0, 1.0, 1, TimeUnit.SECONDS));
+
+    var refill = fastStation.scheduleRefill(pump, 5.0, 100, TimeUnit.MILLISECONDS);
+    // announced refill is not enough
+    assertThrows(NotEnoughGasException.class,
+        () -> fastStation.buyGas(GasType.DIESEL, 7.0, 1.0, 1, TimeUnit.SECONDS));
+    // announced refill comes too late
+    assertThrows(TimeoutException.class,
+        () -> fastStation.buyGas(GasType.DIESEL, 2.0, 1.0, 10, TimeUnit.MILLISECONDS));
+    long start = System.nanoTime();
+    assertEquals(2.0, fastStation.buyGas(GasType.DIESEL, 2.0, 1.0, 5, TimeUnit.SECONDS), 0.001);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    assertTrue(refill.get());
+    assertStats(2.0, 1, 2, 0);
+    assertEquals(1, fastStation.getNumberOfCancellationsTimedOut());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("Client at the pump waits while tanker pours")
+  public void testRefillStall() throws Exception {
+    var pouring = new CountDownLatch(1);
+    var poured = new CompletableFuture<Void>();
+    var fastStation = new FastGasStation(new PumpDriver() {
+      @Override
+      public void pump(GasPump pump, double amountInLiters) {
+      }
+
+      @Override
+      public void refill(GasPump pump, double amountInLiters) {
+        pouring.countDown();
+        poured.join();
+      }
+    }, Runnable::run);
+    station = fastStation;
+    fastStation.setMetricsEnabled(true);
+    var pump = new GasPump(GasType.SUPER, 1.0);
+    station.addGasPump(pump);
+    station.setPrice(GasType.SUPER, 1.0);
+    var refill = CompletableFuture.supplyAsync(() -> fastStation.refill(pump, 10.0));
+    pouring.await();
+    var client = CompletableFuture.supplyAsync(() -> {
+      try {
+        return station.buyGas(GasType.SUPER, 0.5, 1.0);
+      } catch (NotEnoughGasException | GasTooExpensiveException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    Thread.sleep(50);
+    assertFalse(client.isDone());
+    // fuel being poured is not available yet
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.SUPER, 2.0, 1.0));
+    poured.complete(null);
+    assertTrue(refill.get());
+    assertEquals(0.5, client.get(), 0.001);
+    var stall = fastStation.getMetrics().getRefillStall(GasType.SUPER);
+    assertEquals(1, stall.getCount());
+    assertTrue(stall.getMax() >= TimeUnit.MILLISECONDS.toNanos(40));
+  }
+
+  @Test
+  @Timeout(value = 20, unit = TimeUnit.SECONDS)
+  @DisplayName("Clients with short deadlines never lose fuel or places in line")
+  public void testManyTimeouts() throws Exception {
+    for (var mode : DispatchMode.values()) {
+      var fastStation = new FastGasStation((pump, amount) -> {
+        try {
+          Thread.sleep(1);
+        } catch (InterruptedException ignored) {
+          // stop pumping early
+        }
+      }, Executors.newCachedThreadPool(), mode);
+      station = fastStation;
+      for (int i = 0; i < 4; i++) {
+        station.addGasPump(new GasPump(GasType.REGULAR, 1000.0));
+      }
+      station.setPrice(GasType.REGULAR, 1.0);
+      var executor = CustomerThreads.fromSystemProperty().newExecutor();
+      for (int i = 0; i < 400; i++) {
+        long timeout = i % 5;
+        executor.submit(() -> fastStation.buyGas(GasType.REGULAR, 1.0, 1.0, timeout,
+            TimeUnit.MILLISECONDS));
+      }
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(15, TimeUnit.SECONDS));
+      var stats = fastStation.getStats();
+      assertEquals(400, stats.getNumberOfSales() + stats.getNumberOfCancellationsTimedOut(),
+          "" + mode);
+      assertTrue(stats.getNumberOfCancellationsTimedOut() > 0, "" + mode);
+      assertEquals(0, fastStation.getMetrics().getLineLength(GasType.REGULAR));
+      var file = Files.createTempFile("gas-station", ".snapshot");
+      try {
+        fastStation.writeSnapshot(file).get();
+        double available = 0.0;
+        for (double amount : StationSnapshot.read(file).amounts) {
+          available += amount;
+        }
+        assertEquals(4000.0 - stats.getNumberOfSales(), available, 0.001, "" + mode);
+      } finally {
+        Files.delete(file);
+      }
+      fastStation.close();
+    }
+  }
+
   @Nested
   @DisplayName("When not initialized")
   public class NotInit {
@@ -190,6 +890,26 @@ public class TestFastGasStation {
         assertEquals(3, station.getGasPumps().size());
       }
 
+      @Test
+      @DisplayName("pumps removed")
+      public void testRemovePumps() throws Exception {
+        var fastStation = (FastGasStation) station;
+        assertThrows(IllegalArgumentException.class, () -> fastStation.removeGasPump(null));
+        assertFalse(fastStation.removeGasPump(new GasPump(GasType.DIESEL, 1.0)).get());
+
+        var pumps = station.getGasPumps();
+        assertTrue(fastStation.removeGasPump(superPump).get());
+        assertEquals(2, station.getGasPumps().size());
+        assertFalse(station.getGasPumps().contains(superPump));
+        assertEquals(3, pumps.size());
+        assertFalse(fastStation.removeGasPump(superPump).get());
+
+        station.setPrice(GasType.SUPER, 1.0);
+        assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.SUPER, 1.0, 1.0));
+        station.addGasPump(superPump);
+        assertEquals(1.0, station.buyGas(GasType.SUPER, 1.0, 1.0), 0.001);
+      }
+
       @Test
       @DisplayName("buyGas fails as price is not set")
       public void testBuyGasFails() throws Exception {
@@ -244,6 +964,108 @@ public class TestFastGasStation {
           assertStats(0.0, 0, 0, 1);
         }
 
+        @Test
+        @DisplayName("cancellations are thrown without stack trace")
+        public void testCheapExceptions() throws Exception {
+          var noGas = assertThrows(NotEnoughGasException.class,
+              () -> station.buyGas(GasType.REGULAR, 25, 2));
+          assertEquals(0, noGas.getStackTrace().length);
+          var expensive = assertThrows(GasTooExpensiveException.class,
+              () -> station.buyGas(GasType.REGULAR, 1, 0.5));
+          assertEquals(0, expensive.getStackTrace().length);
+        }
+
+        @Test
+        @DisplayName("buy gas without exceptions")
+        public void testTryBuyGas() throws Exception {
+          var fastStation = (FastGasStation) station;
+          var result = new PurchaseResult();
+          assertEquals(Outcome.SOLD, fastStation.tryBuyGas(GasType.REGULAR, 0.5, 1, result));
+          assertTrue(result.isSold());
+          assertEquals(0.4, result.getCost(), 0.001);
+
+          assertEquals(Outcome.NOT_ENOUGH_GAS,
+              fastStation.tryBuyGas(GasType.REGULAR, 25, 1, result));
+          assertEquals(Outcome.NOT_ENOUGH_GAS, result.getOutcome());
+          assertFalse(result.isSold());
+          assertEquals(0.0, result.getCost(), 0.0);
+
+          assertEquals(Outcome.TOO_EXPENSIVE,
+              fastStation.tryBuyGas(GasType.REGULAR, 1, 0.5, result));
+          assertEquals(Outcome.NOT_ENOUGH_GAS,
+              fastStation.tryBuyGas(GasType.DIESEL, 1, 2, result));
+          assertThrows(IllegalArgumentException.class,
+              () -> fastStation.tryBuyGas(GasType.REGULAR, 1, 1, null));
+          assertStats(0.4, 1, 2, 1);
+        }
+
+        @Test
+        @DisplayName("client pays price accepted before pumping")
+        public void testPriceChangeWhilePumping() throws Exception {
+          station = new FastGasStation((pump, amount) -> station.setPrice(GasType.REGULAR, 5.0));
+          station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+          station.setPrice(GasType.REGULAR, 1.0);
+          assertEquals(2.0, station.buyGas(GasType.REGULAR, 2.0, 1.0), 0.001);
+          assertEquals(5.0, station.getPrice(GasType.REGULAR), 0.001);
+          assertThrows(GasTooExpensiveException.class,
+              () -> station.buyGas(GasType.REGULAR, 2.0, 1.0));
+          assertStats(2.0, 1, 0, 1);
+        }
+
+        @Test
+        @DisplayName("metrics are recorded only when enabled")
+        public void testMetrics() throws Exception {
+          var fastStation = (FastGasStation) station;
+          assertFalse(fastStation.isMetricsEnabled());
+          station.buyGas(GasType.REGULAR, 0.1, 1);
+          assertEquals(0, fastStation.getMetrics().getPumpTime(GasType.REGULAR).getCount());
+
+          fastStation.setMetricsEnabled(true);
+          assertTrue(fastStation.isMetricsEnabled());
+          station.buyGas(GasType.REGULAR, 0.1, 1);
+          station.buyGas(GasType.REGULAR, 0.1, 1);
+          var metrics = fastStation.getMetrics();
+          assertEquals(2, metrics.getReservationTime(GasType.REGULAR).getCount());
+          assertEquals(2, metrics.getQueueWait(GasType.REGULAR).getCount());
+          assertEquals(2, metrics.getPumpTime(GasType.REGULAR).getCount());
+          assertTrue(metrics.getPumpTime(GasType.REGULAR).getMax() >= 10_000_000);
+          assertEquals(0, metrics.getPumpTime(GasType.SUPER).getCount());
+          assertEquals(0, metrics.getLineLength(GasType.REGULAR));
+          assertEquals(3, metrics.getPumps().size());
+          long pumped = 0;
+          for (var pump : metrics.getPumps()) {
+            assertEquals(0, pump.getLineLength());
+            assertEquals(pump.getQueueWait().getCount(), pump.getPumpTime().getCount());
+            if (pump.getGasType() == GasType.SUPER) {
+              assertEquals(2, pump.getId());
+            }
+            pumped += pump.getPumpTime().getCount();
+          }
+          assertEquals(2, pumped);
+        }
+
+        @Test
+        @DisplayName("metrics are available through JMX")
+        public void testMetricsMBean() throws Exception {
+          var fastStation = (FastGasStation) station;
+          var name = fastStation.registerMBean("test");
+          var server = ManagementFactory.getPlatformMBeanServer();
+          try {
+            server.setAttribute(name, new Attribute("Enabled", true));
+            assertTrue(fastStation.isMetricsEnabled());
+            station.buyGas(GasType.REGULAR, 0.1, 1);
+            var bean = JMX.newMXBeanProxy(server, name, StationMetricsMXBean.class);
+            assertEquals(0, (int) bean.getLineLengths().get("REGULAR"));
+            assertTrue(bean.getPumpTimeP99().get("REGULAR") >= 10_000.0);
+            assertTrue(bean.getQueueWaitP99().get("REGULAR") >= 0.0);
+            assertTrue(bean.getQueueWaitP999().get("REGULAR") >= 0.0);
+            assertTrue(bean.getReservationTimeP99().get("REGULAR") > 0.0);
+            assertEquals(0.0, bean.getPumpTimeP99().get("DIESEL"), 0.0);
+          } finally {
+            server.unregisterMBean(name);
+          }
+        }
+
         @Test
         @DisplayName("buy gas in small amounts")
         public void testSmallBuyGas() throws Exception {
@@ -251,6 +1073,85 @@ public class TestFastGasStation {
           assertStats(0.4, 1, 0, 0);
         }
 
+        @Test
+        @DisplayName("statistics snapshot has all counters")
+        public void testStatsSnapshot() throws Exception {
+          station.buyGas(GasType.REGULAR, 0.1, 2);
+          assertThrows(GasTooExpensiveException.class,
+              () -> station.buyGas(GasType.REGULAR, 1, 0.5));
+          assertThrows(NotEnoughGasException.class,
+              () -> station.buyGas(GasType.REGULAR, 25, 2));
+          var stats = ((FastGasStation) station).getStats();
+          assertEquals(0.08, stats.getRevenue(), 0.001);
+          assertEquals(1, stats.getNumberOfSales());
+          assertEquals(1, stats.getNumberOfCancellationsNoGas());
+          assertEquals(1, stats.getNumberOfCancellationsTooExpensive());
+        }
+
+        @Test
+        @Timeout(value = 1, unit = TimeUnit.SECONDS)
+        @DisplayName("buy gas asynchronously")
+        public void testBuyGasAsync() throws Exception {
+          var fastStation = (FastGasStation) station;
+          var first = fastStation.buyGasAsync(GasType.REGULAR, 0.5, 1);
+          var second = fastStation.buyGasAsync(GasType.REGULAR, 0.5, 1);
+          var third = fastStation.buyGasAsync(GasType.REGULAR, 0.5, 1);
+          assertEquals(0.4, first.get(), 0.001);
+          assertEquals(0.4, second.get(), 0.001);
+          assertEquals(0.4, third.get(), 0.001);
+          assertStats(1.2, 3, 0, 0);
+        }
+
+        @Test
+        @Timeout(value = 1, unit = TimeUnit.SECONDS)
+        @DisplayName("buy gas in batch")
+        public void testBuyGasBatch() throws Exception {
+          var types = new GasType[] {GasType.REGULAR, GasType.REGULAR, GasType.DIESEL,
+              GasType.REGULAR, GasType.REGULAR};
+          var amounts = new double[] {1, 1, 1, 30, 2};
+          var maxPrices = new double[] {1, 0.5, 1, 1, 1};
+          var outcomes = new int[5];
+          var costs = ((FastGasStation) station).buyGas(types, amounts, maxPrices, outcomes);
+          assertArrayEquals(new double[] {0.8, 0, 0, 0, 1.6}, costs, 0.001);
+          assertArrayEquals(new int[] {Outcome.SOLD, Outcome.TOO_EXPENSIVE,
+              Outcome.NOT_ENOUGH_GAS, Outcome.NOT_ENOUGH_GAS, Outcome.SOLD}, outcomes);
+          assertStats(2.4, 2, 2, 1);
+        }
+
+        @Test
+        @DisplayName("batch fails on incorrect input")
+        public void testBuyGasBatchFails() throws Exception {
+          var fastStation = (FastGasStation) station;
+          var types = new GasType[] {GasType.REGULAR};
+          var amounts = new double[] {1};
+          var prices = new double[] {1};
+          assertThrows(IllegalArgumentException.class,
+              () -> fastStation.buyGas(null, amounts, prices, new int[1]));
+          assertThrows(IllegalArgumentException.class,
+              () -> fastStation.buyGas(types, amounts, prices, new int[2]));
+          assertThrows(IllegalArgumentException.class,
+              () -> fastStation.buyGas(types, new double[] {-1}, prices, new int[1]));
+          assertThrows(IllegalStateException.class,
+              () -> fastStation.buyGas(new GasType[] {GasType.REGULAR, GasType.SUPER},
+                  new double[] {1, 1}, new double[] {1, 1}, new int[2]));
+          assertStats(0.0, 0, 0, 0);
+        }
+
+        @Test
+        @DisplayName("asynchronous cancellations complete exceptionally")
+        public void testBuyGasAsyncFails() throws Exception {
+          var fastStation = (FastGasStation) station;
+          var noGas = fastStation.buyGasAsync(GasType.REGULAR, 25, 2);
+          var expensive = fastStation.buyGasAsync(GasType.REGULAR, 1, 0.5);
+          var cause = assertThrows(ExecutionException.class, noGas::get).getCause();
+          assertTrue(cause instanceof NotEnoughGasException);
+          cause = assertThrows(ExecutionException.class, expensive::get).getCause();
+          assertTrue(cause instanceof GasTooExpensiveException);
+          assertThrows(IllegalArgumentException.class,
+              () -> fastStation.buyGasAsync(GasType.REGULAR, -1, 2));
+          assertStats(0.0, 0, 1, 1);
+        }
+
         @Test
         @Timeout(value = 150, unit = TimeUnit.MILLISECONDS)
         @DisplayName("concurrent pumping")
@@ -0,0 +1,105 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestGasPumpQueue {
+
+  @Test
+  @DisplayName("reserves fuel and place in line")
+  public void testReserve() {
+    var pump = new GasPump(GasType.REGULAR, 10.0);
+    var queue = new GasPumpQueue(pump, 0, Runnable::run);
+    assertEquals(10.0, queue.availableAmount(), 0.0);
+    assertEquals(0, queue.length());
+    assertSame(pump, queue.pump.peek());
+
+    assertTrue(queue.tryReserve(4.0));
+    assertEquals(6.0, queue.availableAmount(), 0.0);
+    assertEquals(1, queue.length());
+
+    assertFalse(queue.tryReserve(6.0));
+    assertEquals(6.0, queue.availableAmount(), 0.0);
+    assertEquals(1, queue.length());
+
+    queue.leave();
+    assertEquals(0, queue.length());
+  }
+
+  @Test
+  @DisplayName("closed pump takes no clients and drains its line")
+  public void testClose() {
+    var queue = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+    assertTrue(queue.tryReserve(1.0));
+    assertTrue(queue.tryReserve(2.0));
+    queue.close();
+    assertTrue(queue.isClosed());
+    assertFalse(queue.tryReserve(1.0));
+    assertEquals(2, queue.length());
+
+    queue.cancel(2.0);
+    assertFalse(queue.drained.isDone());
+    assertFalse(queue.tryReserve(1.0));
+    queue.leave();
+    assertTrue(queue.drained.isDone());
+  }
+
+  @Test
+  @DisplayName("refill raises available fuel of open pump, line length limits reservations")
+  public void testRefillAndLineLimit() {
+    var queue = new GasPumpQueue(new GasPump(GasType.REGULAR, 1.0), 0, Runnable::run);
+    assertEquals(GasPumpQueue.NO_FUEL, queue.tryReserve(2.0, 5));
+    queue.addPendingRefill(5.0);
+    assertEquals(5.0, queue.pendingRefill(), 0.0);
+    assertTrue(queue.refill(5.0));
+    queue.addPendingRefill(-5.0);
+    assertEquals(0.0, queue.pendingRefill(), 0.0);
+    assertEquals(6.0, queue.availableAmount(), 0.0);
+    assertEquals(GasPumpQueue.RESERVED, queue.tryReserve(2.0, 1));
+    assertEquals(GasPumpQueue.LINE_FULL, queue.tryReserve(2.0, 1));
+    assertEquals(1, queue.length());
+    assertEquals(4.0, queue.availableAmount(), 0.0);
+    queue.close();
+    assertFalse(queue.refill(1.0));
+    assertTrue(queue.isClosed());
+  }
+
+  @Test
+  @DisplayName("idle pump is drained when closed")
+  public void testCloseIdle() {
+    var queue = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+    assertFalse(queue.isClosed());
+    queue.close();
+    assertTrue(queue.drained.isDone());
+    assertEquals(0, queue.length());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("concurrent reservations never oversell")
+  public void testConcurrentReserve() throws Exception {
+    var queue = new GasPumpQueue(new GasPump(GasType.REGULAR, 1000.0), 0, Runnable::run);
+    var reserved = new AtomicInteger();
+    var executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      executor.submit(() -> {
+        while (queue.tryReserve(1.0)) {
+          reserved.incrementAndGet();
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(999, reserved.get());
+    assertEquals(999, queue.length());
+    assertEquals(1.0, queue.availableAmount(), 0.0);
+  }
+}
@@ -0,0 +1,139 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestGasStationFleet {
+
+  List<FastGasStation> stations;
+  GasStationFleet fleet;
+
+  @BeforeEach
+  public void create() {
+    stations = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      stations.add(new FastGasStation((pump, amount) -> { }));
+    }
+    fleet = new GasStationFleet(stations, 2);
+    fleet.setPrice(GasType.REGULAR, 2.0);
+  }
+
+  @Test
+  @DisplayName("fleet needs stations and shards")
+  public void testConstructor() {
+    assertThrows(IllegalArgumentException.class, () -> new GasStationFleet(null));
+    assertThrows(IllegalArgumentException.class, () -> new GasStationFleet(List.of()));
+    assertThrows(IllegalArgumentException.class, () -> new GasStationFleet(stations, 0));
+    var withNull = new ArrayList<>(stations);
+    withNull.add(null);
+    assertThrows(IllegalArgumentException.class, () -> new GasStationFleet(withNull));
+    var immutable = List.of(stations.get(0), stations.get(1));
+    assertEquals(immutable, new GasStationFleet(immutable).getStations());
+    assertEquals(4, new GasStationFleet(stations, 16).getNumberOfShards());
+    assertEquals(2, fleet.getNumberOfShards());
+    assertEquals(stations, fleet.getStations());
+  }
+
+  @Test
+  @DisplayName("routes purchase to the only station with enough fuel")
+  public void testRouteToFuel() throws Exception {
+    stations.get(3).addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    stations.get(0).addGasPump(new GasPump(GasType.REGULAR, 1.0));
+    for (int i = 0; i < 4; i++) {
+      assertSame(stations.get(3), fleet.route(GasType.REGULAR, 2.0, 2.0));
+    }
+    assertEquals(4.0, fleet.buyGas(GasType.REGULAR, 2.0, 2.0), 0.001);
+    assertEquals(1, stations.get(3).getNumberOfSales());
+    assertThrows(NotEnoughGasException.class, () -> fleet.buyGas(GasType.REGULAR, 9.0, 2.0));
+    assertThrows(IllegalArgumentException.class, () -> fleet.route(null, 1.0, 2.0));
+  }
+
+  @Test
+  @DisplayName("routes purchase to station with shorter line")
+  public void testRouteToShorterLine() {
+    var fleet = new GasStationFleet(stations.subList(0, 2), 1);
+    stations.get(0).addGasPump(new GasPump(GasType.REGULAR, 100.0));
+    stations.get(1).addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    assertSame(stations.get(0), fleet.route(GasType.REGULAR, 1.0, 2.0));
+    assertTrue(stations.get(0).selectPump(GasType.REGULAR, 1.0).tryReserve(1.0));
+    for (int i = 0; i < 4; i++) {
+      assertSame(stations.get(1), fleet.route(GasType.REGULAR, 1.0, 2.0));
+    }
+  }
+
+  @Test
+  @DisplayName("routes purchase to station that sells at accepted price")
+  public void testRouteToPrice() throws Exception {
+    var fleet = new GasStationFleet(stations.subList(0, 2), 1);
+    stations.get(0).addGasPump(new GasPump(GasType.REGULAR, 100.0));
+    stations.get(1).addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    stations.get(0).setPrice(GasType.REGULAR, 3.0);
+    for (int i = 0; i < 4; i++) {
+      assertSame(stations.get(1), fleet.route(GasType.REGULAR, 1.0, 2.0));
+    }
+    assertEquals(2.0, fleet.buyGas(GasType.REGULAR, 1.0, 2.0), 0.001);
+    assertEquals(1, stations.get(1).getNumberOfSales());
+    assertEquals(0, stations.get(0).getNumberOfCancellationsTooExpensive());
+    stations.get(1).setPrice(GasType.REGULAR, 4.0);
+    assertThrows(GasTooExpensiveException.class, () -> fleet.buyGas(GasType.REGULAR, 1.0, 2.0));
+  }
+
+  @Test
+  @DisplayName("sums statistics of stations")
+  public void testStats() throws Exception {
+    for (var station : stations) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    }
+    assertEquals(4.0, fleet.buyGas(GasType.REGULAR, 2.0, 2.0), 0.001);
+    assertThrows(GasTooExpensiveException.class, () -> fleet.buyGas(GasType.REGULAR, 2.0, 1.0));
+    var result = new PurchaseResult();
+    assertEquals(Outcome.NOT_ENOUGH_GAS, fleet.tryBuyGas(GasType.REGULAR, 20.0, 2.0, result));
+    assertEquals(Outcome.SOLD, fleet.tryBuyGas(GasType.REGULAR, 1.0, 2.0, result));
+    assertEquals(2.0, result.getCost(), 0.001);
+
+    var stats = fleet.getStats();
+    assertEquals(2, stats.getNumberOfSales());
+    assertEquals(6.0, stats.getRevenue(), 0.001);
+    assertEquals(1, stats.getNumberOfCancellationsNoGas());
+    assertEquals(1, stats.getNumberOfCancellationsTooExpensive());
+    assertEquals(2, fleet.getNumberOfSales());
+    assertEquals(6.0, fleet.getRevenue(), 0.001);
+    assertEquals(1, fleet.getNumberOfCancellationsNoGas());
+    assertEquals(1, fleet.getNumberOfCancellationsTooExpensive());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("serves concurrent clients across stations")
+  public void testConcurrent() throws Exception {
+    for (var station : stations) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 1000.0));
+      station.addGasPump(new GasPump(GasType.REGULAR, 1000.0));
+    }
+    var clients = new CompletableFuture<?>[8];
+    for (int t = 0; t < clients.length; t++) {
+      clients[t] = CompletableFuture.runAsync(() -> {
+        var result = new PurchaseResult();
+        for (int i = 0; i < 500; i++) {
+          fleet.tryBuyGas(GasType.REGULAR, 1.0, 2.0, result);
+        }
+      });
+    }
+    CompletableFuture.allOf(clients).get();
+    var stats = fleet.getStats();
+    assertEquals(4000, stats.getNumberOfSales() + stats.getNumberOfCancellationsNoGas());
+    assertEquals(2.0 * stats.getNumberOfSales(), stats.getRevenue(), 0.001);
+  }
+}
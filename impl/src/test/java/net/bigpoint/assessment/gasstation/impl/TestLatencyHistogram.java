@@ -0,0 +1,55 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestLatencyHistogram {
+
+  @Test
+  @DisplayName("buckets cover values contiguously")
+  public void testBuckets() {
+    assertEquals(0, LatencyHistogram.bucket(-5));
+    for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+      long lowest = LatencyHistogram.lowestValue(bucket);
+      long next = LatencyHistogram.lowestValue(bucket + 1);
+      assertTrue(next > lowest);
+      assertEquals(bucket, LatencyHistogram.bucket(lowest));
+      assertEquals(bucket, LatencyHistogram.bucket(next - 1));
+      // relative error is bounded
+      assertTrue((next - lowest) <= Math.max(1, lowest / 32));
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  @DisplayName("empty histogram")
+  public void testEmpty() {
+    var snapshot = new LatencyHistogram().snapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0.0, snapshot.getMean(), 0.0);
+    assertEquals(0, snapshot.getMax());
+    assertEquals(0, snapshot.getValueAtPercentile(99.0));
+  }
+
+  @Test
+  @DisplayName("percentiles are within bucket precision")
+  public void testPercentiles() {
+    var histogram = new LatencyHistogram();
+    for (long i = 1; i <= 10_000; i++) {
+      histogram.record(i * 1000);
+    }
+    var snapshot = histogram.snapshot();
+    assertEquals(10_000, snapshot.getCount());
+    assertEquals(5_000_500.0, snapshot.getMean(), 0.001);
+    assertEquals(10_000_000, snapshot.getMax());
+    assertEquals(5_000_000, snapshot.getValueAtPercentile(50.0), 5_000_000 / 32.0);
+    assertEquals(9_900_000, snapshot.getValueAtPercentile(99.0), 9_900_000 / 32.0);
+    assertEquals(9_990_000, snapshot.getValueAtPercentile(99.9), 9_990_000 / 32.0);
+    assertEquals(10_000_000, snapshot.getValueAtPercentile(100.0));
+    assertEquals(1000, snapshot.getValueAtPercentile(0.0), 1000 / 32.0);
+    assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(-1));
+  }
+}
@@ -0,0 +1,24 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestPriceTable {
+
+  @Test
+  @DisplayName("prices are not set initially and can be updated")
+  public void testPrices() {
+    var prices = new PriceTable();
+    for (var type : GasType.values()) {
+      assertEquals(PriceTable.NOT_SET, prices.get(type), 0.0);
+    }
+    prices.set(GasType.SUPER, 1.5);
+    assertEquals(1.5, prices.get(GasType.SUPER), 0.0);
+    assertEquals(PriceTable.NOT_SET, prices.get(GasType.REGULAR), 0.0);
+    prices.set(GasType.SUPER, 1.25);
+    assertEquals(1.25, prices.get(GasType.SUPER), 0.0);
+  }
+}
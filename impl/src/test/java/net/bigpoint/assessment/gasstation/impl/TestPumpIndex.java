@@ -0,0 +1,169 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestPumpIndex {
+
+  PumpIndex index;
+  GasPumpQueue small;
+  GasPumpQueue large;
+
+  @BeforeEach
+  public void create() {
+    index = new PumpIndex();
+    small = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+    large = new GasPumpQueue(new GasPump(GasType.REGULAR, 20.0), 1, Runnable::run);
+  }
+
+  private void reserve(GasPumpQueue queue, double amount) {
+    assertTrue(queue.tryReserve(amount));
+    index.update(queue);
+  }
+
+  @Test
+  @DisplayName("empty index selects nothing")
+  public void testEmpty() {
+    assertTrue(index.isEmpty());
+    assertNull(index.select(1.0));
+  }
+
+  @Test
+  @DisplayName("selects pump with more fuel when lines are equal")
+  public void testMoreFuel() {
+    index.add(small);
+    index.add(large);
+    assertFalse(index.isEmpty());
+    assertEquals(2, index.queues().size());
+    assertSame(large, index.select(1.0));
+    assertNull(index.select(20.0));
+  }
+
+  @Test
+  @DisplayName("selects pump with shorter line")
+  public void testShorterLine() {
+    index.add(small);
+    index.add(large);
+    reserve(large, 1.0);
+    assertSame(small, index.select(1.0));
+    reserve(small, 1.0);
+    assertSame(large, index.select(1.0));
+  }
+
+  @Test
+  @DisplayName("skips shorter lines without enough fuel")
+  public void testSkipsLines() {
+    index.add(small);
+    index.add(large);
+    reserve(large, 1.0);
+    assertSame(large, index.select(15.0));
+    reserve(large, 1.0);
+    assertSame(large, index.select(15.0));
+    assertNull(index.select(18.0));
+  }
+
+  @Test
+  @DisplayName("follows pumps leaving lines")
+  public void testLeave() {
+    index.add(small);
+    index.add(large);
+    reserve(large, 1.0);
+    assertSame(small, index.select(1.0));
+    large.leave();
+    index.update(large);
+    assertSame(large, index.select(1.0));
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  @DisplayName("skips closed pump and forgets removed one")
+  public void testRemove() {
+    index.add(small);
+    index.add(large);
+    large.close();
+    index.update(large);
+    assertSame(small, index.select(1.0));
+    index.remove(large);
+    index.remove(large);
+    index.update(large);
+    assertEquals(1, index.size());
+    assertEquals(1, index.queues().size());
+    index.remove(small);
+    assertTrue(index.isEmpty());
+    assertNull(index.select(1.0));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("keeps one entry per pump after concurrent updates")
+  public void testConcurrentUpdates() throws Exception {
+    for (int i = 0; i < 16; i++) {
+      index.add(new GasPumpQueue(new GasPump(GasType.REGULAR, 1e9), i, Runnable::run));
+    }
+    var executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      executor.submit(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          var queue = index.select(ThreadLocalRandom.current().nextDouble(10.0));
+          assertNotNull(queue);
+          if (queue.tryReserve(1.0)) {
+            index.update(queue);
+            queue.leave();
+            index.update(queue);
+          }
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(16, index.size());
+    double total = 0.0;
+    for (var queue : index.queues()) {
+      assertEquals(0, queue.length());
+      total += queue.availableAmount();
+    }
+    assertEquals(16, index.idlePumps());
+    assertEquals(total, index.totalAvailableAmount(), 1e-3);
+  }
+
+  @Test
+  @DisplayName("summarizes largest and total amount and idle pumps")
+  public void testSummary() {
+    assertEquals(0.0, index.maxAvailableAmount(), 0.0);
+    assertEquals(0.0, index.totalAvailableAmount(), 0.0);
+    assertEquals(0, index.idlePumps());
+    index.add(small);
+    index.add(large);
+    assertEquals(20.0, index.maxAvailableAmount(), 0.0);
+    assertEquals(30.0, index.totalAvailableAmount(), 0.0);
+    assertEquals(2, index.idlePumps());
+    assertNull(index.select(20.0));
+
+    reserve(large, 15.0);
+    assertEquals(10.0, index.maxAvailableAmount(), 0.0);
+    assertEquals(15.0, index.totalAvailableAmount(), 0.0);
+    assertEquals(1, index.idlePumps());
+    large.leave();
+    index.update(large);
+    assertEquals(2, index.idlePumps());
+
+    small.close();
+    index.update(small);
+    assertEquals(5.0, index.maxAvailableAmount(), 0.0);
+    assertEquals(5.0, index.totalAvailableAmount(), 0.0);
+    index.remove(small);
+    index.remove(large);
+    assertEquals(0.0, index.maxAvailableAmount(), 0.0);
+    assertEquals(0.0, index.totalAvailableAmount(), 0.0);
+    assertEquals(0, index.idlePumps());
+  }
+}
@@ -0,0 +1,46 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestPumpRegistry {
+
+  @Test
+  @DisplayName("publishes new snapshot on every change")
+  public void testSnapshots() {
+    var registry = new PumpRegistry();
+    var empty = registry.snapshot();
+    assertTrue(empty.pumps.isEmpty());
+
+    var pump = new GasPump(GasType.REGULAR, 10.0);
+    var queue = registry.add(pump, Runnable::run);
+    assertSame(pump, queue.gasPump);
+    assertNull(registry.add(pump, Runnable::run));
+    var added = registry.snapshot();
+    assertSame(queue, added.queues.get(pump));
+    assertTrue(added.pumps.contains(pump));
+    assertTrue(empty.pumps.isEmpty());
+    assertThrows(UnsupportedOperationException.class, () -> added.pumps.remove(pump));
+
+    registry.remove(pump);
+    assertTrue(registry.snapshot().pumps.isEmpty());
+    assertTrue(added.pumps.contains(pump));
+    registry.remove(pump);
+  }
+
+  @Test
+  @DisplayName("never reuses ids of removed pumps")
+  public void testIds() {
+    var registry = new PumpRegistry();
+    var first = new GasPump(GasType.REGULAR, 10.0);
+    int firstId = registry.add(first, Runnable::run).id;
+    registry.remove(first);
+    var second = registry.add(new GasPump(GasType.REGULAR, 10.0), Runnable::run);
+    assertNotEquals(firstId, second.id);
+    assertNotEquals(firstId, registry.add(first, Runnable::run).id);
+  }
+}
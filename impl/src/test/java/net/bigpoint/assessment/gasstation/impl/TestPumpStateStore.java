@@ -0,0 +1,113 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestPumpStateStore {
+
+  @Test
+  @DisplayName("selects pump with shorter line, then with more fuel")
+  public void testSelection() {
+    var store = new PumpStateStore();
+    assertEquals(0, store.addPump(GasType.REGULAR, 10.0));
+    assertEquals(1, store.addPump(GasType.REGULAR, 20.0));
+    assertEquals(0, store.addPump(GasType.DIESEL, 5.0));
+    assertEquals(2, store.getNumberOfPumps(GasType.REGULAR));
+    assertEquals(0, store.getNumberOfPumps(GasType.SUPER));
+
+    assertEquals(1, store.reserve(GasType.REGULAR, 4.0, Integer.MAX_VALUE));
+    assertEquals(0, store.reserve(GasType.REGULAR, 4.0, Integer.MAX_VALUE));
+    assertEquals(1, store.reserve(GasType.REGULAR, 4.0, Integer.MAX_VALUE));
+    assertEquals(12.0, store.getAvailableAmount(GasType.REGULAR, 1), 0.0);
+    assertEquals(20.0, store.getRemainingAmount(GasType.REGULAR, 1), 0.0);
+    assertEquals(2, store.getLineLength(GasType.REGULAR, 1));
+
+    // only pump 1 has enough fuel, its line is full
+    assertEquals(PumpStateStore.LINE_FULL, store.reserve(GasType.REGULAR, 7.0, 2));
+    assertEquals(PumpStateStore.NO_FUEL, store.reserve(GasType.REGULAR, 12.0, 10));
+    assertEquals(PumpStateStore.NO_FUEL, store.reserve(GasType.SUPER, 1.0, 10));
+    assertEquals(PumpStateStore.NO_FUEL, store.reserve(GasType.DIESEL, 5.0, 10));
+  }
+
+  @Test
+  @DisplayName("leaving, cancelling and refilling keep fuel consistent")
+  public void testUpdates() {
+    var store = new PumpStateStore();
+    int pump = store.addPump(GasType.SUPER, 10.0);
+    assertEquals(pump, store.reserve(GasType.SUPER, 3.0, Integer.MAX_VALUE));
+    assertEquals(pump, store.reserve(GasType.SUPER, 2.0, Integer.MAX_VALUE));
+    store.leave(GasType.SUPER, pump, 3.0);
+    assertEquals(7.0, store.getRemainingAmount(GasType.SUPER, pump), 0.0);
+    store.cancel(GasType.SUPER, pump, 2.0);
+    assertEquals(7.0, store.getAvailableAmount(GasType.SUPER, pump), 0.0);
+    assertEquals(7.0, store.getRemainingAmount(GasType.SUPER, pump), 0.0);
+    assertEquals(0, store.getLineLength(GasType.SUPER, pump));
+    store.refill(GasType.SUPER, pump, 3.0);
+    assertEquals(10.0, store.getAvailableAmount(GasType.SUPER, pump), 0.0);
+
+    assertThrows(IllegalArgumentException.class, () -> store.leave(GasType.SUPER, 1, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> store.getLineLength(GasType.SUPER, -1));
+    assertThrows(IllegalArgumentException.class, () -> store.addPump(null, 1.0));
+    assertThrows(IllegalArgumentException.class, () -> store.addPump(GasType.SUPER, -1.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> store.reserve(GasType.SUPER, 0.0, Integer.MAX_VALUE));
+    assertThrows(IllegalArgumentException.class, () -> store.refill(GasType.SUPER, pump, 0.0));
+  }
+
+  @Test
+  @DisplayName("only clients in line with reserved fuel leave or cancel")
+  public void testExitValidation() {
+    var store = new PumpStateStore();
+    int pump = store.addPump(GasType.DIESEL, 10.0);
+    assertThrows(IllegalStateException.class, () -> store.leave(GasType.DIESEL, pump, 1.0));
+    assertThrows(IllegalStateException.class, () -> store.cancel(GasType.DIESEL, pump, 1.0));
+    assertEquals(pump, store.reserve(GasType.DIESEL, 0.1, Integer.MAX_VALUE));
+    assertEquals(pump, store.reserve(GasType.DIESEL, 0.2, Integer.MAX_VALUE));
+    assertThrows(IllegalStateException.class, () -> store.leave(GasType.DIESEL, pump, 0.5));
+    assertThrows(IllegalStateException.class, () -> store.cancel(GasType.DIESEL, pump, 0.5));
+    assertThrows(IllegalArgumentException.class, () -> store.leave(GasType.DIESEL, pump, 0.0));
+    assertEquals(2, store.getLineLength(GasType.DIESEL, pump));
+    assertEquals(9.7, store.getAvailableAmount(GasType.DIESEL, pump), 1e-9);
+
+    store.cancel(GasType.DIESEL, pump, 0.1);
+    store.leave(GasType.DIESEL, pump, 0.2);
+    assertEquals(0, store.getLineLength(GasType.DIESEL, pump));
+    assertEquals(store.getAvailableAmount(GasType.DIESEL, pump),
+        store.getRemainingAmount(GasType.DIESEL, pump), 0.0);
+    assertThrows(IllegalStateException.class, () -> store.leave(GasType.DIESEL, pump, 0.1));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("grows to many pumps and serves concurrent clients")
+  public void testManyPumps() throws Exception {
+    var store = new PumpStateStore();
+    int pumps = 10_000;
+    for (int i = 0; i < pumps; i++) {
+      assertEquals(i, store.addPump(GasType.REGULAR, 100.0));
+    }
+    var executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 8; i++) {
+      executor.execute(() -> {
+        for (int j = 0; j < 1000; j++) {
+          int pump = store.reserve(GasType.REGULAR, 1.0, Integer.MAX_VALUE);
+          store.leave(GasType.REGULAR, pump, 1.0);
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    double total = 0.0;
+    for (int i = 0; i < pumps; i++) {
+      assertEquals(0, store.getLineLength(GasType.REGULAR, i));
+      total += store.getRemainingAmount(GasType.REGULAR, i);
+    }
+    assertEquals(100.0 * pumps - 8000.0, total, 1e-6);
+  }
+}
@@ -0,0 +1,154 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestPumpWorker {
+
+  private final List<GasPumpQueue> queues = new ArrayList<>();
+
+  @AfterEach
+  public void close() {
+    queues.forEach(GasPumpQueue::close); // workers stop when their lines are empty
+  }
+
+  private GasPumpQueue queue() {
+    var queue = new GasPumpQueue(new GasPump(GasType.REGULAR, 1_000_000.0), 0, Runnable::run);
+    queues.add(queue);
+    return queue;
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("serves requests of many clients one by one on its own thread")
+  public void testSingleWriter() throws Exception {
+    var queue = queue();
+    var threads = ConcurrentHashMap.<Thread>newKeySet();
+    var serving = new AtomicInteger();
+    var overlaps = new AtomicInteger();
+    var served = new AtomicInteger();
+    var worker = queue.worker((pump, amount, start) -> {
+      if (serving.incrementAndGet() != 1) {
+        overlaps.incrementAndGet();
+      }
+      threads.add(Thread.currentThread());
+      served.incrementAndGet();
+      pump.leave();
+      serving.decrementAndGet();
+    });
+    assertSame(worker, queue.worker((pump, amount, start) -> { }));
+
+    int clients = 4 * PumpWorker.RING_SIZE;
+    var executor = Executors.newFixedThreadPool(16);
+    for (int i = 0; i < clients; i++) {
+      assertTrue(queue.tryReserve(1.0));
+      executor.execute(() -> worker.pump(1.0, 0L));
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(clients, served.get());
+    assertEquals(0, overlaps.get());
+    assertEquals(1, threads.size());
+    assertEquals(0, queue.length());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("skips request cancelled before the worker got to it")
+  public void testDeadline() throws Exception {
+    var queue = queue();
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    List<Double> served = Collections.synchronizedList(new ArrayList<>());
+    var worker = queue.worker((pump, amount, start) -> {
+      pumping.countDown();
+      proceed.join();
+      served.add(amount);
+      pump.leave();
+    });
+    var first = CompletableFuture.runAsync(() -> worker.pump(1.0, 0L));
+    pumping.await();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(20);
+    assertFalse(worker.pump(2.0, 0L, deadline));
+    assertTrue(System.nanoTime() - deadline >= 0);
+    var third = CompletableFuture.supplyAsync(
+        () -> worker.pump(3.0, 0L, System.nanoTime() + TimeUnit.SECONDS.toNanos(10)));
+    proceed.complete(null);
+    first.get();
+    assertTrue(third.get());
+    assertEquals(List.of(1.0, 3.0), served);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("reports failed pumping to the client and keeps serving")
+  public void testFailure() throws Exception {
+    var queue = queue();
+    var worker = queue.worker((pump, amount, start) -> {
+      if (amount < 0.0) {
+        throw new IllegalStateException("pump is broken");
+      }
+    });
+    assertThrows(IllegalStateException.class, () -> worker.pump(-1.0, 0L));
+    var failure = new CompletableFuture<Throwable>();
+    worker.submit(-1.0, 0L, failure::complete);
+    assertEquals("pump is broken", failure.get().getMessage());
+    var success = new CompletableFuture<Throwable>();
+    worker.submit(1.0, 0L, success::complete);
+    assertNull(success.get());
+    worker.pump(1.0, 0L);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("reports errors of pumping to the client and keeps serving")
+  public void testError() throws Exception {
+    var queue = queue();
+    var worker = queue.worker((pump, amount, start) -> {
+      if (amount < 0.0) {
+        throw new AssertionError("pump is broken");
+      }
+    });
+    assertThrows(AssertionError.class, () -> worker.pump(-1.0, 0L));
+    var failure = new CompletableFuture<Throwable>();
+    worker.submit(-1.0, 0L, failure::complete);
+    assertTrue(failure.get() instanceof AssertionError);
+    assertTrue(worker.pump(1.0, 0L, System.nanoTime() + TimeUnit.SECONDS.toNanos(10)));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("stops when the pump is drained")
+  public void testStop() throws Exception {
+    var queue = queue();
+    Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    var worker = queue.worker((pump, amount, start) -> {
+      threads.add(Thread.currentThread());
+      pump.leave();
+    });
+    assertTrue(queue.tryReserve(1.0));
+    worker.pump(1.0, 0L);
+    var thread = threads.iterator().next();
+    assertTrue(thread.isDaemon());
+    assertTrue(thread.isAlive());
+    queue.close();
+    thread.join(5_000);
+    assertFalse(thread.isAlive());
+  }
+}
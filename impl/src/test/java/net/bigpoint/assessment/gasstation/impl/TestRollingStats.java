@@ -0,0 +1,90 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestRollingStats {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  private static long[] sum(RollingStats stats, long now, int windowSeconds) {
+    var totals = new long[RollingStats.TOTALS];
+    stats.sum(now, windowSeconds, totals);
+    return totals;
+  }
+
+  @Test
+  @DisplayName("counts events of the window ending now")
+  public void testWindows() {
+    var stats = new RollingStats();
+    long start = 1000 * MINUTE;
+    stats.addSale(start, 100, 2);
+    stats.addSale(start + 30 * SECOND, 200, 0);
+    stats.addCancellation(start + 30 * SECOND);
+    stats.addSale(start + 4 * MINUTE, 300, 1);
+
+    long now = start + 4 * MINUTE + SECOND;
+    var minute = sum(stats, now, 60);
+    assertEquals(1, minute[RollingStats.SALES]);
+    assertEquals(300, minute[RollingStats.REVENUE]);
+    assertEquals(0, minute[RollingStats.CANCELLATIONS]);
+    assertEquals(1, minute[RollingStats.LINE_SUM]);
+
+    var fiveMinutes = sum(stats, now, 300);
+    assertEquals(3, fiveMinutes[RollingStats.SALES]);
+    assertEquals(600, fiveMinutes[RollingStats.REVENUE]);
+    assertEquals(1, fiveMinutes[RollingStats.CANCELLATIONS]);
+    assertEquals(3, fiveMinutes[RollingStats.LINE_SUM]);
+    assertEquals(3, fiveMinutes[RollingStats.LINE_SAMPLES]);
+
+    // the first two sales leave the seconds ring but stay in the hour
+    now = start + 6 * MINUTE;
+    assertEquals(1, sum(stats, now, 300)[RollingStats.SALES]);
+    assertEquals(3, sum(stats, now, 3600)[RollingStats.SALES]);
+    assertEquals(0, sum(stats, start + 65 * MINUTE, 3600)[RollingStats.SALES]);
+  }
+
+  @Test
+  @DisplayName("reuses buckets when time goes around the ring")
+  public void testRotation() {
+    var stats = new RollingStats();
+    for (int second = 0; second < 3 * RollingStats.SECONDS; second++) {
+      stats.addSale(second * SECOND, 1, 0);
+    }
+    long now = (3 * RollingStats.SECONDS - 1) * SECOND;
+    assertEquals(60, sum(stats, now, 60)[RollingStats.SALES]);
+    assertEquals(RollingStats.SECONDS, sum(stats, now, 300)[RollingStats.SALES]);
+    // late event of a replaced bucket is dropped
+    stats.addSale(0, 1, 0);
+    assertEquals(RollingStats.SECONDS, sum(stats, now, 300)[RollingStats.SALES]);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("counts concurrent events exactly")
+  public void testConcurrentUpdates() throws Exception {
+    var stats = new RollingStats();
+    var executor = Executors.newFixedThreadPool(4);
+    for (int t = 0; t < 4; t++) {
+      executor.execute(() -> {
+        for (int i = 0; i < 10_000; i++) {
+          long now = (i / 100) * SECOND; // 100 seconds
+          stats.addSale(now, 5, 1);
+          stats.addCancellation(now);
+        }
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    var totals = sum(stats, 99 * SECOND, 300);
+    assertEquals(40_000, totals[RollingStats.SALES]);
+    assertEquals(200_000, totals[RollingStats.REVENUE]);
+    assertEquals(40_000, totals[RollingStats.CANCELLATIONS]);
+  }
+}
@@ -0,0 +1,306 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestSalesEventPublisher {
+
+  /**
+   * Copies delivered events, requests nothing by itself.
+   */
+  static final class Recorder implements Flow.Subscriber<SalesEvents> {
+    Flow.Subscription subscription;
+    final List<Integer> batches = new ArrayList<>();
+    final List<Integer> outcomes = new ArrayList<>();
+    final List<Integer> counts = new ArrayList<>();
+    final List<Double> amounts = new ArrayList<>();
+    final List<Integer> pumpIds = new ArrayList<>();
+    double cost;
+    Throwable error;
+    boolean completed;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(SalesEvents events) {
+      batches.add(events.size());
+      for (int i = 0; i < events.size(); i++) {
+        outcomes.add(events.getOutcome(i));
+        counts.add(events.getCount(i));
+        amounts.add(events.getAmountInLiters(i));
+        pumpIds.add(events.getPumpId(i));
+        cost += events.getCost(i);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  /**
+   * Runs deliveries only when asked.
+   */
+  static final class ManualExecutor implements Executor {
+    final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.add(task);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.poll().run();
+      }
+    }
+  }
+
+  private static void publishSales(SalesEventPublisher publisher, int count) {
+    for (int i = 0; i < count; i++) {
+      publisher.publish(Outcome.SOLD, GasType.DIESEL, 7, 1.0, 2.0);
+    }
+  }
+
+  @Test
+  @DisplayName("streams sales and cancellations of the station")
+  public void testStation() throws Exception {
+    var station = new FastGasStation((pump, amount) -> { }, Runnable::run);
+    var publisher = new SalesEventPublisher(Runnable::run, 16, OverflowPolicy.DROP, 8);
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    recorder.subscription.request(Long.MAX_VALUE);
+    station.setEventPublisher(publisher);
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    station.setPrice(GasType.REGULAR, 2.0);
+
+    assertEquals(8.0, station.buyGas(GasType.REGULAR, 4.0, 2.0), 0.0);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 7.0, 2.0));
+    assertThrows(GasTooExpensiveException.class,
+        () -> station.buyGas(GasType.REGULAR, 1.0, 1.0));
+    station.setEventPublisher(null);
+    station.buyGas(GasType.REGULAR, 1.0, 2.0);
+
+    assertEquals(List.of(Outcome.SOLD, Outcome.NOT_ENOUGH_GAS, Outcome.TOO_EXPENSIVE),
+        recorder.outcomes);
+    assertEquals(List.of(4.0, 7.0, 1.0), recorder.amounts);
+    assertEquals(List.of(0, -1, -1), recorder.pumpIds);
+    assertEquals(8.0, recorder.cost, 0.0);
+    assertEquals(1, publisher.getNumberOfSubscribers());
+    publisher.close();
+    assertTrue(recorder.completed);
+    assertEquals(0, publisher.getNumberOfSubscribers());
+  }
+
+  @Test
+  @DisplayName("delivers batches only as requested")
+  public void testBatches() {
+    var executor = new ManualExecutor();
+    var publisher = new SalesEventPublisher(executor, 16, OverflowPolicy.DROP, 4);
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    publishSales(publisher, 10);
+    executor.runAll();
+    assertTrue(recorder.batches.isEmpty());
+
+    recorder.subscription.request(2);
+    executor.runAll();
+    assertEquals(List.of(4, 4), recorder.batches);
+    recorder.subscription.request(5);
+    executor.runAll();
+    assertEquals(List.of(4, 4, 2), recorder.batches);
+    publishSales(publisher, 1);
+    executor.runAll();
+    assertEquals(List.of(4, 4, 2, 1), recorder.batches);
+    assertEquals(0, publisher.getDroppedEvents());
+  }
+
+  @Test
+  @DisplayName("drops events of slow subscriber only")
+  public void testDrop() {
+    var executor = new ManualExecutor();
+    var publisher = new SalesEventPublisher(executor, 4, OverflowPolicy.DROP, 16);
+    var slow = new Recorder();
+    var fast = new Recorder();
+    publisher.subscribe(slow);
+    publisher.subscribe(fast);
+    fast.subscription.request(Long.MAX_VALUE);
+    for (int i = 0; i < 10; i++) {
+      publishSales(publisher, 1);
+      executor.runAll();
+    }
+    assertEquals(6, publisher.getDroppedEvents());
+    assertEquals(10, fast.outcomes.size());
+    slow.subscription.request(1);
+    executor.runAll();
+    assertEquals(List.of(4), slow.batches);
+  }
+
+  @Test
+  @DisplayName("coalesces overflowing events into running totals")
+  public void testCoalesce() {
+    var executor = new ManualExecutor();
+    var publisher = new SalesEventPublisher(executor, 2, OverflowPolicy.COALESCE, 16);
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    publishSales(publisher, 5);
+    publisher.publish(Outcome.LINE_FULL, GasType.SUPER, -1, 3.0, 0.0);
+    recorder.subscription.request(1);
+    executor.runAll();
+    assertEquals(List.of(4), recorder.batches);
+    assertEquals(List.of(Outcome.SOLD, Outcome.SOLD, Outcome.SOLD, Outcome.LINE_FULL),
+        recorder.outcomes);
+    assertEquals(List.of(1, 1, 3, 1), recorder.counts);
+    assertEquals(List.of(1.0, 1.0, 3.0, 3.0), recorder.amounts);
+    assertEquals(10.0, recorder.cost, 0.0);
+    assertEquals(0, publisher.getDroppedEvents());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("coalesces events of concurrent publishers into consistent sums")
+  public void testCoalesceConcurrent() throws Exception {
+    var executor = Executors.newSingleThreadExecutor();
+    var publisher = new SalesEventPublisher(executor, 2, OverflowPolicy.COALESCE, 4);
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    recorder.subscription.request(Long.MAX_VALUE);
+    var producers = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 0; i < 4; i++) {
+      producers.add(CompletableFuture.runAsync(() -> publishSales(publisher, 10_000)));
+    }
+    CompletableFuture.allOf(producers.toArray(new CompletableFuture[0])).get();
+    publisher.close();
+    while (publisher.getNumberOfSubscribers() > 0) {
+      Thread.sleep(1);
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(recorder.completed);
+    int total = 0;
+    for (int i = 0; i < recorder.counts.size(); i++) {
+      int count = recorder.counts.get(i);
+      assertEquals(count, recorder.amounts.get(i), 0.0);
+      total += count;
+    }
+    assertEquals(40_000, total);
+    assertEquals(80_000.0, recorder.cost, 0.0);
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("blocks publisher until subscriber makes room")
+  public void testBlock() throws Exception {
+    var publisher = new SalesEventPublisher(Runnable::run, 2, OverflowPolicy.BLOCK, 16);
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    var published = CompletableFuture.runAsync(() -> publishSales(publisher, 3));
+    Thread.sleep(50);
+    assertFalse(published.isDone());
+    recorder.subscription.request(Long.MAX_VALUE);
+    published.get();
+    assertEquals(3, recorder.outcomes.size());
+  }
+
+  @Test
+  @DisplayName("completes after buffered events and rejects invalid requests")
+  public void testCompleteAndErrors() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new SalesEventPublisher(Runnable::run, 3, OverflowPolicy.DROP, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SalesEventPublisher(Runnable::run, 4, null, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SalesEventPublisher(Runnable::run, 4, OverflowPolicy.DROP, 0));
+    var executor = new ManualExecutor();
+    var publisher = new SalesEventPublisher(executor, 4, OverflowPolicy.DROP, 16);
+    assertThrows(NullPointerException.class, () -> publisher.subscribe(null));
+    var recorder = new Recorder();
+    publisher.subscribe(recorder);
+    publishSales(publisher, 2);
+    publisher.close();
+    executor.runAll();
+    assertFalse(recorder.completed);
+    recorder.subscription.request(1);
+    executor.runAll();
+    assertEquals(2, recorder.outcomes.size());
+    assertTrue(recorder.completed);
+
+    var late = new Recorder();
+    publisher.subscribe(late);
+    executor.runAll();
+    assertTrue(late.completed);
+
+    var invalid = new Recorder();
+    var open = new SalesEventPublisher(executor, 4, OverflowPolicy.DROP, 16);
+    open.subscribe(invalid);
+    invalid.subscription.request(0);
+    assertNull(invalid.error);
+    executor.runAll();
+    assertTrue(invalid.error instanceof IllegalArgumentException);
+    assertEquals(0, open.getNumberOfSubscribers());
+  }
+
+  @Test
+  @DisplayName("delivers error of an invalid request after the current batch")
+  public void testRequestErrorSerialized() {
+    var executor = new ManualExecutor();
+    var publisher = new SalesEventPublisher(executor, 4, OverflowPolicy.DROP, 1);
+    var signals = new ArrayList<String>();
+    var subscription = new CompletableFuture<Flow.Subscription>();
+    publisher.subscribe(new Flow.Subscriber<SalesEvents>() {
+      @Override
+      public void onSubscribe(Flow.Subscription s) {
+        subscription.complete(s);
+      }
+
+      @Override
+      public void onNext(SalesEvents events) {
+        signals.add("next");
+        subscription.join().request(-1); // invalid request inside onNext
+        signals.add("returned");
+      }
+
+      @Override
+      public void onError(Throwable throwable) {
+        signals.add("error");
+      }
+
+      @Override
+      public void onComplete() {
+        signals.add("complete");
+      }
+    });
+    publishSales(publisher, 3);
+    subscription.join().request(2);
+    executor.runAll();
+    assertEquals(List.of("next", "returned", "error"), signals);
+    assertEquals(0, publisher.getNumberOfSubscribers());
+    publisher.close();
+    executor.runAll();
+    assertEquals(3, signals.size());
+  }
+}
@@ -0,0 +1,83 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestSerialExecutor {
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("runs tasks one at a time in submission order")
+  public void testSerialOrder() throws Exception {
+    var pool = Executors.newFixedThreadPool(4);
+    var executor = new SerialExecutor(pool);
+    List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+    var running = new AtomicInteger();
+    var done = new CountDownLatch(1000);
+    for (int i = 0; i < 1000; i++) {
+      int task = i;
+      executor.execute(() -> {
+        assertEquals(1, running.incrementAndGet());
+        order.add(task);
+        running.decrementAndGet();
+        done.countDown();
+      });
+    }
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    pool.shutdown();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, (int) order.get(i));
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("runs tasks after a failing task")
+  public void testFailingTask() throws Exception {
+    Executor direct = task -> {
+      try {
+        task.run();
+      } catch (IllegalStateException e) {
+        // reported by the thread of a real executor
+      }
+    };
+    var executor = new SerialExecutor(direct);
+    var done = new AtomicInteger();
+    executor.execute(() -> {
+      throw new IllegalStateException("failed");
+    });
+    executor.execute(done::incrementAndGet);
+    executor.execute(done::incrementAndGet);
+    assertEquals(2, done.get());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("does not run rejected task and accepts tasks after rejection")
+  public void testRejection() throws Exception {
+    var reject = new AtomicInteger(1);
+    Executor executor = task -> {
+      if (reject.getAndDecrement() > 0) {
+        throw new RejectedExecutionException("shut down");
+      }
+      task.run();
+    };
+    var serial = new SerialExecutor(executor);
+    var done = new AtomicInteger();
+    assertThrows(RejectedExecutionException.class, () -> serial.execute(() -> done.addAndGet(10)));
+    serial.execute(done::incrementAndGet);
+    assertEquals(1, done.get());
+  }
+}
@@ -0,0 +1,134 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestStationSimulation {
+
+  private static final long MILLIS = 1_000_000L;
+
+  private FastGasStation station(int pumps, double amount) {
+    var station = new FastGasStation();
+    for (int i = 0; i < pumps; i++) {
+      for (var type : GasType.values()) {
+        station.addGasPump(new GasPump(type, amount));
+      }
+    }
+    for (var type : GasType.values()) {
+      station.setPrice(type, 1.0);
+    }
+    return station;
+  }
+
+  @Test
+  @DisplayName("simulation needs station and pumping time")
+  public void testConstructor() {
+    assertThrows(IllegalArgumentException.class, () -> new StationSimulation(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new StationSimulation(new FastGasStation(), 0));
+    var simulation = new StationSimulation(new FastGasStation());
+    assertThrows(IllegalArgumentException.class,
+        () -> simulation.schedule(0, GasType.DIESEL, 0.0, 1.0));
+    simulation.run(10);
+    assertEquals(10, simulation.now());
+    assertThrows(IllegalArgumentException.class,
+        () -> simulation.schedule(5, GasType.DIESEL, 1.0, 1.0));
+  }
+
+  @Test
+  @DisplayName("clients of two pumps pump at the same time, third one waits")
+  public void testLines() {
+    var station = new FastGasStation();
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    station.setPrice(GasType.REGULAR, 0.8);
+    var simulation = new StationSimulation(station);
+    simulation.schedule(0, GasType.REGULAR, 1.0, 1.0);
+    simulation.schedule(0, GasType.REGULAR, 1.0, 1.0);
+    simulation.schedule(50 * MILLIS, GasType.REGULAR, 2.0, 1.0);
+    simulation.schedule(60 * MILLIS, GasType.REGULAR, 1.0, 0.5);
+
+    assertEquals(100 * MILLIS, simulation.run(100 * MILLIS));
+    assertEquals(0, station.getNumberOfSales());
+    assertEquals(1, station.getNumberOfCancellationsTooExpensive());
+    // first two sales finish exactly at 100 ms
+    assertEquals(100 * MILLIS + 1, simulation.run(100 * MILLIS + 1));
+    assertEquals(2, station.getNumberOfSales());
+    assertEquals(1.6, station.getRevenue(), 0.001);
+
+    assertEquals(300 * MILLIS, simulation.run());
+    assertEquals(3, station.getNumberOfSales());
+    assertEquals(4, simulation.getClients());
+    assertEquals(0, simulation.getPendingEvents());
+    var wait = simulation.getQueueWait();
+    assertEquals(3, wait.getCount());
+    assertEquals(50 * MILLIS, wait.getMax());
+  }
+
+  @Test
+  @DisplayName("cancels clients when pumps have not enough fuel left for them")
+  public void testNotEnoughGas() {
+    var station = station(1, 3.0);
+    var simulation = new StationSimulation(station, MILLIS);
+    simulation.schedule(0, GasType.DIESEL, 2.0, 1.0);
+    simulation.schedule(1, GasType.DIESEL, 2.0, 1.0);
+    simulation.run();
+    assertEquals(1, station.getNumberOfSales());
+    assertEquals(1, station.getNumberOfCancellationsNoGas());
+    assertEquals(2 * MILLIS, simulation.now());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("same seed gives the same day of traffic")
+  public void testDeterministic() {
+    StatsSnapshot first = null;
+    long firstWait = 0;
+    for (int run = 0; run < 2; run++) {
+      var station = station(100, 1e6);
+      var simulation = new StationSimulation(station);
+      long day = TimeUnit.DAYS.toNanos(1);
+      long clients = simulation.scheduleRandomTraffic(
+          new SplittableRandom(42), 5.0, day, 40.0, 1.0);
+      assertTrue(clients > 400_000);
+      simulation.run();
+      var stats = station.getStats();
+      assertEquals(clients, stats.getNumberOfSales());
+      long wait = simulation.getQueueWait().getValueAtPercentile(99.0);
+      if (first == null) {
+        first = stats;
+        firstWait = wait;
+      } else {
+        assertEquals(first.getRevenue(), stats.getRevenue(), 0.0);
+        assertEquals(firstWait, wait);
+      }
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("schedules workload requests from the current virtual time")
+  public void testWorkload() throws Exception {
+    var station = station(1, 100.0);
+    var simulation = new StationSimulation(station);
+    simulation.run(10 * MILLIS);
+    var mix = Map.of(GasType.REGULAR, 1.0);
+    long clients = simulation.schedule(new WorkloadGenerator(3, 10.0,
+        TimeUnit.SECONDS.toNanos(60), 5.0, mix, 0.5, 1.5));
+    assertTrue(clients > 400);
+    assertThrows(IllegalArgumentException.class, () -> simulation.schedule(null));
+    simulation.run();
+    assertEquals(clients, simulation.getClients());
+    assertEquals(clients, station.getNumberOfSales() + station.getNumberOfCancellationsNoGas()
+        + station.getNumberOfCancellationsTooExpensive());
+    assertTrue(station.getNumberOfCancellationsNoGas() > 0);
+  }
+}
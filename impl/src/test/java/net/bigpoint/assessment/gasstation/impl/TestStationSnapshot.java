@@ -0,0 +1,149 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestStationSnapshot {
+
+  Path directory;
+  Path file;
+
+  @BeforeEach
+  public void create() throws Exception {
+    directory = Files.createTempDirectory("gas-snapshot");
+    file = directory.resolve("station.snapshot");
+  }
+
+  @AfterEach
+  public void delete() throws Exception {
+    try (var files = Files.walk(directory)) {
+      files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private FastGasStation station() {
+    return new FastGasStation((pump, amount) -> { }, Runnable::run);
+  }
+
+  @Test
+  @DisplayName("encodes and decodes all fields")
+  public void testEncode() throws Exception {
+    var snapshot = new StationSnapshot(1, 2_000_000, 3, 4, 5, 6, new double[] {1.0, 0.0, 2.5},
+        new int[] {7, 9}, new GasType[] {GasType.DIESEL, GasType.SUPER}, new double[] {5.0, 0.5});
+    var decoded = StationSnapshot.decode(snapshot.encode());
+    assertEquals(1, decoded.sales);
+    assertEquals(2_000_000, decoded.revenueUnits);
+    assertEquals(3, decoded.cancelNotEnough);
+    assertEquals(4, decoded.cancelTooExpensive);
+    assertEquals(5, decoded.cancelLineFull);
+    assertEquals(6, decoded.cancelTimedOut);
+    assertArrayEquals(new double[] {1.0, 0.0, 2.5}, decoded.prices);
+    assertArrayEquals(new int[] {7, 9}, decoded.ids);
+    assertArrayEquals(new GasType[] {GasType.DIESEL, GasType.SUPER}, decoded.types);
+    assertArrayEquals(new double[] {5.0, 0.5}, decoded.amounts);
+  }
+
+  @Test
+  @DisplayName("decodes snapshot of version 1 without admission counters")
+  public void testVersion1() throws Exception {
+    var buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(0x47534E50).putInt(1).putLong(1).putLong(2).putLong(3).putLong(4);
+    buffer.putInt(GasType.values().length);
+    for (int i = 0; i < GasType.values().length; i++) {
+      buffer.putDouble(1.5);
+    }
+    buffer.putInt(1).putInt(8).put((byte) GasType.SUPER.ordinal()).putDouble(9.0);
+    var decoded = StationSnapshot.decode(buffer.flip());
+    assertEquals(4, decoded.cancelTooExpensive);
+    assertEquals(0, decoded.cancelLineFull);
+    assertEquals(0, decoded.cancelTimedOut);
+    assertArrayEquals(new int[] {8}, decoded.ids);
+    assertArrayEquals(new double[] {9.0}, decoded.amounts);
+    buffer.putInt(4, 3).rewind();
+    assertThrows(IOException.class, () -> StationSnapshot.decode(buffer));
+  }
+
+  @Test
+  @DisplayName("rejects corrupted snapshot")
+  public void testCorrupted() throws Exception {
+    assertThrows(IOException.class, () -> StationSnapshot.decode(ByteBuffer.allocate(8)));
+    assertThrows(IOException.class, () -> StationSnapshot.decode(ByteBuffer.allocate(2)));
+    var snapshot = new StationSnapshot(0, 0, 0, 0, 0, 0, new double[GasType.values().length],
+        new int[] {1}, new GasType[] {GasType.DIESEL}, new double[] {1.0});
+    var buffer = snapshot.encode();
+    var truncated = ByteBuffer.allocate(buffer.remaining() - 1);
+    truncated.put(buffer.limit(buffer.limit() - 1)).flip();
+    assertThrows(IOException.class, () -> StationSnapshot.decode(truncated));
+  }
+
+  @Test
+  @DisplayName("restores prices, pumps and statistics of the station")
+  public void testWriteAndLoad() throws Exception {
+    var station = station();
+    var removed = new GasPump(GasType.SUPER, 100.0);
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    station.addGasPump(new GasPump(GasType.DIESEL, 20.0));
+    station.addGasPump(removed);
+    station.setPrice(GasType.REGULAR, 2.0);
+    station.setPrice(GasType.DIESEL, 3.0);
+    assertEquals(8.0, station.buyGas(GasType.REGULAR, 4.0, 2.0), 0.0);
+    assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 7.0, 2.0));
+    assertThrows(GasTooExpensiveException.class, () -> station.buyGas(GasType.DIESEL, 1.0, 2.0));
+    assertTrue(station.removeGasPump(removed).get());
+    station.writeSnapshot(file).get();
+    assertFalse(Files.exists(directory.resolve("station.snapshot.tmp")));
+
+    var restored = station();
+    restored.loadSnapshot(file);
+    assertEquals(2, restored.getGasPumps().size());
+    assertEquals(2.0, restored.getPrice(GasType.REGULAR), 0.0);
+    assertEquals(3.0, restored.getPrice(GasType.DIESEL), 0.0);
+    assertThrows(IllegalStateException.class, () -> restored.getPrice(GasType.SUPER));
+    assertEquals(1, restored.getNumberOfSales());
+    assertEquals(8.0, restored.getRevenue(), 0.0);
+    assertEquals(1, restored.getNumberOfCancellationsNoGas());
+    assertEquals(1, restored.getNumberOfCancellationsTooExpensive());
+    for (var pump : restored.getGasPumps()) {
+      assertEquals(pump.getGasType() == GasType.REGULAR ? 6.0 : 20.0,
+          pump.getRemainingAmount(), 0.0);
+    }
+    assertThrows(NotEnoughGasException.class, () -> restored.buyGas(GasType.REGULAR, 6.0, 2.0));
+    assertEquals(15.0, restored.buyGas(GasType.DIESEL, 5.0, 3.0), 0.0);
+
+    assertThrows(IllegalStateException.class, () -> restored.loadSnapshot(file));
+    assertThrows(IllegalArgumentException.class, () -> restored.writeSnapshot(null));
+    assertThrows(IllegalArgumentException.class, () -> restored.loadSnapshot(null));
+  }
+
+  @Test
+  @DisplayName("new pumps do not reuse restored ids")
+  public void testIdsAfterLoad() throws Exception {
+    var station = station();
+    for (int i = 0; i < 3; i++) {
+      station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    }
+    station.writeSnapshot(file).get();
+    var restored = station();
+    restored.loadSnapshot(file);
+    restored.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    var ids = new HashSet<Integer>();
+    for (var pump : restored.getMetrics().getPumps()) {
+      assertTrue(ids.add(pump.getId()));
+    }
+    assertEquals(4, ids.size());
+  }
+}
@@ -0,0 +1,79 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestStationStats {
+
+  StationStats stats;
+
+  @BeforeEach
+  public void create() {
+    stats = new StationStats();
+  }
+
+  @Test
+  @DisplayName("stats is clear")
+  public void testEmpty() {
+    var snapshot = stats.snapshot();
+    assertEquals(0, snapshot.getNumberOfSales());
+    assertEquals(0.0, snapshot.getRevenue(), 0.0);
+    assertEquals(0, snapshot.getNumberOfCancellationsNoGas());
+    assertEquals(0, snapshot.getNumberOfCancellationsTooExpensive());
+    assertEquals(0, stats.sales());
+    assertEquals(0.0, stats.revenue(), 0.0);
+  }
+
+  @Test
+  @DisplayName("counters are summed")
+  public void testCounters() {
+    stats.addSale(0.1);
+    stats.addSale(0.2);
+    stats.addCancelNotEnough();
+    stats.addCancelTooExpensive();
+    stats.addCancelTooExpensive();
+    assertEquals(2, stats.sales());
+    assertEquals(0.3, stats.revenue(), 0.0);
+    assertEquals(1, stats.cancelNotEnough());
+    assertEquals(2, stats.cancelTooExpensive());
+
+    var snapshot = stats.snapshot();
+    assertEquals(2, snapshot.getNumberOfSales());
+    assertEquals(0.3, snapshot.getRevenue(), 0.0);
+    assertEquals(1, snapshot.getNumberOfCancellationsNoGas());
+    assertEquals(2, snapshot.getNumberOfCancellationsTooExpensive());
+    assertTrue(snapshot.toString().contains("sales=2"));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("snapshot is consistent under concurrent updates")
+  public void testConcurrentSnapshot() throws Exception {
+    int threads = 4;
+    int sales = 100_000;
+    var executor = Executors.newFixedThreadPool(threads);
+    var done = new AtomicBoolean();
+    for (int t = 0; t < threads; t++) {
+      executor.submit(() -> {
+        for (int i = 0; i < sales; i++) {
+          stats.addSale(0.5);
+        }
+      });
+    }
+    executor.shutdown();
+    while (!done.get()) {
+      done.set(executor.isTerminated());
+      var snapshot = stats.snapshot();
+      assertEquals(snapshot.getNumberOfSales() * 0.5, snapshot.getRevenue(), 0.0);
+    }
+    assertEquals(threads * sales, stats.sales());
+    assertEquals(threads * sales * 0.5, stats.revenue(), 0.0);
+  }
+}
@@ -0,0 +1,128 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestStealingDispatcher {
+
+  PumpIndex index;
+  GasPumpQueue busy;
+  GasPumpQueue idle;
+  StealingDispatcher dispatcher;
+
+  @BeforeEach
+  public void create() {
+    Map<GasType, PumpIndex> indexes = new EnumMap<>(GasType.class);
+    index = new PumpIndex();
+    indexes.put(GasType.REGULAR, index);
+    busy = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+    idle = new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 1, Runnable::run);
+    index.add(busy);
+    index.add(idle);
+    dispatcher = new StealingDispatcher(indexes);
+  }
+
+  /** Reserves fuel at the queue and starts client waiting for a pump. */
+  private CompletableFuture<GasPumpQueue> client(GasPumpQueue queue, double amount) {
+    assertTrue(queue.tryReserve(amount));
+    index.update(queue);
+    var client = CompletableFuture.supplyAsync(() -> dispatcher.acquire(queue, amount));
+    while (queue.waiters.isEmpty()) {
+      Thread.yield();
+    }
+    return client;
+  }
+
+  @Test
+  @DisplayName("idle pump is acquired without waiting")
+  public void testIdle() {
+    assertTrue(busy.tryReserve(1.0));
+    assertSame(busy, dispatcher.acquire(busy, 1.0));
+    assertTrue(busy.busy.get());
+    busy.leave();
+    dispatcher.release(busy);
+    assertFalse(busy.busy.get());
+  }
+
+  @Test
+  @Timeout(value = 5, unit = TimeUnit.SECONDS)
+  @DisplayName("pump with empty line takes client from other line")
+  public void testSteal() throws Exception {
+    assertTrue(busy.tryReserve(1.0));
+    assertSame(busy, dispatcher.acquire(busy, 1.0));
+    assertTrue(idle.tryReserve(1.0));
+    assertSame(idle, dispatcher.acquire(idle, 1.0));
+    var client = client(busy, 3.0);
+    assertEquals(2, busy.length());
+    assertEquals(6.0, busy.availableAmount(), 0.001);
+
+    idle.leave();
+    dispatcher.release(idle);
+    assertSame(idle, client.get());
+    assertEquals(1, busy.length());
+    assertEquals(9.0, busy.availableAmount(), 0.001);
+    assertEquals(1, idle.length());
+    assertEquals(6.0, idle.availableAmount(), 0.001);
+    assertTrue(idle.busy.get());
+  }
+
+  @Test
+  @Timeout(value = 5, unit = TimeUnit.SECONDS)
+  @DisplayName("pump without enough fuel leaves client in its line")
+  public void testNoStealWithoutFuel() throws Exception {
+    assertTrue(busy.tryReserve(1.0));
+    assertSame(busy, dispatcher.acquire(busy, 1.0));
+    assertTrue(idle.tryReserve(8.0));
+    assertSame(idle, dispatcher.acquire(idle, 8.0));
+    var client = client(busy, 5.0);
+
+    idle.leave();
+    dispatcher.release(idle);
+    assertFalse(idle.busy.get());
+    assertFalse(client.isDone());
+
+    busy.leave();
+    dispatcher.release(busy);
+    assertSame(busy, client.get());
+    assertEquals(1, busy.length());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("every client gets a pump under contention")
+  public void testConcurrent() throws Exception {
+    var big = new GasPumpQueue(new GasPump(GasType.REGULAR, 1e6), 2, Runnable::run);
+    var other = new GasPumpQueue(new GasPump(GasType.REGULAR, 1e6), 3, Runnable::run);
+    index.add(big);
+    index.add(other);
+    var clients = new CompletableFuture<?>[200];
+    for (int i = 0; i < clients.length; i++) {
+      var queue = i % 4 == 0 ? other : big;
+      clients[i] = CompletableFuture.runAsync(() -> {
+        assertTrue(queue.tryReserve(1.0));
+        index.update(queue);
+        var serving = dispatcher.acquire(queue, 1.0);
+        Thread.yield();
+        serving.leave();
+        index.update(serving);
+        dispatcher.release(serving);
+      });
+    }
+    CompletableFuture.allOf(clients).get();
+    assertEquals(0, big.length());
+    assertEquals(0, other.length());
+    assertEquals(2e6 - 200, big.availableAmount() + other.availableAmount(), 0.001);
+    assertFalse(big.busy.get());
+    assertFalse(other.busy.get());
+  }
+}
@@ -0,0 +1,199 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestTransactionJournal {
+
+  Path directory;
+
+  @BeforeEach
+  public void create() throws Exception {
+    directory = Files.createTempDirectory("gas-journal");
+  }
+
+  @AfterEach
+  public void delete() throws Exception {
+    try (var files = Files.walk(directory)) {
+      files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private FastGasStation station(TransactionJournal journal) {
+    var station = new FastGasStation((pump, amount) -> { }, Runnable::run,
+        DispatchMode.LINES, journal);
+    station.setPrice(GasType.REGULAR, 2.0);
+    return station;
+  }
+
+  @Test
+  @DisplayName("journal needs directory, segment and commit interval")
+  public void testOpenFails() {
+    assertThrows(IllegalArgumentException.class, () -> TransactionJournal.open(null));
+    assertThrows(IllegalArgumentException.class,
+        () -> TransactionJournal.open(directory, TransactionJournal.RECORD_SIZE - 1, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> TransactionJournal.open(directory, 1024, 0));
+  }
+
+  @Test
+  @DisplayName("replays records written before restart")
+  public void testReplay() throws Exception {
+    try (var journal = TransactionJournal.open(directory, 64, 1)) {
+      assertEquals(0, journal.size());
+      journal.append(TransactionJournal.PUMP_ADDED, GasType.REGULAR, 0, 10.0, 0.0);
+      journal.append(TransactionJournal.PUMP_ADDED, GasType.DIESEL, 1, 20.0, 0.0);
+      journal.append(TransactionJournal.SALE, GasType.REGULAR, 0, 3.0, 6.0);
+      journal.append(TransactionJournal.CANCEL_NOT_ENOUGH, GasType.REGULAR, -1, 30.0, 0.0);
+      journal.append(TransactionJournal.CANCEL_TOO_EXPENSIVE, null, -1, 1.0, 0.0);
+      journal.append(TransactionJournal.PUMP_REMOVED, GasType.DIESEL, 1, 0.0, 0.0);
+      journal.append(TransactionJournal.CANCEL_LINE_FULL, GasType.REGULAR, -1, 1.0, 0.0);
+      journal.append(TransactionJournal.CANCEL_TIMED_OUT, GasType.REGULAR, -1, 1.0, 0.0);
+      journal.append(TransactionJournal.REFILL, GasType.REGULAR, 0, 5.0, 0.0);
+      assertEquals(9, journal.size());
+    }
+    try (var journal = TransactionJournal.open(directory, 64, 1)) {
+      var state = journal.getRecoveredState();
+      assertEquals(9, state.records());
+      assertEquals(9, journal.size());
+      assertEquals(1, state.getNumberOfPumps());
+      var pump = state.pumps().iterator().next();
+      assertEquals(0, pump.id);
+      assertEquals(GasType.REGULAR, pump.type);
+      assertEquals(12.0, pump.remainingAmount, 0.0);
+      var stats = state.getStats();
+      assertEquals(1, stats.getNumberOfSales());
+      assertEquals(6.0, stats.getRevenue(), 0.0);
+      assertEquals(1, stats.getNumberOfCancellationsNoGas());
+      assertEquals(1, stats.getNumberOfCancellationsTooExpensive());
+      assertEquals(1, stats.getNumberOfCancellationsLineFull());
+      assertEquals(1, stats.getNumberOfCancellationsTimedOut());
+      // appends continue after replayed records
+      journal.append(TransactionJournal.SALE, GasType.REGULAR, 0, 1.0, 2.0);
+    }
+    try (var journal = TransactionJournal.open(directory, 64, 1)) {
+      assertEquals(10, journal.getRecoveredState().records());
+      assertEquals(2, journal.getRecoveredState().getStats().getNumberOfSales());
+    }
+  }
+
+  @Test
+  @DisplayName("drops records appended after close without failing the station")
+  public void testAppendAfterClose() throws Exception {
+    var journal = TransactionJournal.open(directory, 64, 1);
+    var station = station(journal);
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    journal.close();
+    assertEquals(4.0, station.buyGas(GasType.REGULAR, 2.0, 2.0), 0.0);
+    assertThrows(GasTooExpensiveException.class, () -> station.buyGas(GasType.REGULAR, 1.0, 1.0));
+    assertEquals(1, station.getNumberOfSales());
+    assertEquals(1, station.getNumberOfCancellationsTooExpensive());
+    assertEquals(1, journal.size());
+    assertEquals(2, journal.getDroppedRecords());
+    try (var reopened = TransactionJournal.open(directory, 64, 1)) {
+      assertEquals(1, reopened.getRecoveredState().records());
+      assertEquals(0, reopened.getDroppedRecords());
+    }
+  }
+
+  @Test
+  @DisplayName("replay stops at the first record that was not written")
+  public void testGap() throws Exception {
+    try (var journal = TransactionJournal.open(directory, 1024, 1)) {
+      for (int i = 0; i < 5; i++) {
+        journal.append(TransactionJournal.CANCEL_NOT_ENOUGH, GasType.SUPER, -1, 1.0, 0.0);
+      }
+    }
+    try (var channel = FileChannel.open(
+        directory.resolve("journal-0000000000000000.seg"), StandardOpenOption.WRITE)) {
+      // erase sequence number of the third record
+      channel.write(ByteBuffer.allocate(8), 2 * TransactionJournal.RECORD_SIZE);
+    }
+    try (var journal = TransactionJournal.open(directory, 1024, 1)) {
+      assertEquals(2, journal.getRecoveredState().records());
+      journal.append(TransactionJournal.CANCEL_NOT_ENOUGH, GasType.SUPER, -1, 1.0, 0.0);
+    }
+    try (var journal = TransactionJournal.open(directory, 1024, 1)) {
+      // records after the gap are not replayed even when the gap is filled
+      assertEquals(3, journal.getRecoveredState().records());
+    }
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("concurrent appends span segments")
+  public void testConcurrentAppends() throws Exception {
+    int segmentSize = 10 * TransactionJournal.RECORD_SIZE;
+    try (var journal = TransactionJournal.open(directory, segmentSize, 1)) {
+      var writers = new CompletableFuture<?>[4];
+      for (int t = 0; t < writers.length; t++) {
+        writers[t] = CompletableFuture.runAsync(() -> {
+          for (int i = 0; i < 250; i++) {
+            journal.append(TransactionJournal.SALE, GasType.REGULAR, 0, 1.0, 1.0);
+          }
+        });
+      }
+      CompletableFuture.allOf(writers).get();
+      journal.commit();
+    }
+    try (var journal = TransactionJournal.open(directory, segmentSize, 1)) {
+      var stats = journal.getRecoveredState().getStats();
+      assertEquals(1000, stats.getNumberOfSales());
+      assertEquals(1000.0, stats.getRevenue(), 0.0);
+    }
+  }
+
+  @Test
+  @DisplayName("station restores pumps and statistics from journal")
+  public void testStationRestore() throws Exception {
+    var removedPump = new GasPump(GasType.DIESEL, 5.0);
+    try (var journal = TransactionJournal.open(directory)) {
+      var station = station(journal);
+      station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+      station.addGasPump(removedPump);
+      assertEquals(6.0, station.buyGas(GasType.REGULAR, 3.0, 2.0), 0.0);
+      assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 8.0, 2.0));
+      assertThrows(GasTooExpensiveException.class,
+          () -> station.buyGas(GasType.REGULAR, 1.0, 1.0));
+      var outcomes = new int[2];
+      station.buyGas(new GasType[] {GasType.REGULAR, GasType.REGULAR},
+          new double[] {1.0, 100.0}, new double[] {2.0, 2.0}, outcomes);
+      assertTrue(station.removeGasPump(removedPump).get());
+    }
+    try (var journal = TransactionJournal.open(directory)) {
+      var station = station(journal);
+      assertEquals(2, station.getNumberOfSales());
+      assertEquals(8.0, station.getRevenue(), 0.0);
+      assertEquals(2, station.getNumberOfCancellationsNoGas());
+      assertEquals(1, station.getNumberOfCancellationsTooExpensive());
+      assertEquals(1, station.getGasPumps().size());
+      var pump = station.getGasPumps().iterator().next();
+      assertEquals(GasType.REGULAR, pump.getGasType());
+      assertEquals(6.0, pump.getRemainingAmount(), 0.0);
+
+      assertThrows(NotEnoughGasException.class, () -> station.buyGas(GasType.REGULAR, 6.0, 2.0));
+      station.addGasPump(new GasPump(GasType.SUPER, 1.0));
+      var ids = new HashSet<Integer>();
+      for (var queue : station.getMetrics().getPumps()) {
+        assertTrue(ids.add(queue.getId()));
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestWorkerDispatcher {
+
+  private final WorkerDispatcher dispatcher = new WorkerDispatcher();
+  private final GasPumpQueue queue =
+      new GasPumpQueue(new GasPump(GasType.REGULAR, 10.0), 0, Runnable::run);
+
+  @AfterEach
+  public void close() {
+    queue.close(); // worker stops when the line is empty
+  }
+
+  private static void pump(GasPumpQueue pump, double amount, long start) {
+    if (amount > 5.0) {
+      throw new AssertionError("pump is broken");
+    }
+    pump.leave();
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("client is served at the reserved pump")
+  public void testServe() {
+    assertTrue(queue.tryReserve(1.0));
+    assertSame(queue, dispatcher.serve(queue, 1.0, 0L, TestWorkerDispatcher::pump));
+    assertEquals(0, queue.length());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("client leaves the line when deadline passes")
+  public void testDeadline() throws Exception {
+    var pumping = new CountDownLatch(1);
+    var proceed = new CompletableFuture<Void>();
+    PumpWorker.Service service = (pump, amount, start) -> {
+      pumping.countDown();
+      proceed.join();
+      pump.leave();
+    };
+    assertTrue(queue.tryReserve(1.0));
+    var first = CompletableFuture.supplyAsync(() -> dispatcher.serve(queue, 1.0, 0L, service));
+    pumping.await();
+    assertTrue(queue.tryReserve(1.0));
+    assertNull(dispatcher.serve(queue, 1.0, 0L, System.nanoTime(), service));
+    assertEquals(2, queue.length());
+    proceed.complete(null);
+    assertSame(queue, first.get());
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("asynchronous client receives the pump or any failure of pumping")
+  public void testSubmit() throws Exception {
+    var served = new CompletableFuture<GasPumpQueue>();
+    assertTrue(queue.tryReserve(1.0));
+    dispatcher.submit(queue, 1.0, 0L, TestWorkerDispatcher::pump, (serving, failure) -> {
+      if (failure != null) {
+        served.completeExceptionally(failure);
+      } else {
+        served.complete(serving);
+      }
+    });
+    assertSame(queue, served.get());
+
+    var failed = new CompletableFuture<Throwable>();
+    assertTrue(queue.tryReserve(6.0));
+    dispatcher.submit(queue, 6.0, 0L, TestWorkerDispatcher::pump,
+        (serving, failure) -> failed.complete(serving == null ? failure : null));
+    assertTrue(failed.get() instanceof AssertionError);
+  }
+}
@@ -0,0 +1,121 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+public class TestWorkloadRunner {
+
+  private static WorkloadSource of(WorkloadRequest... requests) {
+    Iterator<WorkloadRequest> iterator = List.of(requests).iterator();
+    return () -> iterator.hasNext() ? iterator.next() : null;
+  }
+
+  @Test
+  @DisplayName("runner needs station, executor and source")
+  public void testArguments() {
+    var station = new FastGasStation();
+    assertThrows(IllegalArgumentException.class, () -> new WorkloadRunner(null, Runnable::run));
+    assertThrows(IllegalArgumentException.class, () -> new WorkloadRunner(station, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadRunner(station, Runnable::run).run(null));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("reports sales and both kinds of cancellations")
+  public void testReport() throws IOException {
+    var station = new FastGasStation((pump, amount) -> { });
+    station.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+    station.addGasPump(new GasPump(GasType.DIESEL, 10.0));
+    station.setPrice(GasType.REGULAR, 1.0);
+    var report = new WorkloadRunner(station, Runnable::run).run(of(
+        new WorkloadRequest(0, GasType.REGULAR, 4.0, 1.0),
+        new WorkloadRequest(1, GasType.REGULAR, 4.0, 0.5),
+        new WorkloadRequest(2, GasType.REGULAR, 4.0, 2.0),
+        new WorkloadRequest(3, GasType.REGULAR, 4.0, 2.0),
+        new WorkloadRequest(4, GasType.DIESEL, 1.0, 2.0)));
+    assertEquals(5, report.getRequests());
+    assertEquals(2, report.getSales());
+    assertEquals(1, report.getCancellationsNoGas());
+    assertEquals(1, report.getCancellationsTooExpensive());
+    assertEquals(1, report.getFailures()); // no price for DIESEL
+    assertEquals(5, report.getLatency().getCount());
+    assertTrue(report.toString().contains("sales=2"));
+  }
+
+  @Test
+  @Timeout(value = 10, unit = TimeUnit.SECONDS)
+  @DisplayName("sends requests on schedule and counts waiting in latency")
+  public void testOpenLoop() throws IOException {
+    // one pump pumping 100 ms per client, clients arrive every 10 ms
+    var station = new FastGasStation(
+        (pump, amount) -> sleep((long) (amount * 100)));
+    station.addGasPump(new GasPump(GasType.REGULAR, 100.0));
+    station.setPrice(GasType.REGULAR, 1.0);
+    var executor = Executors.newCachedThreadPool();
+    try {
+      var requests = new WorkloadRequest[5];
+      for (int i = 0; i < requests.length; i++) {
+        requests[i] = new WorkloadRequest(TimeUnit.MILLISECONDS.toNanos(10 * i),
+            GasType.REGULAR, 1.0, 1.0);
+      }
+      var report = new WorkloadRunner(station, executor).run(of(requests));
+      assertEquals(5, report.getSales());
+      // the last client waits for four others, sent 40 ms after start
+      assertTrue(report.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(500 - 40));
+      assertTrue(report.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(500));
+      assertTrue(report.getMaxSendDelayNanos() < TimeUnit.MILLISECONDS.toNanos(50));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  @Timeout(value = 30, unit = TimeUnit.SECONDS)
+  @DisplayName("replays generated workload on customer threads")
+  public void testGenerated() throws IOException {
+    var station = new FastGasStation((pump, amount) -> { });
+    for (var type : GasType.values()) {
+      station.addGasPump(new GasPump(type, 1000.0));
+      station.setPrice(type, 1.5);
+    }
+    var mix = new EnumMap<GasType, Double>(GasType.class);
+    for (var type : GasType.values()) {
+      mix.put(type, 1.0);
+    }
+    var source = new WorkloadGenerator(5, 2000.0, TimeUnit.SECONDS.toNanos(1), 5.0, mix,
+        1.0, 2.0);
+    var executor = CustomerThreads.fromSystemProperty().newExecutor();
+    try {
+      var report = new WorkloadRunner(station, executor).run(source);
+      assertTrue(report.getRequests() > 1000);
+      assertEquals(report.getRequests(), report.getSales() + report.getCancellationsNoGas()
+          + report.getCancellationsTooExpensive());
+      assertTrue(report.getCancellationsTooExpensive() > 0);
+      assertTrue(report.getCancellationsNoGas() > 0);
+      assertEquals(0, report.getFailures());
+      assertTrue(report.getThroughput() > 0.0);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package net.bigpoint.assessment.gasstation.impl;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TestWorkloadTrace {
+
+  Path directory;
+
+  @BeforeEach
+  public void create() throws Exception {
+    directory = Files.createTempDirectory("gas-workload");
+  }
+
+  @AfterEach
+  public void delete() throws Exception {
+    try (var files = Files.walk(directory)) {
+      files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private static WorkloadGenerator generator(long seed) {
+    var mix = new EnumMap<GasType, Double>(GasType.class);
+    mix.put(GasType.REGULAR, 3.0);
+    mix.put(GasType.DIESEL, 1.0);
+    return new WorkloadGenerator(seed, 1000.0, TimeUnit.SECONDS.toNanos(10), 20.0, mix,
+        1.0, 2.0);
+  }
+
+  private static List<WorkloadRequest> readAll(WorkloadSource source) throws IOException {
+    var requests = new ArrayList<WorkloadRequest>();
+    for (var request = source.next(); request != null; request = source.next()) {
+      requests.add(request);
+    }
+    return requests;
+  }
+
+  private static void assertSame(List<WorkloadRequest> expected, List<WorkloadRequest> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).toString(), actual.get(i).toString());
+    }
+  }
+
+  @Test
+  @DisplayName("generator validates its parameters")
+  public void testGeneratorArguments() {
+    var mix = Map.of(GasType.REGULAR, 1.0);
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadGenerator(1, 0.0, 1, 1.0, mix, 1.0, 1.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadGenerator(1, 1.0, 1, 1.0, null, 1.0, 1.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadGenerator(1, 1.0, 1, 1.0, Map.of(), 1.0, 1.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadGenerator(1, 1.0, 1, 1.0, Map.of(GasType.DIESEL, -1.0), 1.0, 1.0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new WorkloadGenerator(1, 1.0, 1, 1.0, mix, 2.0, 1.0));
+  }
+
+  @Test
+  @DisplayName("same seed generates the same requests with the requested mix")
+  public void testGenerator() throws IOException {
+    var requests = readAll(generator(7));
+    assertSame(requests, readAll(generator(7)));
+    assertTrue(requests.size() > 9000 && requests.size() < 11000, "" + requests.size());
+    long regular = 0;
+    long offset = 0;
+    for (var request : requests) {
+      assertNotEquals(GasType.SUPER, request.getType());
+      regular += request.getType() == GasType.REGULAR ? 1 : 0;
+      assertTrue(request.getOffsetNanos() >= offset);
+      offset = request.getOffsetNanos();
+      assertTrue(request.getAmountInLiters() >= WorkloadGenerator.MIN_AMOUNT);
+      assertTrue(request.getMaxPricePerLiter() >= 1.0 && request.getMaxPricePerLiter() <= 2.0);
+    }
+    assertEquals(0.75, (double) regular / requests.size(), 0.03);
+  }
+
+  @Test
+  @DisplayName("binary and CSV traces replay recorded requests")
+  public void testRecordAndReplay() throws IOException {
+    var requests = readAll(generator(11));
+    for (var name : new String[] {"trace.bin", "trace.csv"}) {
+      var file = directory.resolve(name);
+      assertEquals(requests.size(), WorkloadTrace.record(generator(11), file));
+      try (var reader = WorkloadTrace.open(file)) {
+        assertSame(requests, readAll(reader));
+        assertNull(reader.next());
+      }
+    }
+    assertTrue(Files.size(directory.resolve("trace.bin")) < 30L * requests.size() + 16);
+  }
+
+  @Test
+  @DisplayName("reads hand-written CSV and rejects invalid lines")
+  public void testCsv() throws IOException {
+    var file = directory.resolve("hand.csv");
+    Files.write(file, List.of(WorkloadTrace.CSV_HEADER, "# comment", "",
+        "0,DIESEL,10.5,1.2", "100, SUPER , 1 , 3", "50,REGULAR,1,1"), StandardCharsets.UTF_8);
+    try (var reader = WorkloadTrace.open(file)) {
+      assertEquals(GasType.DIESEL, reader.next().getType());
+      var request = reader.next();
+      assertEquals(100, request.getOffsetNanos());
+      assertEquals(GasType.SUPER, request.getType());
+      assertEquals(1.0, request.getAmountInLiters());
+      var error = assertThrows(IOException.class, reader::next);
+      assertTrue(error.getMessage().contains("not ordered"));
+    }
+    Files.write(file, List.of("0,PETROL,1,1"), StandardCharsets.UTF_8);
+    try (var reader = WorkloadTrace.open(file)) {
+      var error = assertThrows(IOException.class, reader::next);
+      assertTrue(error.getMessage().contains("line 1"));
+    }
+  }
+
+  @Test
+  @DisplayName("rejects truncated and foreign binary files")
+  public void testBinaryCorrupted() throws IOException {
+    var file = directory.resolve("trace.bin");
+    WorkloadTrace.record(generator(3), file);
+    var bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, 8 + 25 + 10));
+    try (var reader = WorkloadTrace.open(file)) {
+      assertNotNull(reader.next());
+      assertThrows(IOException.class, reader::next);
+    }
+    Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IOException.class, () -> WorkloadTrace.open(file));
+  }
+}